@@ -0,0 +1,317 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An annotation processor which generates a {@code SubcommandRegistrar} for every class that contains
+ * methods annotated with {@code PluginSubcommand}. The generated registrar passes the annotation values and
+ * the parameter layout of each method as literals, and invokes each method directly, so registering the
+ * holder does not require scanning, reading annotations or reflective invocation.
+ * <p>
+ * Holders which cannot be accessed from a generated class in the same package (private methods, private
+ * or local classes) are skipped with a note, and will be registered reflectively at runtime.
+ */
+@SupportedAnnotationTypes(SubcommandProcessor.PLUGIN_SUBCOMMAND)
+public class SubcommandProcessor extends AbstractProcessor {
+
+    static final String PLUGIN_SUBCOMMAND = "io.github.reflxction.commands.PluginSubcommand";
+    static final String OPTIONAL_PARAMETER = PLUGIN_SUBCOMMAND + ".OptionalParameter";
+    static final String JOINED_PARAMETER = PLUGIN_SUBCOMMAND + ".JoinedParameter";
+    static final String REGISTRAR = "io.github.reflxction.commands.SubcommandRegistrar";
+    static final String SUFFIX = "_SubcommandRegistrar";
+
+    /**
+     * The simple name of the class which the generated annotations extend, nested in each registrar
+     */
+    static final String ANNOTATION_BASE = "GeneratedSubcommand";
+
+    /**
+     * Holders that a registrar has already been generated for, across rounds
+     */
+    private final Set<String> generated = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement annotation = processingEnv.getElementUtils().getTypeElement(PLUGIN_SUBCOMMAND);
+        if (annotation == null) return false;
+        Set<TypeElement> holders = new LinkedHashSet<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(annotation))
+            if (element.getKind() == ElementKind.METHOD)
+                holders.add((TypeElement) element.getEnclosingElement());
+        for (TypeElement holder : holders) {
+            String name = processingEnv.getElementUtils().getBinaryName(holder).toString();
+            if (!generated.add(name)) continue;
+            List<ExecutableElement> methods = subcommands(holder, annotation);
+            String reason = inaccessible(holder, methods);
+            if (reason != null) {
+                processingEnv.getMessager().printMessage(Kind.NOTE, "Not generating a registrar for " + name + ": " + reason + ". It will be registered reflectively.", holder);
+                continue;
+            }
+            try {
+                write(holder, methods);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Kind.ERROR, "Failed to write the registrar of " + name + ": " + e.getMessage(), holder);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the subcommand methods of the holder, matching what reflective registration finds: all
+     * declared methods, and the public inherited ones.
+     */
+    private List<ExecutableElement> subcommands(TypeElement holder, TypeElement annotation) {
+        List<ExecutableElement> methods = new ArrayList<>();
+        for (Element member : processingEnv.getElementUtils().getAllMembers(holder)) {
+            if (member.getKind() != ElementKind.METHOD) continue;
+            if (member.getEnclosingElement() != holder && !member.getModifiers().contains(Modifier.PUBLIC)) continue;
+            for (AnnotationMirror mirror : member.getAnnotationMirrors())
+                if (processingEnv.getTypeUtils().isSameType(mirror.getAnnotationType(), annotation.asType())) {
+                    methods.add((ExecutableElement) member);
+                    break;
+                }
+        }
+        return methods;
+    }
+
+    /**
+     * Returns why the generated registrar could not access the holder or its methods, or null if it can
+     */
+    private String inaccessible(TypeElement holder, List<ExecutableElement> methods) {
+        if (holder.getKind() != ElementKind.CLASS && holder.getKind() != ElementKind.ENUM) return "not a class";
+        if (holder.getModifiers().contains(Modifier.ABSTRACT)) return "abstract classes are never instantiated directly";
+        for (Element type = holder; type instanceof TypeElement; type = type.getEnclosingElement()) {
+            NestingKind nesting = ((TypeElement) type).getNestingKind();
+            if (nesting == NestingKind.LOCAL || nesting == NestingKind.ANONYMOUS) return "local and anonymous classes cannot be referenced";
+            if (type.getModifiers().contains(Modifier.PRIVATE)) return type.getSimpleName() + " is private";
+        }
+        for (ExecutableElement method : methods) {
+            if (method.getModifiers().contains(Modifier.PRIVATE)) return method.getSimpleName() + "() is private";
+            TypeElement declaring = (TypeElement) method.getEnclosingElement();
+            if (declaring != holder && !declaring.getModifiers().contains(Modifier.PUBLIC)
+                    && !processingEnv.getElementUtils().getPackageOf(declaring).equals(processingEnv.getElementUtils().getPackageOf(holder)))
+                return method.getSimpleName() + "() is declared in an inaccessible class";
+        }
+        return null;
+    }
+
+    private void write(TypeElement holder, List<ExecutableElement> methods) throws IOException {
+        String pkg = processingEnv.getElementUtils().getPackageOf(holder).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(holder).toString();
+        String simpleName = (pkg.isEmpty() ? binaryName : binaryName.substring(pkg.length() + 1)) + SUFFIX;
+        String holderType = wildcard(holder);
+        String rawType = erasure(holder.asType());
+        // methods which take the holder's type variables cannot be called through a wildcard type
+        String receiver = holderType.equals(rawType) ? "instance" : "((" + rawType + ") instance)";
+        TypeElement annotation = processingEnv.getElementUtils().getTypeElement(PLUGIN_SUBCOMMAND);
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(pkg.isEmpty() ? simpleName : pkg + "." + simpleName, holder).openWriter())) {
+            if (!pkg.isEmpty()) out.println("package " + pkg + ";\n");
+            out.println("/**");
+            out.println(" * Generated by " + getClass().getName() + ". Do not edit.");
+            out.println(" */");
+            out.println("public final class " + simpleName + " implements " + REGISTRAR + "<" + holderType + "> {\n");
+            out.println("    @Override");
+            out.println("    @SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+            out.println("    public void register(io.github.reflxction.commands.CommandHandler handler, " + holderType + " instance) {");
+            for (ExecutableElement method : methods) {
+                TypeElement declaring = (TypeElement) method.getEnclosingElement();
+                List<? extends TypeMirror> parameterTypes = ((ExecutableType) processingEnv.getTypeUtils().asMemberOf((DeclaredType) holder.asType(), method)).getParameterTypes();
+                List<? extends VariableElement> parameters = method.getParameters();
+                List<String> types = new ArrayList<>();
+                List<String> joined = new ArrayList<>();
+                List<String> defaults = new ArrayList<>();
+                List<String> arguments = new ArrayList<>();
+                for (int i = 0; i < parameters.size(); i++) {
+                    String type = erasure(parameterTypes.get(i));
+                    types.add(type + ".class");
+                    joined.add(String.valueOf(mirror(parameters.get(i), JOINED_PARAMETER) != null));
+                    AnnotationMirror optional = mirror(parameters.get(i), OPTIONAL_PARAMETER);
+                    defaults.add(optional == null ? "null" : literal(value(optional, "defaultValue"), null));
+                    arguments.add(type.equals("java.lang.Object") ? "arguments[" + i + "]" : "(" + type + ") arguments[" + i + "]");
+                }
+                String target = method.getModifiers().contains(Modifier.STATIC) ? erasure(declaring.asType()) : receiver;
+                out.println("        handler.registerGenerated(new " + ANNOTATION_BASE + "() {");
+                AnnotationMirror subcommand = mirror(method, PLUGIN_SUBCOMMAND);
+                for (ExecutableElement element : ElementFilter.methodsIn(annotation.getEnclosedElements())) {
+                    out.println("            @Override");
+                    out.println("            public " + element.getReturnType() + " " + element.getSimpleName() + "() {");
+                    out.println("                return " + literal(value(subcommand, element.getSimpleName().toString()), element.getReturnType()) + ";");
+                    out.println("            }");
+                }
+                out.println("        }, instance, \"" + processingEnv.getElementUtils().getBinaryName(declaring) + "#" + method.getSimpleName() + "\",");
+                out.println("                new java.lang.Class<?>[]{" + String.join(", ", types) + "},");
+                out.println("                new boolean[]{" + String.join(", ", joined) + "},");
+                out.println("                new java.lang.String[]{" + String.join(", ", defaults) + "},");
+                out.println("                arguments -> " + target + "." + method.getSimpleName() + "(" + String.join(", ", arguments) + "));");
+            }
+            out.println("    }");
+            writeAnnotationBase(out, annotation);
+            out.println("}");
+        }
+    }
+
+    /**
+     * Writes the class which the generated annotations extend. It implements the parts of the
+     * {@link java.lang.annotation.Annotation} contract which only depend on the annotation type: equality
+     * with any instance of the type, including the ones returned by reflection, and the matching hash code
+     * and string form.
+     */
+    private void writeAnnotationBase(PrintWriter out, TypeElement annotation) {
+        List<ExecutableElement> elements = ElementFilter.methodsIn(annotation.getEnclosedElements());
+        List<String> equal = new ArrayList<>();
+        List<String> hashes = new ArrayList<>();
+        List<String> strings = new ArrayList<>();
+        for (ExecutableElement element : elements) {
+            String name = element.getSimpleName().toString();
+            boolean array = element.getReturnType().getKind() == TypeKind.ARRAY;
+            boolean primitiveArray = array && ((ArrayType) element.getReturnType()).getComponentType().getKind().isPrimitive();
+            equal.add((array ? "java.util.Arrays.equals(" : "java.util.Objects.equals(") + name + "(), that." + name + "())");
+            // the hash code of each element is the same as in the JDK's annotations
+            hashes.add("(" + (127 * name.hashCode()) + " ^ " + (array ? "java.util.Arrays.hashCode(" : "java.util.Objects.hashCode(") + name + "()))");
+            strings.add("\"" + (strings.isEmpty() ? "" : ", ") + name + "=\" + " + (primitiveArray ? "java.util.Arrays.toString(" : "string(") + name + "())");
+        }
+        out.println();
+        out.println("    /**");
+        out.println("     * Implements the equality, hash code and string form of " + annotation.getSimpleName() + ", as specified by");
+        out.println("     * java.lang.annotation.Annotation");
+        out.println("     */");
+        out.println("    private abstract static class " + ANNOTATION_BASE + " implements " + PLUGIN_SUBCOMMAND + " {\n");
+        out.println("        @Override");
+        out.println("        public java.lang.Class<? extends java.lang.annotation.Annotation> annotationType() {");
+        out.println("            return " + PLUGIN_SUBCOMMAND + ".class;");
+        out.println("        }\n");
+        out.println("        @Override");
+        out.println("        public boolean equals(java.lang.Object o) {");
+        out.println("            if (this == o) return true;");
+        out.println("            if (!(o instanceof " + PLUGIN_SUBCOMMAND + ")) return false;");
+        out.println("            " + PLUGIN_SUBCOMMAND + " that = (" + PLUGIN_SUBCOMMAND + ") o;");
+        out.println("            return " + (equal.isEmpty() ? "true" : String.join("\n                    && ", equal)) + ";");
+        out.println("        }\n");
+        out.println("        @Override");
+        out.println("        public int hashCode() {");
+        out.println("            return " + (hashes.isEmpty() ? "0" : String.join("\n                    + ", hashes)) + ";");
+        out.println("        }\n");
+        out.println("        @Override");
+        out.println("        public java.lang.String toString() {");
+        out.println("            return \"@" + PLUGIN_SUBCOMMAND + "(\"");
+        for (String string : strings) out.println("                    + " + string);
+        out.println("                    + \")\";");
+        out.println("        }\n");
+        out.println("        private static java.lang.String string(java.lang.Object value) {");
+        out.println("            if (value instanceof java.lang.String)");
+        out.println("                return '\"' + ((java.lang.String) value).replace(\"\\\\\", \"\\\\\\\\\").replace(\"\\\"\", \"\\\\\\\"\") + '\"';");
+        out.println("            if (value instanceof java.lang.Class) return ((java.lang.Class<?>) value).getName() + \".class\";");
+        out.println("            if (!(value instanceof java.lang.Object[])) return java.lang.String.valueOf(value);");
+        out.println("            java.util.StringJoiner joiner = new java.util.StringJoiner(\", \", \"{\", \"}\");");
+        out.println("            for (java.lang.Object element : (java.lang.Object[]) value) joiner.add(string(element));");
+        out.println("            return joiner.toString();");
+        out.println("        }");
+        out.println("    }");
+    }
+
+    /**
+     * Returns the annotation of the specified type on the element, or null if it is not present
+     */
+    private static AnnotationMirror mirror(Element element, String type) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors())
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(type))
+                return mirror;
+        return null;
+    }
+
+    /**
+     * Returns the value of the specified annotation element, or its default value
+     */
+    private AnnotationValue value(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet())
+            if (entry.getKey().getSimpleName().contentEquals(name)) return entry.getValue();
+        throw new IllegalArgumentException("No such annotation element: " + name);
+    }
+
+    /**
+     * Returns the source literal of the annotation value
+     *
+     * @param value The annotation value
+     * @param type  The type of the annotation element, used to create arrays
+     */
+    @SuppressWarnings("unchecked")
+    private String literal(AnnotationValue value, TypeMirror type) {
+        Object v = value.getValue();
+        if (v instanceof VariableElement) // enum constant
+            return ((TypeElement) ((VariableElement) v).getEnclosingElement()).getQualifiedName() + "." + ((VariableElement) v).getSimpleName();
+        if (v instanceof TypeMirror) return erasure((TypeMirror) v) + ".class";
+        if (v instanceof List) {
+            TypeMirror component = ((ArrayType) type).getComponentType();
+            List<String> values = new ArrayList<>();
+            for (AnnotationValue element : (List<? extends AnnotationValue>) v) values.add(literal(element, component));
+            return "new " + erasure(component) + "[]{" + String.join(", ", values) + "}";
+        }
+        if (v instanceof AnnotationMirror) throw new IllegalArgumentException("Nested annotations are not supported: " + v);
+        return processingEnv.getElementUtils().getConstantExpression(v);
+    }
+
+    /**
+     * Returns the type of the holder with a wildcard for each type parameter, so that generic holders
+     * are not referenced as raw types
+     */
+    private String wildcard(TypeElement type) {
+        Element enclosing = type.getEnclosingElement();
+        String name = enclosing instanceof TypeElement && !type.getModifiers().contains(Modifier.STATIC) && type.getKind() == ElementKind.CLASS
+                ? wildcard((TypeElement) enclosing) + "." + type.getSimpleName()
+                : type.getQualifiedName().toString();
+        int parameters = type.getTypeParameters().size();
+        return parameters == 0 ? name : name + "<" + String.join(", ", Collections.nCopies(parameters, "?")) + ">";
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands.processor;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.Compiler;
+import com.google.testing.compile.JavaFileObjects;
+import io.github.reflxction.commands.CommandHandler;
+import io.github.reflxction.commands.CommandResolvers.Resolver;
+import io.github.reflxction.commands.MethodSubcommand.MethodInvoker;
+import io.github.reflxction.commands.PluginSubcommand;
+import io.github.reflxction.commands.StandIns;
+import io.github.reflxction.commands.SubcommandInvokation;
+import org.bukkit.command.CommandSender;
+import org.junit.Test;
+
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SubcommandProcessorTest {
+
+    private static final JavaFileObject HOLDER = JavaFileObjects.forSourceLines("sample.Holder",
+            "package sample;",
+            "",
+            "import io.github.reflxction.commands.CommandContext;",
+            "import io.github.reflxction.commands.CommandQueue;",
+            "import io.github.reflxction.commands.PluginSubcommand;",
+            "import io.github.reflxction.commands.PluginSubcommand.JoinedParameter;",
+            "import io.github.reflxction.commands.PluginSubcommand.OptionalParameter;",
+            "import org.bukkit.command.CommandSender;",
+            "",
+            "public class Holder {",
+            "",
+            "    @PluginSubcommand(name = \"give\", description = \"Gives an amount\", parameters = \"<target> [amount]\", aliases = {\"g\", \"gv\"},",
+            "            helpMenu = {\"&agive <target> [amount]\", \"Quotes \\\"and\\\" \\\\ slashes\"}, priority = CommandQueue.Priority.HIGH, cooldown = 500)",
+            "    public void give(CommandSender sender, String target, @OptionalParameter(defaultValue = \"1\") int amount) {",
+            "        sender.sendMessage(\"give \" + target + \" \" + amount);",
+            "    }",
+            "",
+            "    @PluginSubcommand(name = \"say\", description = \"Says something\", permission = \"sample.say\", minimumArguments = 1, rateLimit = 3)",
+            "    public void say(CommandContext context, @JoinedParameter String message) {",
+            "        context.getSender().sendMessage(\"say \" + message);",
+            "    }",
+            "",
+            "    @PluginSubcommand(name = \"version\", description = \"Shows the version\", tabRateLimit = 2)",
+            "    public static void version(CommandSender sender) {",
+            "        sender.sendMessage(\"version 1.0\");",
+            "    }",
+            "}");
+
+    private static final JavaFileObject BASE = JavaFileObjects.forSourceLines("sample.Base",
+            "package sample;",
+            "",
+            "import io.github.reflxction.commands.PluginSubcommand;",
+            "import org.bukkit.command.CommandSender;",
+            "",
+            "public class Base {",
+            "",
+            "    @PluginSubcommand(name = \"hello\", description = \"Greets\")",
+            "    public void hello(CommandSender sender, String[] names) {",
+            "        sender.sendMessage(\"hello \" + String.join(\",\", names));",
+            "    }",
+            "}");
+
+    private static final JavaFileObject CHILD = JavaFileObjects.forSourceLines("sample.Child",
+            "package sample;",
+            "",
+            "import io.github.reflxction.commands.PluginSubcommand;",
+            "import org.bukkit.command.CommandSender;",
+            "",
+            "public class Child extends Base {",
+            "",
+            "    @PluginSubcommand(name = \"bye\", description = \"Leaves\", requirePlayer = false, async = false, queued = false)",
+            "    public void bye(CommandSender sender) {",
+            "        sender.sendMessage(\"bye\");",
+            "    }",
+            "}");
+
+    private static final JavaFileObject BOX = JavaFileObjects.forSourceLines("sample.Box",
+            "package sample;",
+            "",
+            "import io.github.reflxction.commands.PluginSubcommand;",
+            "import io.github.reflxction.commands.PluginSubcommand.OptionalParameter;",
+            "import org.bukkit.command.CommandSender;",
+            "",
+            "public class Box<T extends Number> {",
+            "",
+            "    @PluginSubcommand(name = \"put\", description = \"Puts a number in the box\")",
+            "    public void put(CommandSender sender, T value, @OptionalParameter String label) {",
+            "        sender.sendMessage(\"put \" + value + \" \" + label);",
+            "    }",
+            "}");
+
+    private static final JavaFileObject OUTER = JavaFileObjects.forSourceLines("sample.Outer",
+            "package sample;",
+            "",
+            "import io.github.reflxction.commands.PluginSubcommand;",
+            "import org.bukkit.command.CommandSender;",
+            "",
+            "public class Outer {",
+            "",
+            "    private final String greeting = \"inner\";",
+            "",
+            "    public static class Nested {",
+            "",
+            "        @PluginSubcommand(name = \"nested\", description = \"From a nested class\")",
+            "        public void nested(CommandSender sender, long amount) {",
+            "            sender.sendMessage(\"nested \" + amount);",
+            "        }",
+            "    }",
+            "",
+            "    public class Inner {",
+            "",
+            "        @PluginSubcommand(name = \"inner\", description = \"From an inner class\")",
+            "        void inner(CommandSender sender) {",
+            "            sender.sendMessage(greeting);",
+            "        }",
+            "    }",
+            "}");
+
+    private static final JavaFileObject LOCKED = JavaFileObjects.forSourceLines("sample.Locked",
+            "package sample;",
+            "",
+            "import io.github.reflxction.commands.PluginSubcommand;",
+            "import org.bukkit.command.CommandSender;",
+            "",
+            "public class Locked {",
+            "",
+            "    @PluginSubcommand(name = \"hidden\", description = \"Cannot be called from the registrar\")",
+            "    private void hidden(CommandSender sender) {",
+            "    }",
+            "}");
+
+    private static final JavaFileObject TEMPLATE = JavaFileObjects.forSourceLines("sample.Template",
+            "package sample;",
+            "",
+            "import io.github.reflxction.commands.PluginSubcommand;",
+            "import org.bukkit.command.CommandSender;",
+            "",
+            "public abstract class Template {",
+            "",
+            "    @PluginSubcommand(name = \"template\", description = \"Never registered directly\")",
+            "    public void template(CommandSender sender) {",
+            "    }",
+            "}");
+
+    private static final JavaFileObject[] SOURCES = {HOLDER, BASE, CHILD, BOX, OUTER};
+
+    /**
+     * The commands which are run on both registrations, with the replies they should get
+     */
+    private static final String[][] COMMANDS = {
+            {"give", "Steve"}, {"gv", "Alex", "32"}, {"say", "hello", "world"}, {"version"},
+            {"hello", "a", "b"}, {"bye"}, {"put", "4", "red"}, {"put", "2.5"}, {"nested", "7"}, {"inner"}
+    };
+
+    @Test
+    public void generatesRegistrarsForAccessibleHolders() {
+        Compilation compilation = compile(true);
+        assertThat(compilation).succeeded();
+        for (String holder : new String[]{"Holder", "Base", "Child", "Box", "Outer$Nested", "Outer$Inner"})
+            assertThat(compilation).generatedSourceFile("sample." + holder + SubcommandProcessor.SUFFIX);
+    }
+
+    @Test
+    public void skipsInaccessibleHoldersWithANote() {
+        Compilation compilation = Compiler.javac().withProcessors(new SubcommandProcessor()).compile(LOCKED, TEMPLATE);
+        assertThat(compilation).succeeded();
+        assertThat(compilation).hadNoteContaining("Not generating a registrar for sample.Locked: hidden() is private");
+        assertThat(compilation).hadNoteContaining("Not generating a registrar for sample.Template: abstract classes are never instantiated directly");
+        assertFalse(compilation.generatedSourceFile("sample.Locked" + SubcommandProcessor.SUFFIX).isPresent());
+        assertFalse(compilation.generatedSourceFile("sample.Template" + SubcommandProcessor.SUFFIX).isPresent());
+    }
+
+    @Test
+    public void generatedRegistrationMatchesReflectiveRegistration() throws ReflectiveOperationException {
+        RecordingHandler generated = new RecordingHandler();
+        CommandHandler reflective = new CommandHandler();
+        register(generated, load(compile(true)));
+        register(reflective, load(compile(false)));
+
+        assertEquals(8, generated.annotations.size()); // every subcommand went through its registrar
+        assertEquals(describe(reflective), describe(generated));
+        assertEquals(run(reflective), run(generated));
+    }
+
+    @Test
+    public void generatedAnnotationsEqualTheReflectiveOnes() throws ReflectiveOperationException {
+        RecordingHandler generated = new RecordingHandler();
+        ClassLoader loader = load(compile(true));
+        register(generated, loader);
+        Map<String, PluginSubcommand> reflective = new HashMap<>();
+        for (String holder : new String[]{"sample.Holder", "sample.Child", "sample.Box", "sample.Outer$Nested", "sample.Outer$Inner"})
+            for (Method method : allMethods(loader.loadClass(holder))) {
+                PluginSubcommand p = method.getAnnotation(PluginSubcommand.class);
+                if (p != null) reflective.put(p.name(), p);
+            }
+
+        assertEquals(reflective.keySet(), generated.annotations.keySet());
+        for (PluginSubcommand p : generated.annotations.values()) {
+            PluginSubcommand expected = reflective.get(p.name());
+            assertEquals(PluginSubcommand.class, p.annotationType());
+            assertEquals(expected, p);
+            assertEquals(p, expected);
+            assertEquals(expected.hashCode(), p.hashCode());
+            assertTrue(p.toString(), p.toString().startsWith("@" + PluginSubcommand.class.getName() + "(name=\"" + p.name() + "\", "));
+        }
+        assertNotEquals(generated.annotations.get("give"), generated.annotations.get("say"));
+        assertTrue(generated.annotations.get("give").toString().contains("helpMenu={\"&agive <target> [amount]\", \"Quotes \\\"and\\\" \\\\ slashes\"}"));
+    }
+
+    private static Compilation compile(boolean process) {
+        Compiler compiler = process ? Compiler.javac().withProcessors(new SubcommandProcessor()) : Compiler.javac().withProcessors();
+        Compilation compilation = compiler.compile(SOURCES);
+        assertThat(compilation).succeeded();
+        return compilation;
+    }
+
+    /**
+     * Returns a class loader which defines the classes of the compilation
+     */
+    private static ClassLoader load(Compilation compilation) {
+        Map<String, byte[]> classes = new HashMap<>();
+        for (JavaFileObject file : compilation.generatedFiles()) {
+            if (file.getKind() != Kind.CLASS) continue;
+            String path = file.toUri().getPath();
+            String name = path.substring(path.indexOf("/CLASS_OUTPUT/") + "/CLASS_OUTPUT/".length(), path.length() - ".class".length());
+            try (InputStream in = file.openInputStream()) {
+                byte[] buffer = new byte[8192];
+                int length = 0;
+                for (int read; (read = in.read(buffer, length, buffer.length - length)) != -1; )
+                    if ((length += read) == buffer.length) buffer = Arrays.copyOf(buffer, length * 2);
+                classes.put(name.replace('/', '.'), Arrays.copyOf(buffer, length));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return new ClassLoader(SubcommandProcessorTest.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                byte[] bytes = classes.get(name);
+                if (bytes == null) throw new ClassNotFoundException(name);
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+        };
+    }
+
+    private static void register(CommandHandler handler, ClassLoader loader) throws ReflectiveOperationException {
+        handler.getResolvers().registerResolver(Number.class, new Resolver<>("number", (a, c) -> a.contains(".") ? Double.valueOf(a) : (Number) Integer.valueOf(a)));
+        handler.register(loader.loadClass("sample.Holder").getDeclaredConstructor().newInstance());
+        handler.register(loader.loadClass("sample.Child").getDeclaredConstructor().newInstance());
+        handler.register(loader.loadClass("sample.Box").getDeclaredConstructor().newInstance());
+        handler.register(loader.loadClass("sample.Outer$Nested").getDeclaredConstructor().newInstance());
+        Class<?> outer = loader.loadClass("sample.Outer");
+        handler.register(loader.loadClass("sample.Outer$Inner").getDeclaredConstructor(outer).newInstance(outer.getDeclaredConstructor().newInstance()));
+    }
+
+    private static Method[] allMethods(Class<?> type) {
+        List<Method> methods = new ArrayList<>(Arrays.asList(type.getDeclaredMethods()));
+        for (Method method : type.getMethods())
+            if (method.getDeclaringClass() != type) methods.add(method);
+        return methods.toArray(new Method[0]);
+    }
+
+    /**
+     * Returns the settings of every subcommand of the handler, by name
+     */
+    private static Map<String, List<Object>> describe(CommandHandler handler) {
+        Map<String, List<Object>> settings = new TreeMap<>();
+        for (SubcommandInvokation s : handler.getNamesOnly().values())
+            settings.put(s.name, Arrays.asList(s.description, s.parameters, Arrays.asList(s.aliases), s.helpMenu, s.minimumArgs, s.requirePlayer, s.tab,
+                    s.permission == null ? null : s.permission.getName(), s.permission == null ? null : s.permission.getDefault(),
+                    s.async, s.queued, s.priority, s.rateLimiter == null, s.tabRateLimiter == null));
+        return settings;
+    }
+
+    private static List<String> run(CommandHandler handler) {
+        List<String> replies = new ArrayList<>();
+        CommandSender console = StandIns.console(replies::add);
+        for (String[] command : COMMANDS)
+            handler.onCommand(StandIns.command("test"), console, command);
+        return replies;
+    }
+
+    /**
+     * A handler which keeps the annotations passed by the generated registrars
+     */
+    private static class RecordingHandler extends CommandHandler {
+
+        private final Map<String, PluginSubcommand> annotations = new TreeMap<>();
+
+        @Override
+        public void registerGenerated(PluginSubcommand p, Object instance, String owner, Class<?>[] parameters, boolean[] joined, String[] defaults, MethodInvoker invoker) {
+            annotations.put(p.name(), p);
+            super.registerGenerated(p, instance, owner, parameters, joined, defaults, invoker);
+        }
+    }
+}
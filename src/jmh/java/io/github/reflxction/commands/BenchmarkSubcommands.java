@@ -0,0 +1,112 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import io.github.reflxction.commands.PluginSubcommand.JoinedParameter;
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.PermissionDefault;
+
+import java.util.Collections;
+
+/**
+ * The subcommands used by the benchmarks and simulations. They do as little work as possible, so that
+ * the measurements are dominated by the library.
+ */
+public class BenchmarkSubcommands {
+
+    /**
+     * The Bukkit command the subcommands are registered under
+     */
+    public static final Command COMMAND = StandIns.command("bench");
+
+    /**
+     * The last value a subcommand produced, written so that it cannot be optimized away
+     */
+    static volatile Object sink;
+
+    @PluginSubcommand(name = "noop", description = "Does nothing")
+    public void noop(CommandContext context) {
+        sink = context;
+    }
+
+    @PluginSubcommand(name = "ping", description = "Does nothing, like noop")
+    public void ping(CommandContext context) {
+        sink = context;
+    }
+
+    @PluginSubcommand(name = "version", description = "Does nothing, like noop")
+    public void version(CommandContext context) {
+        sink = context;
+    }
+
+    @PluginSubcommand(name = "give", description = "Gives an amount to a player", parameters = "<player> <amount>",
+            minimumArguments = 2, permission = "bench.give", tabCompletions = "@players 1|16|32|64")
+    public void give(CommandContext context, String target, int amount) {
+        sink = context.resolve(target, Player.class);
+    }
+
+    @PluginSubcommand(name = "tp", description = "Teleports to a world", parameters = "<world>", aliases = {"teleport"},
+            minimumArguments = 1, requirePlayer = true, tabCompletions = "world|world_nether|world_the_end")
+    public void tp(Player player, String world) {
+        sink = Bukkit.getWorld(world);
+    }
+
+    @PluginSubcommand(name = "say", description = "Broadcasts a message", parameters = "<message...>", minimumArguments = 1)
+    public void say(CommandContext context, @JoinedParameter String message) {
+        sink = message;
+    }
+
+    @PluginSubcommand(name = "fail", description = "Always fails")
+    public void fail(CommandContext context) {
+        context.reply("&cNope.");
+        throw CommandCallback.CommandCallbackException.SILENT;
+    }
+
+    /**
+     * The {@link #noop(CommandContext)} subcommand, as a {@link CommandCallback}
+     */
+    @PluginSubcommand(name = "noopcallback", description = "Does nothing")
+    public static class NoopCallback implements CommandCallback {
+
+        @Override
+        public void onProcess(CommandContext context) {
+            sink = context;
+        }
+    }
+
+    /**
+     * Creates a command containing these subcommands, and the specified amount of generated ones
+     *
+     * @param generated Amount of additional subcommands, named {@code sub0}, {@code sub1}...
+     * @return The command
+     */
+    public static ParentCommand create(int generated) {
+        StandIns.install();
+        ParentCommand command = ParentCommand.create()
+                .setPlugin(StandIns.plugin())
+                .contain(new BenchmarkSubcommands())
+                .contain(new NoopCallback());
+        CommandHandler handler = command.getCommandHandler();
+        for (int i = 0; i < generated; i++) {
+            String name = "sub" + i;
+            handler.add(new CommandWrapper(name, "Generated", "", new String[0], Collections.emptyList(), "bench." + name,
+                    PermissionDefault.OP, 0, false, PluginSubcommand.DEFAULT_COMPLETION, c -> sink = c));
+        }
+        return command;
+    }
+}
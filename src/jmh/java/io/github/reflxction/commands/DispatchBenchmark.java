@@ -0,0 +1,124 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link CommandHandler#onCommand} from the Bukkit entry point, for each way a command can end
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    private final String[] noop = {"noop"};
+    private final String[] callback = {"noopcallback"};
+    private final String[] give = {"give", "Steve", "64"};
+    private final String[] say = {"say", "hello", "there", "world"};
+    private final String[] alias = {"teleport", "world"};
+    private final String[] unknown = {"unknown"};
+    private final String[] invalidUsage = {"give", "Steve"};
+    private final String[] invalidArgument = {"give", "Steve", "lots"};
+    private final String[] failing = {"fail"};
+    private final String[] mixedCase = {"NoOp"};
+
+    private ParentCommand command;
+    private ParentCommand ignoringCase;
+    private Player player;
+    private Player unpermitted;
+    private CommandSender console;
+
+    @Setup
+    public void setup() {
+        command = BenchmarkSubcommands.create(0);
+        ignoringCase = BenchmarkSubcommands.create(0).setIgnoreCase(true);
+        player = StandIns.join(command.getCommandHandler(), "Steve", StandIns.DISCARD);
+        unpermitted = StandIns.player("Alex", StandIns.DISCARD, false);
+        console = StandIns.console(StandIns.DISCARD);
+    }
+
+    @Benchmark
+    public boolean methodSubcommand() {
+        return command.onCommand(player, BenchmarkSubcommands.COMMAND, "bench", noop);
+    }
+
+    @Benchmark
+    public boolean callbackSubcommand() {
+        return command.onCommand(player, BenchmarkSubcommands.COMMAND, "bench", callback);
+    }
+
+    @Benchmark
+    public boolean resolvedArguments() {
+        return command.onCommand(player, BenchmarkSubcommands.COMMAND, "bench", give);
+    }
+
+    @Benchmark
+    public boolean joinedArguments() {
+        return command.onCommand(console, BenchmarkSubcommands.COMMAND, "bench", say);
+    }
+
+    @Benchmark
+    public boolean aliasAndPlayer() {
+        return command.onCommand(player, BenchmarkSubcommands.COMMAND, "bench", alias);
+    }
+
+    @Benchmark
+    public boolean mixedCaseName() {
+        return ignoringCase.onCommand(player, BenchmarkSubcommands.COMMAND, "bench", mixedCase);
+    }
+
+    @Benchmark
+    public boolean unknownSubcommand() {
+        return command.onCommand(player, BenchmarkSubcommands.COMMAND, "bench", unknown);
+    }
+
+    @Benchmark
+    public boolean noPermission() {
+        return command.onCommand(unpermitted, BenchmarkSubcommands.COMMAND, "bench", give);
+    }
+
+    @Benchmark
+    public boolean invalidUsage() {
+        return command.onCommand(player, BenchmarkSubcommands.COMMAND, "bench", invalidUsage);
+    }
+
+    @Benchmark
+    public boolean invalidArgument() {
+        return command.onCommand(player, BenchmarkSubcommands.COMMAND, "bench", invalidArgument);
+    }
+
+    @Benchmark
+    public boolean rejected() {
+        return command.onCommand(player, BenchmarkSubcommands.COMMAND, "bench", failing);
+    }
+}
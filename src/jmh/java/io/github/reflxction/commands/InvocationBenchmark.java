@@ -0,0 +1,91 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks invoking a {@link MethodSubcommand} against the equivalent {@link CommandWrapper}, without
+ * the dispatching around it. {@link #methodSubcommandsOfSameArity()} invokes several methods which take the
+ * same parameters, as a plugin with many subcommands would, so that invocation is measured with more than
+ * one target behind each call site.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvocationBenchmark {
+
+    private SubcommandInvokation method;
+    private SubcommandInvokation[] sameArity;
+    private SubcommandInvokation wrapper;
+    private SubcommandInvokation resolving;
+    private CommandContext context;
+    private CommandContext resolvingContext;
+
+    @Setup
+    public void setup() {
+        CommandHandler handler = BenchmarkSubcommands.create(0).getCommandHandler();
+        StandIns.join(handler, "Steve", StandIns.DISCARD);
+        method = handler.getCommands().get("noop");
+        sameArity = new SubcommandInvokation[]{method, handler.getCommands().get("ping"), handler.getCommands().get("version")};
+        wrapper = handler.getCommands().get("noopcallback");
+        resolving = handler.getCommands().get("give");
+        context = new CommandContext(StandIns.console(StandIns.DISCARD), new String[0], BenchmarkSubcommands.COMMAND, method, handler);
+        resolvingContext = new CommandContext(StandIns.console(StandIns.DISCARD), new String[]{"Steve", "64"}, BenchmarkSubcommands.COMMAND, resolving, handler);
+        for (int i = 0; i < 100_000; i++) // profile every target before any benchmark is compiled
+            for (SubcommandInvokation invokation : sameArity) invokation.invoke(context);
+    }
+
+    @Benchmark
+    public Object methodSubcommand() {
+        method.invoke(context);
+        return BenchmarkSubcommands.sink;
+    }
+
+    @Benchmark
+    public Object commandWrapper() {
+        wrapper.invoke(context);
+        return BenchmarkSubcommands.sink;
+    }
+
+    @Benchmark
+    public Object methodSubcommandWithArguments() {
+        resolving.invoke(resolvingContext);
+        return BenchmarkSubcommands.sink;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(3)
+    public Object methodSubcommandsOfSameArity() {
+        for (SubcommandInvokation invokation : sameArity) invokation.invoke(context);
+        return BenchmarkSubcommands.sink;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import io.github.reflxction.commands.CommandCallback.CommandCallbackException;
+import io.github.reflxction.commands.CommandResolvers.Resolver;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks each built-in resolver of {@link CommandResolvers}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolverBenchmark {
+
+    private CommandContext context;
+    private CommandResolvers resolvers;
+    private Resolver<String> string;
+    private Resolver<Integer> integer;
+    private Resolver<Long> longResolver;
+    private Resolver<Double> decimal;
+    private Resolver<Float> floating;
+    private Resolver<Short> shortResolver;
+    private Resolver<Byte> byteResolver;
+    private Resolver<Player> player;
+    private Resolver<World> world;
+    private Resolver<OfflinePlayer> offlinePlayer;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        ParentCommand command = BenchmarkSubcommands.create(0);
+        CommandHandler handler = command.getCommandHandler();
+        Player sender = StandIns.join(handler, "Steve", StandIns.DISCARD);
+        context = new CommandContext(sender, new String[0], BenchmarkSubcommands.COMMAND, handler.getCommands().get("noop"), handler);
+        resolvers = handler.getResolvers();
+        string = (Resolver<String>) resolvers.get(String.class);
+        integer = (Resolver<Integer>) resolvers.get(int.class);
+        longResolver = (Resolver<Long>) resolvers.get(long.class);
+        decimal = (Resolver<Double>) resolvers.get(double.class);
+        floating = (Resolver<Float>) resolvers.get(float.class);
+        shortResolver = (Resolver<Short>) resolvers.get(short.class);
+        byteResolver = (Resolver<Byte>) resolvers.get(byte.class);
+        player = (Resolver<Player>) resolvers.get(Player.class);
+        world = (Resolver<World>) resolvers.get(World.class);
+        offlinePlayer = (Resolver<OfflinePlayer>) resolvers.get(OfflinePlayer.class);
+        offlinePlayer.resolve("Steve", context); // loads the name cache
+    }
+
+    @Benchmark
+    public String string() {
+        return string.resolve("hello", context);
+    }
+
+    @Benchmark
+    public Integer integer() {
+        return integer.resolve("123456", context);
+    }
+
+    @Benchmark
+    public int unboxedInteger() {
+        return resolvers.getIntResolver().resolve("123456", context, 0, 1000000);
+    }
+
+    @Benchmark
+    public Long longValue() {
+        return longResolver.resolve("1234567890123", context);
+    }
+
+    @Benchmark
+    public Double decimal() {
+        return decimal.resolve("1234.5678", context);
+    }
+
+    @Benchmark
+    public Float floating() {
+        return floating.resolve("1234.5678", context);
+    }
+
+    @Benchmark
+    public Short shortValue() {
+        return shortResolver.resolve("1234", context);
+    }
+
+    @Benchmark
+    public Byte byteValue() {
+        return byteResolver.resolve("123", context);
+    }
+
+    @Benchmark
+    public Player player() {
+        return player.resolve("steve", context);
+    }
+
+    @Benchmark
+    public World world() {
+        return world.resolve("world", context);
+    }
+
+    @Benchmark
+    public OfflinePlayer offlinePlayer() {
+        return offlinePlayer.resolve("Steve", context);
+    }
+
+    @Benchmark
+    public Object invalidInteger() {
+        try {
+            return integer.resolve("lots", context);
+        } catch (CommandCallbackException e) {
+            return e;
+        }
+    }
+}
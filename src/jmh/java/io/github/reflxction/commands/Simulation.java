@@ -0,0 +1,196 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import io.github.reflxction.commands.CommandMetrics.Outcome;
+import io.github.reflxction.commands.CommandMetrics.SubcommandSnapshot;
+import org.bukkit.entity.Player;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A headless load test of a command tree. Simulated players type command lines from a {@link TrafficScript}
+ * one keystroke at a time, requesting tab completions after each keystroke like a modern client does, and
+ * then execute the line. Replies are captured per player.
+ * <p>
+ * Arguments: {@code [players] [seconds] [threads] [seed]}. By default 1000 players are simulated for 10
+ * seconds on a single thread, which mirrors the server's main thread.
+ */
+public class Simulation {
+
+    /**
+     * The simulated players
+     */
+    private final List<SimulatedPlayer> players = new ArrayList<>();
+
+    /**
+     * The names of the simulated players
+     */
+    private final List<String> names = new ArrayList<>();
+
+    private final ParentCommand command;
+    private final TrafficScript script;
+    private final LongAdder allocated = new LongAdder();
+    private volatile LatencyHistogram executions = new LatencyHistogram();
+    private volatile LatencyHistogram completions = new LatencyHistogram();
+
+    /**
+     * Creates a new simulation
+     *
+     * @param command The command to simulate
+     * @param script  The lines to type
+     * @param players Amount of simulated players
+     */
+    public Simulation(ParentCommand command, TrafficScript script, int players) {
+        this.command = command;
+        this.script = script;
+        for (int i = 0; i < players; i++) {
+            SimulatedPlayer player = new SimulatedPlayer();
+            player.player = StandIns.join(command.getCommandHandler(), "Player" + i, message -> player.replies.increment());
+            this.players.add(player);
+            names.add(player.player.getName());
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        Simulation simulation = new Simulation(BenchmarkSubcommands.create(100), TrafficScript.standard(), players);
+        simulation.run(TimeUnit.SECONDS.toNanos(1), threads, seed); // warm up
+        simulation.reset();
+        long elapsed = simulation.run(TimeUnit.SECONDS.toNanos(seconds), threads, seed);
+        simulation.report(System.out, elapsed, threads);
+    }
+
+    /**
+     * Runs the simulation. The players are split evenly between the threads, and each thread lets its
+     * players type one line in turn until the duration has elapsed.
+     *
+     * @param duration How long to run, in nanoseconds
+     * @param threads  Amount of threads
+     * @param seed     Seed of the generated lines
+     * @return How long the simulation ran, in nanoseconds
+     * @throws InterruptedException If interrupted while waiting for the threads
+     */
+    public long run(long duration, int threads, long seed) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            List<SimulatedPlayer> assigned = new ArrayList<>();
+            for (int i = t; i < players.size(); i += threads) assigned.add(players.get(i));
+            Random random = new Random(seed + t);
+            Thread worker = new Thread(() -> work(assigned, random, start + duration), "Simulation-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) worker.join();
+        return System.nanoTime() - start;
+    }
+
+    private void work(List<SimulatedPlayer> assigned, Random random, long deadline) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        while (System.nanoTime() < deadline) {
+            for (SimulatedPlayer player : assigned) {
+                String line = script.next(random, names);
+                for (int i = 1; i <= line.length(); i++) {
+                    String[] args = TrafficScript.split(line.substring(0, i));
+                    long start = System.nanoTime();
+                    command.onTabComplete(player.player, BenchmarkSubcommands.COMMAND, "bench", args);
+                    completions.record(System.nanoTime() - start);
+                }
+                String[] args = TrafficScript.split(line);
+                long start = System.nanoTime();
+                command.onCommand(player.player, BenchmarkSubcommands.COMMAND, "bench", args);
+                executions.record(System.nanoTime() - start);
+            }
+        }
+        allocated.add(threads.getThreadAllocatedBytes(thread) - allocatedBefore);
+    }
+
+    /**
+     * Discards the recorded measurements
+     */
+    public void reset() {
+        executions = new LatencyHistogram();
+        completions = new LatencyHistogram();
+        allocated.reset();
+        command.getCommandHandler().getMetrics().reset();
+        for (SimulatedPlayer player : players) player.replies.reset();
+    }
+
+    /**
+     * Prints the report of the last run
+     *
+     * @param out     Stream to print to
+     * @param elapsed How long the run took, in nanoseconds
+     * @param threads Amount of threads the run used
+     */
+    public void report(PrintStream out, long elapsed, int threads) {
+        LatencyHistogram.Snapshot executions = this.executions.snapshot();
+        LatencyHistogram.Snapshot completions = this.completions.snapshot();
+        long operations = executions.getCount() + completions.getCount();
+        double seconds = elapsed / 1e9;
+        long replies = 0;
+        for (SimulatedPlayer player : players) replies += player.replies.sum();
+
+        out.printf(Locale.ROOT, "Simulated %d players on %d thread(s) for %.1f s%n", players.size(), threads, seconds);
+        out.printf(Locale.ROOT, "Throughput:  %,.0f executions/s, %,.0f completions/s%n", executions.getCount() / seconds, completions.getCount() / seconds);
+        out.printf(Locale.ROOT, "Allocation:  %,.0f bytes/op (executions and completions, including line generation)%n", operations == 0 ? 0 : (double) allocated.sum() / operations);
+        out.printf(Locale.ROOT, "Replies:     %,d%n", replies);
+        out.println();
+        out.printf(Locale.ROOT, "%-12s %10s %10s %10s %10s %10s %10s%n", "Latency (us)", "mean", "p50", "p90", "p99", "p99.9", "max");
+        row(out, "execute", executions);
+        row(out, "complete", completions);
+        out.println();
+        out.printf(Locale.ROOT, "%-14s", "Outcomes");
+        for (Outcome outcome : Outcome.values()) out.printf(Locale.ROOT, " %14s", outcome.name().toLowerCase(Locale.ROOT));
+        out.println();
+        CommandMetrics.Snapshot metrics = command.getCommandHandler().getMetrics().snapshot();
+        for (Entry<String, SubcommandSnapshot> entry : metrics.getSubcommands().entrySet()) {
+            out.printf(Locale.ROOT, "%-14s", entry.getKey());
+            for (Outcome outcome : Outcome.values()) out.printf(Locale.ROOT, " %,14d", entry.getValue().getCount(outcome));
+            out.println();
+        }
+        out.printf(Locale.ROOT, "%-14s %,14d%n", "(unknown)", metrics.getUnknownCommands());
+    }
+
+    private static void row(PrintStream out, String name, LatencyHistogram.Snapshot histogram) {
+        out.printf(Locale.ROOT, "%-12s %10.2f %10.2f %10.2f %10.2f %10.2f %10.2f%n", name, histogram.getMean() / 1e3,
+                histogram.getPercentile(50) / 1e3, histogram.getPercentile(90) / 1e3, histogram.getPercentile(99) / 1e3,
+                histogram.getPercentile(99.9) / 1e3, histogram.getMax() / 1e3);
+    }
+
+    /**
+     * A simulated player, and the amount of replies they received
+     */
+    private static final class SimulatedPlayer {
+
+        private final LongAdder replies = new LongAdder();
+        private Player player;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link ParentCommand#onTabComplete} with small and large registries
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TabCompleteBenchmark {
+
+    /**
+     * The amount of generated subcommands, in addition to the benchmark ones
+     */
+    @Param({"10", "10000"})
+    public int subcommands;
+
+    /**
+     * The amount of online players
+     */
+    @Param({"100"})
+    public int players;
+
+    private final String[] firstArgument = {"sub1"};
+    private final String[] everySubcommand = {""};
+    private final String[] staticTabs = {"tp", "world_"};
+    private final String[] playerNames = {"give", "Player1"};
+
+    private ParentCommand command;
+    private Player player;
+
+    @Setup
+    public void setup() {
+        command = BenchmarkSubcommands.create(subcommands);
+        for (int i = 0; i < players; i++)
+            StandIns.join(command.getCommandHandler(), "Player" + i, StandIns.DISCARD);
+        player = StandIns.join(command.getCommandHandler(), "Steve", StandIns.DISCARD);
+    }
+
+    @Benchmark
+    public List<String> firstArgument() {
+        return command.onTabComplete(player, BenchmarkSubcommands.COMMAND, "bench", firstArgument);
+    }
+
+    @Benchmark
+    public List<String> everySubcommand() {
+        return command.onTabComplete(player, BenchmarkSubcommands.COMMAND, "bench", everySubcommand);
+    }
+
+    @Benchmark
+    public List<String> staticTabs() {
+        return command.onTabComplete(player, BenchmarkSubcommands.COMMAND, "bench", staticTabs);
+    }
+
+    @Benchmark
+    public List<String> playerNames() {
+        return command.onTabComplete(player, BenchmarkSubcommands.COMMAND, "bench", playerNames);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A weighted mix of command lines which simulated senders type. Templates may contain placeholders,
+ * which are replaced every time a line is generated:
+ * <ul>
+ *     <li>{@code {player}}: the name of a random online player</li>
+ *     <li>{@code {amount}}: a random number between 1 and 64</li>
+ *     <li>{@code {words}}: one to eight random words</li>
+ * </ul>
+ */
+public class TrafficScript {
+
+    private static final String[] WORDS = {"hello", "there", "anyone", "selling", "diamonds", "meet", "at", "spawn", "gg", "lag"};
+
+    /**
+     * The line templates
+     */
+    private final List<String> templates = new ArrayList<>();
+
+    /**
+     * The cumulative weight of each template
+     */
+    private final List<Integer> weights = new ArrayList<>();
+
+    private int totalWeight;
+
+    /**
+     * Returns the standard mix for {@link BenchmarkSubcommands}: mostly valid commands, with typos,
+     * invalid usages and invalid arguments mixed in
+     *
+     * @return The script
+     */
+    public static TrafficScript standard() {
+        return new TrafficScript()
+                .add(25, "noop")
+                .add(20, "give {player} {amount}")
+                .add(10, "say {words}")
+                .add(5, "tp world_nether")
+                .add(5, "teleport world")
+                .add(5, "noopcallback")
+                .add(10, "giev {player} {amount}") // unknown subcommand
+                .add(10, "give {player}") // invalid usage
+                .add(5, "give {player} lots") // invalid argument
+                .add(5, "fail");
+    }
+
+    /**
+     * Adds a line template
+     *
+     * @param weight   How often is this line typed, relative to the other lines
+     * @param template The line, without the command label
+     * @return This script instance
+     */
+    public TrafficScript add(int weight, String template) {
+        totalWeight += weight;
+        templates.add(template);
+        weights.add(totalWeight);
+        return this;
+    }
+
+    /**
+     * Generates the next line
+     *
+     * @param random  Source of randomness
+     * @param players Names of the online players
+     * @return The command line
+     */
+    public String next(Random random, List<String> players) {
+        int roll = random.nextInt(totalWeight);
+        int index = 0;
+        while (weights.get(index) <= roll) index++;
+        String line = templates.get(index);
+        if (line.indexOf('{') < 0) return line;
+        StringBuilder builder = new StringBuilder();
+        for (String token : line.split(" ")) {
+            if (builder.length() > 0) builder.append(' ');
+            switch (token) {
+                case "{player}":
+                    builder.append(players.get(random.nextInt(players.size())));
+                    break;
+                case "{amount}":
+                    builder.append(1 + random.nextInt(64));
+                    break;
+                case "{words}":
+                    for (int i = random.nextInt(8); i >= 0; i--)
+                        builder.append(WORDS[random.nextInt(WORDS.length)]).append(i == 0 ? "" : " ");
+                    break;
+                default:
+                    builder.append(token);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Splits a line into arguments the way Bukkit does, keeping a trailing empty argument when the line
+     * ends with a space
+     *
+     * @param line Line to split
+     * @return The arguments
+     */
+    public static String[] split(String line) {
+        return line.split(" ", -1);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import java.util.Arrays;
+
+/**
+ * A read-only view over a range of a command's arguments. Views share the original array, so slicing
+ * does not copy any arguments.
+ */
+public final class Arguments {
+
+    /**
+     * The maximum capacity of a join builder which will be kept for reuse
+     */
+    private static final int MAX_BUILDER_CAPACITY = 1024;
+
+    /**
+     * A builder reused by {@link #join(int)} on each thread
+     */
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(StringBuilder::new);
+
+    /**
+     * The original arguments array
+     */
+    private final String[] array;
+
+    /**
+     * The index of the first argument of this view in the array
+     */
+    private final int offset;
+
+    /**
+     * The amount of arguments in this view
+     */
+    private final int length;
+
+    private Arguments(String[] array, int offset, int length) {
+        this.array = array;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Creates a view over all the specified arguments
+     *
+     * @param array Arguments to view
+     * @return The arguments view
+     */
+    public static Arguments of(String[] array) {
+        return new Arguments(array, 0, array.length);
+    }
+
+    /**
+     * Creates a view over the specified arguments, starting from the specified index
+     *
+     * @param array Arguments to view
+     * @param from  Index of the first argument
+     * @return The arguments view
+     */
+    public static Arguments of(String[] array, int from) {
+        from = Math.min(from, array.length);
+        return new Arguments(array, from, array.length - from);
+    }
+
+    /**
+     * Returns the argument at the specified index
+     *
+     * @param index Index of the argument
+     * @return The argument
+     * @throws IndexOutOfBoundsException If the index is outside this view
+     */
+    public String get(int index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + length);
+        return array[offset + index];
+    }
+
+    /**
+     * Returns the last argument
+     *
+     * @return The last argument
+     * @throws IndexOutOfBoundsException If this view is empty
+     */
+    public String last() {
+        return get(length - 1);
+    }
+
+    /**
+     * Returns the amount of arguments
+     *
+     * @return The size
+     */
+    public int size() {
+        return length;
+    }
+
+    /**
+     * Returns whether are there no arguments
+     *
+     * @return True if empty
+     */
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * Returns a view of the arguments starting from the specified index
+     *
+     * @param from Index of the first argument, inclusive
+     * @return The arguments view
+     */
+    public Arguments slice(int from) {
+        return slice(from, length);
+    }
+
+    /**
+     * Returns a view of the arguments in the specified range
+     *
+     * @param from Index of the first argument, inclusive
+     * @param to   Index of the last argument, exclusive
+     * @return The arguments view
+     */
+    public Arguments slice(int from, int to) {
+        if (from < 0 || to > length || from > to)
+            throw new IndexOutOfBoundsException("Range: [" + from + ", " + to + "), Size: " + length);
+        return new Arguments(array, offset + from, to - from);
+    }
+
+    /**
+     * Combines the arguments starting from the specified index, separated by a space
+     *
+     * @param start Index of the first argument
+     * @return The combined string
+     */
+    public String join(int start) {
+        if (start >= length) return "";
+        if (start == length - 1) return array[offset + start].trim();
+        StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        for (int i = start; i < length; i++) {
+            if (i > start) builder.append(' ');
+            builder.append(array[offset + i]);
+        }
+        String joined = builder.toString().trim();
+        if (builder.capacity() > MAX_BUILDER_CAPACITY) BUILDER.remove();
+        return joined;
+    }
+
+    /**
+     * Copies the arguments of this view into a new array
+     *
+     * @return The arguments array
+     */
+    public String[] toArray() {
+        return Arrays.copyOfRange(array, offset, offset + length);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * An immutable Burkhard-Keller tree of string keys, which finds all keys within an edit distance of a query.
+ * <p>
+ * Each child of a node is stored under its distance to the node. By the triangle inequality, a query within
+ * distance {@code k} of a node at distance {@code d} only needs to visit the children stored under
+ * {@code d - k} to {@code d + k}, so a query with a small distance visits a small part of the tree.
+ * <p>
+ * The distance is the Levenshtein distance, with characters compared ignoring case.
+ *
+ * @param <V> The type of values associated with each key
+ */
+public class BKTree<V> {
+
+    /**
+     * The longest query which is looked up. Longer queries have no matches, which bounds the cost of a query
+     */
+    public static final int MAX_QUERY_LENGTH = 64;
+
+    /**
+     * The root node, or null if the tree is empty
+     */
+    private final Node root;
+
+    /**
+     * The length of the longest key
+     */
+    private final int longestKey;
+
+    /**
+     * Creates a new tree from the specified entries
+     *
+     * @param entries Entries to index
+     */
+    public BKTree(Map<String, ? extends V> entries) {
+        Node root = null;
+        int longestKey = 0;
+        int[] row = new int[0];
+        for (Entry<String, ? extends V> entry : entries.entrySet()) {
+            Node node = new Node(entry.getKey(), entry.getValue());
+            longestKey = Math.max(longestKey, node.key.length());
+            if (row.length < (longestKey + 1) * 2) row = new int[(longestKey + 1) * 2];
+            if (root == null) root = node;
+            else root.insert(node, row);
+        }
+        this.root = root;
+        this.longestKey = longestKey;
+    }
+
+    /**
+     * Returns all keys within the specified distance of the query, closest first. Keys at the same distance
+     * are sorted lexicographically.
+     *
+     * @param query       Query to look up
+     * @param maxDistance The maximum distance, inclusive
+     * @return The matches
+     */
+    public List<Match<V>> search(String query, int maxDistance) {
+        List<Match<V>> matches = new ArrayList<>();
+        if (root == null || query.length() > MAX_QUERY_LENGTH) return matches;
+        int[] row = new int[(Math.max(longestKey, query.length()) + 1) * 2];
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = distance(node.key, query, row);
+            if (distance <= maxDistance) matches.add(new Match<>(node.key, node.value(), distance));
+            for (int i = 0; i < node.size; i++)
+                if (Math.abs(node.distances[i] - distance) <= maxDistance) pending.push(node.children[i]);
+        }
+        matches.sort(Comparator.<Match<V>>comparingInt(Match::getDistance).thenComparing(Match::getKey));
+        return matches;
+    }
+
+    /**
+     * Computes the case-insensitive Levenshtein distance between two strings, using two rows of the
+     * specified buffer
+     *
+     * @param a   The first string
+     * @param b   The second string
+     * @param row Buffer of at least {@code 2 * (b.length() + 1)} elements
+     * @return The distance
+     */
+    static int distance(String a, String b, int[] row) {
+        int width = b.length() + 1;
+        int previous = 0, current = width;
+        for (int j = 0; j < width; j++) row[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            char c = fold(a.charAt(i - 1));
+            row[current] = i;
+            for (int j = 1; j < width; j++) {
+                int cost = c == fold(b.charAt(j - 1)) ? 0 : 1;
+                row[current + j] = Math.min(Math.min(row[current + j - 1], row[previous + j]) + 1, row[previous + j - 1] + cost);
+            }
+            int swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return row[previous + width - 1];
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * A node of the tree
+     */
+    private static final class Node {
+
+        private final String key;
+        private final Object value;
+        private int[] distances = new int[0];
+        private Node[] children = new Node[0];
+        private int size;
+
+        private Node(String key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        private void insert(Node node, int[] row) {
+            Node parent = this;
+            while (true) {
+                int distance = distance(parent.key, node.key, row);
+                Node child = parent.child(distance);
+                if (child == null) {
+                    parent.add(distance, node);
+                    return;
+                }
+                parent = child;
+            }
+        }
+
+        private Node child(int distance) {
+            for (int i = 0; i < size; i++)
+                if (distances[i] == distance) return children[i];
+            return null;
+        }
+
+        private void add(int distance, Node child) {
+            if (size == children.length) {
+                distances = Arrays.copyOf(distances, Math.max(4, size * 2));
+                children = Arrays.copyOf(children, distances.length);
+            }
+            distances[size] = distance;
+            children[size++] = child;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <V> V value() {
+            return (V) value;
+        }
+    }
+
+    /**
+     * A key found by a search
+     *
+     * @param <V> The type of the value
+     */
+    public static final class Match<V> {
+
+        private final String key;
+        private final V value;
+        private final int distance;
+
+        private Match(String key, V value, int distance) {
+            this.key = key;
+            this.value = value;
+            this.distance = distance;
+        }
+
+        /**
+         * Returns the matched key
+         *
+         * @return The key
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Returns the value of the matched key
+         *
+         * @return The value
+         */
+        public V getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the distance between the key and the query
+         *
+         * @return The edit distance
+         */
+        public int getDistance() {
+            return distance;
+        }
+    }
+}
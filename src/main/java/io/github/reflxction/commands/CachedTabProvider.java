@@ -0,0 +1,356 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import io.github.reflxction.commands.CommandMetrics.CacheResult;
+import io.github.reflxction.commands.PluginSubcommand.TabContext;
+import io.github.reflxction.commands.PluginSubcommand.TabProvider;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Entity;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caches the tabs of an expensive {@link TabProvider}, and serves them stale while they are refreshed.
+ * <p>
+ * Tabs are cached per {@link Scope scope} and per arguments preceding the one being completed, since
+ * providers may complete differently depending on them. The first request of each such key calls the
+ * provider directly, and concurrent requests of the same key wait for it rather than calling the provider
+ * again. Later requests are served the cached tabs immediately, and once they are older than the policy's
+ * time to live, the provider is called again on the {@link CommandHandler#getTabExecutor() tab executor}
+ * while the stale tabs keep being served. If the refresh fails, the stale tabs are kept and the next
+ * request tries again.
+ * <p>
+ * Since refreshes run off the main thread, the cached provider must be thread-safe. Lookups are recorded
+ * in the handler's {@link CommandMetrics}.
+ *
+ * @see CommandResolvers#registerTabProvider(String, TabProvider, Policy)
+ */
+public class CachedTabProvider implements TabProvider {
+
+    /**
+     * The key of the single entry of global caches
+     */
+    private static final Object GLOBAL = new Object();
+
+    /**
+     * The key of senders which are not in a world, such as the console
+     */
+    private static final Object NO_WORLD = new Object();
+
+    /**
+     * The key this provider is registered for
+     */
+    private final String key;
+
+    /**
+     * The cached provider
+     */
+    private final TabProvider provider;
+
+    /**
+     * How long the tabs are served before being refreshed, in nanoseconds
+     */
+    private final long ttl;
+
+    /**
+     * How are the tabs scoped
+     */
+    private final Scope scope;
+
+    /**
+     * The cached tabs of each scope and preceding arguments, in access order so the least recently used
+     * entry is evicted first
+     */
+    private final LinkedHashMap<Object, CachedTabs> entries;
+
+    /**
+     * The first loads of keys which are not cached yet. Guarded by {@link #entries}
+     */
+    private final Map<Object, CompletableFuture<List<String>>> loading = new HashMap<>();
+
+    /**
+     * Creates a new cached provider
+     *
+     * @param key      The key the provider is registered for, used in metrics
+     * @param provider The provider to cache
+     * @param policy   How to cache the provider's tabs
+     */
+    public CachedTabProvider(String key, TabProvider provider, Policy policy) {
+        this.key = key;
+        this.provider = provider;
+        this.ttl = policy.ttl;
+        this.scope = policy.scope;
+        int maxSize = policy.maxSize;
+        this.entries = new LinkedHashMap<Object, CachedTabs>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, CachedTabs> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Override
+    public List<String> getTab(TabContext context) {
+        CommandHandler handler = context.getHandler();
+        Object cacheKey = context.precedingKey(scope.key(context.getSender()));
+        CachedTabs entry;
+        CompletableFuture<List<String>> load = null;
+        boolean first = false;
+        synchronized (entries) {
+            entry = entries.get(cacheKey);
+            if (entry == null && (load = loading.get(cacheKey)) == null) {
+                loading.put(cacheKey, load = new CompletableFuture<>());
+                first = true;
+            }
+        }
+        if (entry == null) {
+            handler.getMetrics().recordTabCache(key, CacheResult.MISS);
+            return first ? load(cacheKey, load, context) : await(load, handler);
+        }
+        if (System.nanoTime() - entry.loaded <= ttl) {
+            handler.getMetrics().recordTabCache(key, CacheResult.HIT);
+            return entry.tabs;
+        }
+        handler.getMetrics().recordTabCache(key, CacheResult.STALE);
+        if (entry.refreshing.compareAndSet(false, true)) {
+            try {
+                TabContext refreshContext = loadContext(context);
+                handler.getTabExecutor().execute(() -> refresh(entry, refreshContext));
+            } catch (RejectedExecutionException e) {
+                entry.refreshing.set(false);
+            }
+        }
+        return entry.tabs;
+    }
+
+    /**
+     * Calls the provider for a key which is not cached, and completes the load which concurrent requests
+     * of the key wait for
+     */
+    private List<String> load(Object cacheKey, CompletableFuture<List<String>> load, TabContext context) {
+        List<String> tabs = null;
+        try {
+            tabs = provider.getTab(loadContext(context));
+            return tabs;
+        } finally {
+            synchronized (entries) {
+                // null tabs are not cached, so that Bukkit keeps handling them
+                if (loading.remove(cacheKey, load) && tabs != null)
+                    entries.put(cacheKey, new CachedTabs(tabs, System.nanoTime()));
+            }
+            load.complete(tabs); // a failed load completes with no tabs, the request which ran it gets the error
+        }
+    }
+
+    /**
+     * Waits for the load of the same key by another request, as long as the handler waits for asynchronous
+     * tab providers. Returns no tabs if the load takes longer.
+     */
+    private static List<String> await(CompletableFuture<List<String>> load, CommandHandler handler) {
+        try {
+            return load.get(handler.tabTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return Collections.emptyList();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Returns the context to call the provider with. Global tabs are shared by all senders, so they are
+     * loaded as the console rather than as whichever sender requested them.
+     */
+    private TabContext loadContext(TabContext context) {
+        if (scope != Scope.GLOBAL) return context;
+        return new TabContext(context.getArguments(), Bukkit.getConsoleSender(), context.getFakeContext().getSubscription(),
+                context.getCommand(), context.getHandler());
+    }
+
+    private void refresh(CachedTabs entry, TabContext context) {
+        try {
+            List<String> tabs = provider.getTab(context);
+            if (tabs != null) {
+                entry.tabs = tabs;
+                entry.loaded = System.nanoTime();
+            }
+        } catch (Throwable t) {
+            t.printStackTrace();
+        } finally {
+            entry.refreshing.set(false);
+        }
+    }
+
+    /**
+     * Discards all cached tabs, so that the next request of each key calls the provider again
+     */
+    public void invalidate() {
+        synchronized (entries) {
+            entries.clear();
+            loading.clear(); // the loads in progress are not cached either
+        }
+    }
+
+    /**
+     * Returns the amount of cached entries, one for each scope and preceding arguments
+     *
+     * @return The amount of entries
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the cached provider
+     *
+     * @return The provider
+     */
+    public TabProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * What the cached tabs are shared between
+     */
+    public enum Scope {
+
+        /**
+         * The tabs are shared by all senders. The provider is called with the console as the sender, so
+         * that the tabs do not depend on whichever sender requested them.
+         */
+        GLOBAL {
+            @Override
+            Object key(CommandSender sender) {
+                return CachedTabProvider.GLOBAL;
+            }
+        },
+
+        /**
+         * The tabs are shared by the senders in the same world. Senders which are not in a world share
+         * the same tabs. The provider is called with the sender whose request loaded the tabs, so it
+         * should only depend on the sender's world.
+         */
+        WORLD {
+            @Override
+            Object key(CommandSender sender) {
+                return sender instanceof Entity ? ((Entity) sender).getWorld().getName() : NO_WORLD;
+            }
+        },
+
+        /**
+         * Each sender has its own tabs
+         */
+        SENDER {
+            @Override
+            Object key(CommandSender sender) {
+                return SenderExecutor.key(sender);
+            }
+        };
+
+        /**
+         * Returns the key of the entry which the sender's tabs are cached in
+         */
+        abstract Object key(CommandSender sender);
+    }
+
+    /**
+     * How the tabs of a provider are cached
+     */
+    public static class Policy {
+
+        /**
+         * How long the tabs are served before being refreshed, in nanoseconds
+         */
+        private final long ttl;
+
+        /**
+         * The maximum amount of cached entries
+         */
+        private int maxSize = 1024;
+
+        /**
+         * How are the tabs scoped
+         */
+        private Scope scope = Scope.GLOBAL;
+
+        /**
+         * Creates a new global policy
+         *
+         * @param ttl  How long the tabs are served before being refreshed in the background
+         * @param unit Unit of the time to live
+         */
+        public Policy(long ttl, TimeUnit unit) {
+            this.ttl = unit.toNanos(ttl);
+        }
+
+        /**
+         * Sets the maximum amount of cached entries, one for each scope and preceding arguments. When
+         * exceeded, the least recently used tabs are discarded
+         *
+         * @param maxSize The maximum amount of entries
+         * @return This policy instance
+         */
+        public Policy setMaxSize(int maxSize) {
+            if (maxSize < 1) throw new IllegalArgumentException("maxSize must be positive");
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * Sets what the cached tabs are shared between
+         *
+         * @param scope The scope
+         * @return This policy instance
+         */
+        public Policy setScope(Scope scope) {
+            this.scope = scope;
+            return this;
+        }
+    }
+
+    /**
+     * The cached tabs of a scope and preceding arguments
+     */
+    private static final class CachedTabs {
+
+        private volatile List<String> tabs;
+        private volatile long loaded;
+
+        /**
+         * Whether is a refresh in progress, so that only one runs at a time
+         */
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private CachedTabs(List<String> tabs, long loaded) {
+            this.tabs = tabs;
+            this.loaded = loaded;
+        }
+    }
+}
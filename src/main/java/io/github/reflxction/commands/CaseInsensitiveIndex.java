@@ -0,0 +1,107 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * An immutable hash table of string keys which are looked up ignoring case. Characters are case-folded
+ * while hashing and comparing, so lookups do not create a lower case copy of the key.
+ * <p>
+ * Keys are compared like {@link String#equalsIgnoreCase(String)}.
+ *
+ * @param <V> The type of values associated with each key
+ */
+public class CaseInsensitiveIndex<V> {
+
+    /**
+     * The keys, at the slot of their folded hash. Empty slots are null
+     */
+    private final String[] keys;
+
+    /**
+     * The values, in the same slots as {@link #keys}
+     */
+    private final Object[] values;
+
+    /**
+     * The mask applied to hashes, the amount of slots minus one
+     */
+    private final int mask;
+
+    /**
+     * Creates a new index from the specified entries. When several keys only differ in case, the key of
+     * the earliest map is kept, and within a map the lexicographically smallest key.
+     *
+     * @param entries Maps of the entries to index, by precedence
+     */
+    @SafeVarargs
+    public CaseInsensitiveIndex(Map<String, ? extends V>... entries) {
+        int size = 0;
+        for (Map<String, ? extends V> map : entries) size += map.size();
+        int capacity = Integer.highestOneBit(Math.max(2, size * 2 - 1)) << 1; // load factor of at most 0.5
+        keys = new String[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        int[] precedence = new int[capacity];
+        for (int i = 0; i < entries.length; i++) {
+            for (Entry<String, ? extends V> entry : entries[i].entrySet()) {
+                String key = entry.getKey();
+                int slot = slot(key);
+                if (keys[slot] != null && (precedence[slot] < i || keys[slot].compareTo(key) <= 0)) continue;
+                keys[slot] = key;
+                values[slot] = entry.getValue();
+                precedence[slot] = i;
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the key which equals the specified key ignoring case
+     *
+     * @param key Key to look up
+     * @return The value, or null if there is no such key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(String key) {
+        return (V) values[slot(key)];
+    }
+
+    /**
+     * Returns the slot of the specified key: either the slot which holds a key equal to it ignoring case,
+     * or the empty slot where it would be inserted
+     */
+    private int slot(String key) {
+        int length = key.length();
+        int hash = 0;
+        for (int i = 0; i < length; i++) hash = 31 * hash + fold(key.charAt(i));
+        hash ^= hash >>> 16;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            String candidate = keys[slot];
+            if (candidate == null || (candidate.length() == length && candidate.regionMatches(true, 0, key, 0, length)))
+                return slot;
+        }
+    }
+
+    /**
+     * Folds the case of a character the same way {@link String#regionMatches(boolean, int, String, int, int)}
+     * compares characters
+     */
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
@@ -37,9 +37,17 @@ public interface CommandCallback {
     /**
      * Thrown when an exception occurs in the command. This will stop all the executing process
      * of the command.
+     * <p>
+     * As this is only used for control flow, it does not capture a stack trace.
      */
     class CommandCallbackException extends RuntimeException {
 
+        /**
+         * A shared exception with an empty message, used to stop the command after a reply has already
+         * been sent. Prefer throwing this over creating a new empty exception.
+         */
+        public static final CommandCallbackException SILENT = new CommandCallbackException();
+
         /**
          * Whether should the command be prefixed
          */
@@ -58,7 +66,7 @@ public interface CommandCallback {
          * @param message Message to send to the command sender
          */
         public CommandCallbackException(String message) {
-            super(colorize(message));
+            super(colorize(message), null, false, false);
             this.prefix = true;
         }
 
@@ -16,11 +16,20 @@
 package io.github.reflxction.commands;
 
 import io.github.reflxction.commands.CommandCallback.CommandCallbackException;
+import io.github.reflxction.commands.CommandMetrics.Outcome;
 import io.github.reflxction.commands.CommandResolvers.Resolver;
+import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.permissions.Permission;
+import org.bukkit.plugin.Plugin;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Represents the data of a command
@@ -35,7 +44,12 @@ public class CommandContext {
     /**
      * The command arguments
      */
-    private final String[] args;
+    private final Arguments arguments;
+
+    /**
+     * The command arguments as an array. Copied lazily from {@link #arguments}
+     */
+    private String[] args;
 
     /**
      * The main Bukkit command
@@ -52,6 +66,21 @@ public class CommandContext {
      */
     private final CommandHandler commandHandler;
 
+    /**
+     * How the command ended, recorded in the handler's metrics
+     */
+    Outcome outcome = Outcome.SUCCESS;
+
+    /**
+     * The name or alias the subcommand was invoked with
+     */
+    String label;
+
+    /**
+     * The suggested subcommands for an invalid subcommand. Looked up lazily
+     */
+    private List<String> suggestions;
+
     /**
      * Creates a new command context
      *
@@ -62,8 +91,22 @@ public class CommandContext {
      * @param commandHandler The command handler invoking this command
      */
     public CommandContext(CommandSender sender, String[] args, Command command, SubcommandInvokation wrapper, CommandHandler commandHandler) {
-        this.sender = sender;
+        this(sender, Arguments.of(args), command, wrapper, commandHandler);
         this.args = args;
+    }
+
+    /**
+     * Creates a new command context
+     *
+     * @param sender         The command sender
+     * @param arguments      The command arguments
+     * @param command        The internal Bukkit command
+     * @param wrapper        The command subscription this is being ran for
+     * @param commandHandler The command handler invoking this command
+     */
+    public CommandContext(CommandSender sender, Arguments arguments, Command command, SubcommandInvokation wrapper, CommandHandler commandHandler) {
+        this.sender = sender;
+        this.arguments = arguments;
         this.command = command;
         this.subscription = wrapper;
         this.commandHandler = commandHandler;
@@ -79,14 +122,48 @@ public class CommandContext {
     }
 
     /**
-     * Returns the command arguments
+     * Returns the command arguments. The array is copied the first time this is called, so
+     * {@link #getArguments()} should be preferred.
      *
      * @return The arguments
      */
     public String[] getArgs() {
+        if (args == null) args = arguments.toArray();
         return args;
     }
 
+    /**
+     * Returns the command arguments
+     *
+     * @return The arguments view
+     */
+    public Arguments getArguments() {
+        return arguments;
+    }
+
+    /**
+     * Returns the name or alias the subcommand was invoked with, as typed by the sender
+     *
+     * @return The subcommand label, or null if the context was not created by a handler
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Returns the names of the subcommands closest to the label which the sender may use, closest first.
+     * This is mainly useful in {@link ParentCommand#setOnInvalidCommand(Consumer)}, to suggest what the
+     * sender probably meant.
+     *
+     * @return The suggestions, or an empty list if none is close enough
+     * @see CommandHandler#getSuggestions(CommandSender, String)
+     */
+    public List<String> getSuggestions() {
+        if (suggestions == null)
+            suggestions = label == null ? Collections.emptyList() : commandHandler.getSuggestions(sender, label);
+        return suggestions;
+    }
+
     /**
      * Returns the internal Bukkit command
      *
@@ -118,7 +195,7 @@ public class CommandContext {
      * @return The requested type
      */
     public <R> R resolve(int index, Class<R> type) {
-        return resolve(args[index], type);
+        return resolve(arguments.get(index), type);
     }
 
     /**
@@ -137,13 +214,95 @@ public class CommandContext {
         return resolver.resolve(argument, this);
     }
 
+    /**
+     * Resolves the parameter in the specified index to an integer, without boxing
+     *
+     * @param index Index of the parameter
+     * @return The integer
+     */
+    public int resolveInt(int index) {
+        return resolveInt(index, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Resolves the parameter in the specified index to an integer in the specified range, without boxing
+     *
+     * @param index Index of the parameter
+     * @param min   The minimum value, inclusive
+     * @param max   The maximum value, inclusive
+     * @return The integer
+     */
+    public int resolveInt(int index, int min, int max) {
+        long start = System.nanoTime();
+        try {
+            return commandHandler.getResolvers().getIntResolver().resolve(arguments.get(index), this, min, max);
+        } finally {
+            commandHandler.getMetrics().recordResolver("int", System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Resolves the parameter in the specified index to a long, without boxing
+     *
+     * @param index Index of the parameter
+     * @return The long
+     */
+    public long resolveLong(int index) {
+        return resolveLong(index, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Resolves the parameter in the specified index to a long in the specified range, without boxing
+     *
+     * @param index Index of the parameter
+     * @param min   The minimum value, inclusive
+     * @param max   The maximum value, inclusive
+     * @return The long
+     */
+    public long resolveLong(int index, long min, long max) {
+        long start = System.nanoTime();
+        try {
+            return commandHandler.getResolvers().getLongResolver().resolve(arguments.get(index), this, min, max);
+        } finally {
+            commandHandler.getMetrics().recordResolver("long", System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Resolves the parameter in the specified index to a double, without boxing
+     *
+     * @param index Index of the parameter
+     * @return The double
+     */
+    public double resolveDouble(int index) {
+        return resolveDouble(index, -Double.MAX_VALUE, Double.MAX_VALUE);
+    }
+
+    /**
+     * Resolves the parameter in the specified index to a double in the specified range, without boxing
+     *
+     * @param index Index of the parameter
+     * @param min   The minimum value, inclusive
+     * @param max   The maximum value, inclusive
+     * @return The double
+     */
+    public double resolveDouble(int index, double min, double max) {
+        long start = System.nanoTime();
+        try {
+            return commandHandler.getResolvers().getDoubleResolver().resolve(arguments.get(index), this, min, max);
+        } finally {
+            commandHandler.getMetrics().recordResolver("double", System.nanoTime() - start);
+        }
+    }
+
     /**
      * Does a check to make sure the sender is a player, otherwise stops the command execution
      */
     public void requirePlayer() {
         if (!(sender instanceof Player)) {
+            fail(Outcome.NOT_PLAYER);
             commandHandler.notPlayer.accept(this);
-            throw new CommandCallbackException();
+            throw CommandCallbackException.SILENT;
         }
     }
 
@@ -153,7 +312,7 @@ public class CommandContext {
      * @param length Length to require as a minimum
      */
     public void requireArgs(int length) {
-        if (args.length < length)
+        if (arguments.size() < length)
             invalidUsage();
     }
 
@@ -161,8 +320,9 @@ public class CommandContext {
      * Throws an invalid usage exception. This stops the command execution
      */
     public void invalidUsage() {
+        fail(Outcome.INVALID_USAGE);
         commandHandler.invalidCommandUsage.accept(this);
-        throw new CommandCallbackException();
+        throw CommandCallbackException.SILENT;
     }
 
     /**
@@ -183,19 +343,71 @@ public class CommandContext {
     public void checkPermission(Object permission) {
         if (permission instanceof Permission) {
             if (!sender.hasPermission((Permission) permission)) {
+                fail(Outcome.NO_PERMISSION);
                 commandHandler.noPermission.accept(this);
-                throw new CommandCallbackException();
+                throw CommandCallbackException.SILENT;
             }
         } else if (permission instanceof String) {
             if (!sender.hasPermission((String) permission)) {
+                fail(Outcome.NO_PERMISSION);
                 commandHandler.noPermission.accept(this);
-                throw new CommandCallbackException();
+                throw CommandCallbackException.SILENT;
             }
         } else {
             throw new CommandCallbackException("&cFailed to do permission checks: &eInvalid permission specifier: &b" + permission.getClass().getName());
         }
     }
 
+    /**
+     * Records why the command failed, unless a reason has already been recorded
+     *
+     * @param outcome The failure reason
+     */
+    void fail(Outcome outcome) {
+        if (this.outcome == Outcome.SUCCESS) this.outcome = outcome;
+    }
+
+    /**
+     * Runs the specified task on the main server thread. If this is already the main thread, the task runs
+     * immediately. This should be used by asynchronous commands to access the Bukkit API.
+     *
+     * @param task Task to run
+     * @return A future which completes after the task has ran
+     */
+    public CompletableFuture<Void> sync(Runnable task) {
+        return sync(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Computes a value on the main server thread. If this is already the main thread, the value is
+     * computed immediately.
+     *
+     * @param task Task to compute the value
+     * @param <R>  The value type
+     * @return A future of the value
+     */
+    public <R> CompletableFuture<R> sync(Supplier<R> task) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        Runnable runnable = () -> {
+            try {
+                future.complete(task.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        };
+        if (Bukkit.isPrimaryThread()) runnable.run();
+        else {
+            Plugin plugin = commandHandler.getPlugin();
+            if (plugin == null)
+                throw new IllegalStateException("Cannot run tasks on the main thread: No plugin is set in the command handler");
+            Bukkit.getScheduler().runTask(plugin, runnable);
+        }
+        return future;
+    }
+
     /**
      * Replies with the specified message and prefixes it with the appropriate prefix (extension or global as a fallback)
      *
@@ -212,10 +424,7 @@ public class CommandContext {
      * @return The combined string
      */
     public String join(int start) {
-        StringBuilder builder = new StringBuilder();
-        for (int i = start; i < args.length; i++)
-            builder.append(args[i]).append(" ");
-        return builder.toString().trim();
+        return arguments.join(start);
     }
 
     /**
@@ -15,20 +15,39 @@
  */
 package io.github.reflxction.commands;
 
+import io.github.reflxction.commands.BKTree.Match;
 import io.github.reflxction.commands.CommandCallback.CommandCallbackException;
+import io.github.reflxction.commands.CommandMetrics.Outcome;
 import io.github.reflxction.commands.CommandResolvers.ResolverFallback;
-import org.apache.commons.lang.ArrayUtils;
+import io.github.reflxction.commands.MethodSubcommand.MethodInvoker;
+import io.github.reflxction.commands.RateLimiter.RateLimitFallback;
+import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
+import org.bukkit.permissions.Permission;
+import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * The command processor
@@ -36,14 +55,60 @@ import java.util.stream.Collectors;
 public class CommandHandler {
 
     /**
-     * A map of all commands
+     * The maximum amount of threads of the default tab executor
      */
-    private final Map<String, SubcommandInvokation> commands = new HashMap<>();
+    private static final int TAB_THREADS = 4;
 
     /**
-     * A map of all commands, main names only
+     * The maximum amount of tab tasks waiting for a thread of the default tab executor
      */
-    private final Map<String, SubcommandInvokation> namesOnly = new HashMap<>();
+    private static final int TAB_QUEUE_SIZE = 64;
+
+    /**
+     * The registered commands. Replaced as a whole whenever a command is registered or unregistered, so it
+     * can be read from any thread without locking
+     */
+    private volatile Registry registry = Registry.EMPTY;
+
+    /**
+     * The ordinal assigned to the next registered subcommand
+     */
+    private int nextOrdinal = 0;
+
+    /**
+     * The permission snapshots of senders
+     */
+    private final PermissionSnapshots permissions = new PermissionSnapshots();
+
+    /**
+     * The last tab completions of each sender
+     */
+    private final NarrowingCache narrowingCache = new NarrowingCache();
+
+    /**
+     * The metrics of this handler
+     */
+    private final CommandMetrics metrics = new CommandMetrics();
+
+    /**
+     * Whether should aliases be suggested when completing the first argument
+     */
+    volatile boolean completeAliases = false;
+
+    /**
+     * Whether are subcommand names matched ignoring case
+     */
+    volatile boolean ignoreCase = false;
+
+    /**
+     * The maximum edit distance of suggestions for an invalid subcommand
+     */
+    volatile int suggestionDistance = 2;
+
+    /**
+     * The maximum amount of suggestions for an invalid subcommand
+     */
+    volatile int maxSuggestions = 3;
 
     /**
      * The command resolvers
@@ -55,11 +120,62 @@ public class CommandHandler {
      */
     String messagingPrefix = "";
 
-    Consumer<CommandContext> invalidCommand = (c) -> c.reply("&cInvalid sub-command. Run &e/%s help &cfor a list of commands", c.getCommand().getName());
+    /**
+     * The executor which asynchronous tab providers run on. Created lazily if not set
+     */
+    private Executor tabExecutor;
+
+    /**
+     * The maximum time, in milliseconds, to wait for an asynchronous tab provider
+     */
+    volatile long tabTimeout = 10;
+
+    /**
+     * The maximum amount of completions returned when tab providers are matched fuzzily. 0 to match
+     * completions by prefix
+     */
+    volatile int fuzzyCompletions = 0;
+
+    /**
+     * The maximum amount of completions returned from static tabs. 0 for no limit
+     */
+    volatile int maxStaticTabs = 0;
+
+    /**
+     * The executor which asynchronous commands run on. Created lazily if not set
+     */
+    private SenderExecutor asyncExecutor;
+
+    /**
+     * The queue which queued commands run from. Created lazily if not set
+     */
+    private CommandQueue queue;
+
+    /**
+     * The plugin owning this handler. Required for running tasks on the main thread
+     */
+    @Nullable Plugin plugin;
+
+    /**
+     * The permissions which subcommands of this handler added to the plugin manager, rather than reused
+     * from it. Removed again once no subcommand uses them. Guarded by this handler
+     */
+    private final Set<Permission> addedPermissions = new HashSet<>();
+
+    Consumer<CommandContext> invalidCommand = (c) -> {
+        List<String> suggestions = c.getSuggestions();
+        if (suggestions.isEmpty())
+            c.reply("&cInvalid sub-command. Run &e/%s help &cfor a list of commands", c.getCommand().getName());
+        else
+            c.reply("&cInvalid sub-command. Did you mean &e/%s %s&c?", c.getCommand().getName(), suggestions.get(0));
+    };
     Consumer<CommandContext> noPermission = (c) -> c.reply("&cYou do not have permission to run this command!");
     Consumer<CommandContext> notPlayer = (c) -> c.reply("&cYou must be a player to use this command!");
     Consumer<CommandContext> invalidCommandUsage = (c) -> c.reply("&cInvalid usage. Try &e/%s %s &d%s&c.", c.getCommand().getName(), c.getSubscription().name, c.getSubscription().parameters);
     ResolverFallback resolverFail = (name, argument, context) -> context.reply("&cInvalid %s: &e%s", name, argument);
+    ResolverFallback lookupPending = (name, argument, context) -> context.reply("&eLooking up %s &b%s&e, try again in a moment.", name, argument);
+    RateLimitFallback rateLimited = (context, retryAfter) -> context.reply("&cYou are doing that too often. Try again in &e%.1f &cseconds.", retryAfter / 1000.0);
+    Consumer<CommandContext> queueRejected = (c) -> c.reply("&cThe server is busy. Try again later.");
 
     /**
      * Registers the specified command
@@ -71,30 +187,166 @@ public class CommandHandler {
             throw new IllegalArgumentException("Class " + callback.getClass().getName() + " must be annotated with PluginSubcommand!");
         PluginSubcommand p = callback.getClass().getAnnotation(PluginSubcommand.class);
         CommandWrapper wrapper = new CommandWrapper(p.name(), p.description(), p.parameters(), p.aliases(), Arrays.stream(p.helpMenu()).map(CommandCallback::colorize).collect(Collectors.toList()), p.permission(), p.permissionAccess(), p.minimumArguments(), p.requirePlayer(), p.tabCompletions(), callback);
-        commands.put(p.name(), wrapper);
-        namesOnly.put(p.name(), wrapper);
-        for (String alias : p.aliases())
-            commands.put(alias, wrapper);
-
+        SubcommandInvokation subcommand = configure(wrapper, p);
+        subcommand.holder = callback;
+        add(subcommand);
     }
 
+    /**
+     * Registers all the subcommands of the specified object. If the object's class has a registrar
+     * generated by the annotation processor, it is used. Otherwise, the class's methods are scanned
+     * reflectively.
+     *
+     * @param object Object to register. Can be a {@link CommandCallback}, or contain methods annotated with
+     *               {@link PluginSubcommand}.
+     */
     public void register(Object object) {
         if (object instanceof CommandCallback) registerCallback(((CommandCallback) object));
-        for (Method method : object.getClass().getDeclaredMethods()) registerMethod(method, object);
-        for (Method method : object.getClass().getMethods()) registerMethod(method, object);
+        Class<?> type = object.getClass();
+        SubcommandRegistrar<Object> registrar = SubcommandRegistrar.find(type);
+        if (registrar != null) {
+            registrar.register(this, object);
+            return;
+        }
+        for (Method method : type.getDeclaredMethods()) registerMethod(method, object, null);
+        for (Method method : type.getMethods())
+            if (method.getDeclaringClass() != type) registerMethod(method, object, null); // inherited public methods
     }
 
-    private void registerMethod(Method method, Object instance) {
+    /**
+     * Registers the specified subcommand method with a precompiled invoker. This is mainly used by the
+     * generated registrars.
+     *
+     * @param method   Method to register. Must be annotated with {@link PluginSubcommand}
+     * @param instance Instance to invoke the method on
+     * @param invoker  The method invoker. Can be null to compile it from the method
+     */
+    public void registerMethod(Method method, Object instance, @Nullable MethodInvoker invoker) {
         if (method.isAnnotationPresent(PluginSubcommand.class)) {
             PluginSubcommand p = method.getAnnotation(PluginSubcommand.class);
-            MethodSubcommand subcommand = new MethodSubcommand(method, instance, p.name(), p.description(), p.parameters(), p.aliases(), Arrays.stream(p.helpMenu()).map(CommandCallback::colorize).collect(Collectors.toList()), p.permission(), p.permissionAccess(), p.minimumArguments(), p.requirePlayer(), p.tabCompletions());
-            commands.put(p.name(), subcommand);
-            namesOnly.put(p.name(), subcommand);
-            for (String alias : p.aliases())
-                commands.put(alias, subcommand);
+            SubcommandInvokation subcommand = new MethodSubcommand(method, instance, invoker, resolvers, p.name(), p.description(), p.parameters(), p.aliases(), Arrays.stream(p.helpMenu()).map(CommandCallback::colorize).collect(Collectors.toList()), p.permission(), p.permissionAccess(), p.minimumArguments(), p.requirePlayer(), p.tabCompletions());
+            subcommand = configure(subcommand, p);
+            subcommand.holder = instance == null ? method.getDeclaringClass() : instance;
+            add(subcommand);
         }
     }
 
+    /**
+     * Registers a subcommand generated by the annotation processor. Unlike
+     * {@link #registerMethod(Method, Object, MethodInvoker)}, the annotation values and the parameter
+     * layout are read at compile time and passed here directly, so the method is not looked up.
+     *
+     * @param p          The subcommand annotation
+     * @param instance   Instance the subcommand is registered from
+     * @param owner      Name of the method, used in errors
+     * @param parameters The method's parameter types
+     * @param joined     Whether each parameter is annotated with {@link PluginSubcommand.JoinedParameter}
+     * @param defaults   The default value of each {@link PluginSubcommand.OptionalParameter optional}
+     *                   parameter, or null for required parameters
+     * @param invoker    The method invoker
+     */
+    public void registerGenerated(PluginSubcommand p, Object instance, String owner, Class<?>[] parameters, boolean[] joined, String[] defaults, MethodInvoker invoker) {
+        SubcommandInvokation subcommand = new MethodSubcommand(owner, parameters, joined, defaults, instance, invoker, resolvers, p.name(), p.description(), p.parameters(), p.aliases(), Arrays.stream(p.helpMenu()).map(CommandCallback::colorize).collect(Collectors.toList()), p.permission(), p.permissionAccess(), p.minimumArguments(), p.requirePlayer(), p.tabCompletions());
+        subcommand = configure(subcommand, p);
+        subcommand.holder = instance;
+        add(subcommand);
+    }
+
+    /**
+     * Returns a copy of the specified subcommand with the execution settings of the annotation
+     */
+    private static SubcommandInvokation configure(SubcommandInvokation subcommand, PluginSubcommand p) {
+        if (p.rateLimit() > 0 && p.cooldown() > 0)
+            throw new IllegalArgumentException("Subcommand " + p.name() + " cannot have both a cooldown and a rate limit");
+        RateLimiter rateLimiter = null, tabRateLimiter = null;
+        if (p.rateLimit() > 0)
+            rateLimiter = new RateLimiter(p.rateLimit(), p.rateLimitPeriod(), TimeUnit.MILLISECONDS);
+        else if (p.cooldown() > 0)
+            rateLimiter = RateLimiter.cooldown(p.cooldown(), TimeUnit.MILLISECONDS);
+        if (p.tabRateLimit() > 0)
+            tabRateLimiter = new RateLimiter(p.tabRateLimit(), 1, TimeUnit.SECONDS);
+        return subcommand.withExecution(p.async(), p.queued(), p.priority(), rateLimiter, tabRateLimiter);
+    }
+
+    /**
+     * Adds the specified subcommand to the maps of this handler, and registers its permission
+     *
+     * @param subcommand Subcommand to add
+     */
+    synchronized void add(SubcommandInvokation subcommand) {
+        subcommand.ordinal = nextOrdinal++;
+        Permission permission = subcommand.permission;
+        subcommand.registerPermission();
+        if (permission != null && subcommand.permission == permission && Bukkit.getServer() != null)
+            addedPermissions.add(permission); // not registered yet, so the subcommand added it
+        registry = registry.with(subcommand);
+        narrowingCache.invalidateAll();
+        permissions.invalidateAll();
+    }
+
+    /**
+     * Replaces the registered subcommand with the specified name by a copy, such as one with other execution
+     * settings. The copy is published in a new snapshot, under the same name and aliases.
+     *
+     * @param name   Name of the subcommand
+     * @param change Function which returns the copy of the subcommand
+     * @throws IllegalArgumentException If no subcommand is registered with the name
+     */
+    synchronized void replace(String name, UnaryOperator<SubcommandInvokation> change) {
+        SubcommandInvokation subcommand = registry.namesOnly.get(name);
+        if (subcommand == null)
+            throw new IllegalArgumentException("No subcommand is registered with the name " + name);
+        registry = registry.replacing(subcommand, change.apply(subcommand));
+        narrowingCache.invalidateAll();
+    }
+
+    /**
+     * Unregisters the subcommands of the specified holder, along with their aliases. If the holder was
+     * loaded by another class loader than this handler, such as the class loader of a reloadable module,
+     * every subcommand, resolver and tab provider defined by that class loader is unregistered as well, so
+     * the handler keeps no reference to it.
+     *
+     * @param holder The object the subcommands were registered from. Can be a class for static subcommands
+     * @return The unregistered subcommands
+     */
+    public synchronized List<SubcommandInvokation> unregister(@NotNull Object holder) {
+        ClassLoader loader = (holder instanceof Class ? (Class<?>) holder : holder.getClass()).getClassLoader();
+        boolean foreign = loader != null && loader != CommandHandler.class.getClassLoader();
+        Predicate<SubcommandInvokation> owned = subcommand -> subcommand.holder == holder
+                || (foreign && subcommand.holder != null && definedBy(subcommand.holder, loader));
+        // subcommands whose name was taken over by another one can still be reachable by their aliases
+        List<SubcommandInvokation> removed = Stream.concat(registry.namesOnly.values().stream(), registry.commands.values().stream())
+                .filter(owned).distinct().collect(Collectors.toList());
+        if (!removed.isEmpty()) {
+            registry = registry.without(owned);
+            narrowingCache.invalidateAll();
+            permissions.invalidateAll();
+            unregisterPermissions(removed);
+        }
+        if (foreign) resolvers.unregister(loader);
+        return removed;
+    }
+
+    /**
+     * Removes the permissions which the specified subcommands added from the plugin manager, unless a
+     * registered subcommand still uses them. Registering the subcommands again, such as after a reload,
+     * then adds their current description and default.
+     */
+    private void unregisterPermissions(List<SubcommandInvokation> removed) {
+        Set<Permission> used = Stream.concat(registry.namesOnly.values().stream(), registry.commands.values().stream())
+                .map(subcommand -> subcommand.permission).collect(Collectors.toSet());
+        for (SubcommandInvokation subcommand : removed) {
+            Permission permission = subcommand.permission;
+            if (permission == null || used.contains(permission) || !addedPermissions.remove(permission)) continue;
+            if (Bukkit.getPluginManager().getPermission(permission.getName()) == permission)
+                Bukkit.getPluginManager().removePermission(permission);
+        }
+    }
+
+    private static boolean definedBy(Object holder, ClassLoader loader) {
+        return (holder instanceof Class ? (Class<?>) holder : holder.getClass()).getClassLoader() == loader;
+    }
+
     /**
      * Processes the appropriate subcommand
      *
@@ -103,41 +355,354 @@ public class CommandHandler {
      * @param args    The main command arguments
      */
     public void onCommand(Command command, CommandSender sender, String[] args) {
+        long start = System.nanoTime();
+        @Nullable SubcommandInvokation subscription = registry.get(args[0], ignoreCase);
+        CommandContext context = new CommandContext(sender, Arguments.of(args, 1), command, subscription, this);
+        context.label = args[0];
+        boolean dispatched = false;
         try {
-            @Nullable SubcommandInvokation subscription = commands.get(args[0]);
-            String[] finalArgs = (String[]) ArrayUtils.subarray(args, 1, args.length);
-            CommandContext context = new CommandContext(sender, finalArgs, command, subscription, this);
             if (subscription == null) {
+                metrics.recordUnknown();
                 invalidCommand.accept(context);
-                throw new CommandCallbackException();
+                return;
             }
             if (subscription.requirePlayer) context.requirePlayer();
             context.requireArgs(subscription.minimumArgs);
-            if (subscription.permission != null)
-                context.checkPermission(subscription.permission);
-            subscription.invoke(context);
+            if (!subscription.hasPermission(sender)) { // not from a snapshot, so that revoked permissions apply at once
+                context.fail(Outcome.NO_PERMISSION);
+                noPermission.accept(context);
+                return;
+            }
+            if (subscription.rateLimiter != null) {
+                long wait = subscription.rateLimiter.tryAcquire(sender);
+                if (wait > 0) {
+                    context.fail(Outcome.RATE_LIMITED);
+                    rateLimited.onRateLimited(context, TimeUnit.NANOSECONDS.toMillis(wait + 999_999));
+                    return;
+                }
+            }
+            if (subscription.async) {
+                Runnable task = subscription.prepare(context);
+                getAsyncExecutor().execute(sender, () -> runDeferred(context, task, start));
+                dispatched = true;
+            } else if (subscription.queued) {
+                Runnable task = subscription.prepare(context);
+                getQueue().submit(subscription.priority, () -> runDeferred(context, task, start), () -> shed(context, start));
+                dispatched = true;
+            } else
+                subscription.invoke(context);
         } catch (CommandCallbackException e) {
-            if (e.getMessage().isEmpty()) return;
-            sender.sendMessage((e.prefix() ? messagingPrefix : "") + e.getMessage());
+            context.fail(Outcome.REJECTED);
+            reply(sender, e);
+        } catch (RuntimeException e) {
+            context.fail(Outcome.ERROR);
+            throw e;
+        } finally {
+            if (subscription != null && !dispatched)
+                metrics.record(subscription, context.outcome, System.nanoTime() - start);
         }
     }
 
+    private void runDeferred(CommandContext context, Runnable task, long start) {
+        try {
+            task.run();
+        } catch (CommandCallbackException e) {
+            context.fail(Outcome.REJECTED);
+            reply(context.getSender(), e);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            context.fail(Outcome.ERROR);
+            reply(context.getSender(), new CommandCallbackException("An error occurred while executing the command. Check console for errors."));
+        } finally {
+            metrics.record(context.getSubscription(), context.outcome, System.nanoTime() - start);
+        }
+    }
+
+    private void shed(CommandContext context, long start) {
+        try {
+            context.fail(Outcome.SHED);
+            queueRejected.accept(context);
+        } finally {
+            metrics.record(context.getSubscription(), context.outcome, System.nanoTime() - start);
+        }
+    }
+
+    private void reply(CommandSender sender, CommandCallbackException e) {
+        if (e.getMessage().isEmpty()) return;
+        sender.sendMessage((e.prefix() ? messagingPrefix : "") + e.getMessage());
+    }
+
     /**
-     * Returns a map of all commands. This includes aliases
+     * Returns an immutable map of all commands. This includes aliases
      *
      * @return A map of all commands
      */
     public Map<String, SubcommandInvokation> getCommands() {
-        return commands;
+        return registry.commands;
+    }
+
+    /**
+     * Returns the subcommand registered with the specified name or alias. If the handler ignores case and
+     * no name matches exactly, a name which only differs in case is matched.
+     *
+     * @param name Name or alias of the subcommand
+     * @return The subcommand, or null if none matches
+     */
+    @Nullable
+    public SubcommandInvokation getSubcommand(String name) {
+        return registry.get(name, ignoreCase);
+    }
+
+    /**
+     * Returns the names and aliases closest to the specified input which the sender may use, closest first.
+     * At most one name or alias is suggested per subcommand.
+     * <p>
+     * Names are looked up in an edit distance index, so the cost depends on the distance rather than on the
+     * amount of subcommands. The distance allowed grows with the input's length, up to
+     * {@link #setSuggestions(int, int)}, so short inputs do not match every short name.
+     *
+     * @param sender Sender to suggest to
+     * @param input  The invalid subcommand name
+     * @return The suggestions
+     */
+    public List<String> getSuggestions(CommandSender sender, String input) {
+        List<String> suggestions = new ArrayList<>();
+        int maxSuggestions = this.maxSuggestions;
+        if (maxSuggestions <= 0) return suggestions;
+        int distance = Math.min(suggestionDistance, Math.max(1, (input.length() + 2) / 3));
+        Set<SubcommandInvokation> suggested = new HashSet<>();
+        for (Match<SubcommandInvokation> match : registry.getNameTree().search(input, distance)) {
+            if (suggested.add(match.getValue()) && permissions.test(sender, match.getValue())) {
+                suggestions.add(match.getKey());
+                if (suggestions.size() == maxSuggestions) break;
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * Sets how are invalid subcommands matched to suggestions
+     *
+     * @param maxDistance    The maximum edit distance between the input and a suggestion
+     * @param maxSuggestions The maximum amount of suggestions. 0 to disable suggestions
+     */
+    public void setSuggestions(int maxDistance, int maxSuggestions) {
+        this.suggestionDistance = maxDistance;
+        this.maxSuggestions = maxSuggestions;
     }
 
     /**
-     * Returns a map of all commands, with their names only.
+     * Returns an immutable map of all commands, with their names only.
      *
      * @return A map of all commands, excluding aliases
      */
     public Map<String, SubcommandInvokation> getNamesOnly() {
-        return namesOnly;
+        return registry.namesOnly;
+    }
+
+    /**
+     * Returns the index used to complete the first argument. This contains the names of all commands,
+     * as well as aliases if enabled.
+     *
+     * @return The completion index
+     */
+    public PrefixIndex<SubcommandInvokation> getCompletionIndex() {
+        return registry.getCompletionIndex(completeAliases, ignoreCase);
+    }
+
+    /**
+     * Sets whether should aliases be suggested when completing the first argument
+     *
+     * @param completeAliases Whether to suggest aliases
+     */
+    public void setCompleteAliases(boolean completeAliases) {
+        this.completeAliases = completeAliases;
+    }
+
+    /**
+     * Sets whether should subcommand names and aliases be matched ignoring case, when dispatching and when
+     * completing the first argument. Exact matches are still preferred.
+     *
+     * @param ignoreCase Whether to ignore case
+     */
+    public void setIgnoreCase(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+    }
+
+    /**
+     * Returns the executor which asynchronous tab providers run on. The default executor is bounded, as
+     * slow providers may be called on every keystroke: tasks beyond its threads and queue are rejected, and
+     * completions fall back to the provider's last result for the sender.
+     *
+     * @return The tab executor
+     */
+    public synchronized Executor getTabExecutor() {
+        if (tabExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(TAB_THREADS, TAB_THREADS, 30, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(TAB_QUEUE_SIZE), runnable -> {
+                Thread thread = new Thread(runnable, "BukkitCommands Tab Completer");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            tabExecutor = executor;
+        }
+        return tabExecutor;
+    }
+
+    /**
+     * Sets the executor which asynchronous tab providers run on
+     *
+     * @param tabExecutor Executor to use
+     */
+    public synchronized void setTabExecutor(@NotNull Executor tabExecutor) {
+        this.tabExecutor = tabExecutor;
+    }
+
+    /**
+     * Sets the maximum time to wait for an asynchronous tab provider, whether tabs are completed synchronously
+     * or asynchronously. After that, the last result of the provider is used.
+     *
+     * @param tabTimeout Time to wait, in milliseconds
+     */
+    public void setTabTimeout(long tabTimeout) {
+        this.tabTimeout = tabTimeout;
+    }
+
+    /**
+     * Sets whether should the completions of tab providers be matched fuzzily, and ranked. When enabled,
+     * a completion matches if it contains the typed characters in order, and only the best matches are
+     * returned. Literal completions are still matched by prefix.
+     *
+     * @param maxResults The maximum amount of completions to return, or 0 to match by prefix
+     * @see FuzzyIndex
+     */
+    public void setFuzzyCompletions(int maxResults) {
+        this.fuzzyCompletions = maxResults;
+    }
+
+    /**
+     * Sets the maximum amount of completions returned from static tabs. The lookup stops once the limit is
+     * reached, which keeps very large tab lists cheap to complete while the argument is still short.
+     *
+     * @param maxStaticTabs The maximum amount of completions, or 0 for no limit
+     * @see CommandResolvers#registerStaticTab(String, List)
+     */
+    public void setMaxStaticTabs(int maxStaticTabs) {
+        this.maxStaticTabs = maxStaticTabs;
+    }
+
+    /**
+     * Sets how long the permissions of a player are cached before they are checked again. The snapshots are
+     * only used to filter tab completions and suggestions, so a revoked permission may still be completed for
+     * this long, but is never executed. Plugins which change permissions at runtime without invalidating the
+     * snapshots should lower this.
+     *
+     * @param lifetime The lifetime, or 0 to always check permissions directly
+     * @param unit     Unit of the lifetime
+     * @see PermissionSnapshots
+     */
+    public void setPermissionCacheLifetime(long lifetime, TimeUnit unit) {
+        permissions.setLifetime(lifetime, unit);
+    }
+
+    /**
+     * Returns the executor which asynchronous commands run on
+     *
+     * @return The asynchronous command executor
+     */
+    public synchronized SenderExecutor getAsyncExecutor() {
+        if (asyncExecutor == null) asyncExecutor = new SenderExecutor(SenderExecutor.createDefault());
+        return asyncExecutor;
+    }
+
+    /**
+     * Sets the executor which asynchronous commands run on. Commands of the same sender will still run
+     * in order.
+     *
+     * @param executor Executor to use
+     */
+    public synchronized void setAsyncExecutor(@NotNull Executor executor) {
+        this.asyncExecutor = new SenderExecutor(executor);
+    }
+
+    /**
+     * Returns the queue which queued commands run from. The queue is started once a plugin is set;
+     * until then, {@link CommandQueue#tick()} must be called manually.
+     *
+     * @return The command queue
+     */
+    public synchronized CommandQueue getQueue() {
+        if (queue == null) {
+            queue = new CommandQueue();
+            if (plugin != null) queue.start(plugin);
+        }
+        return queue;
+    }
+
+    /**
+     * Sets the queue which queued commands run from. The previous queue is stopped, and commands already
+     * in it stay there.
+     *
+     * @param queue Queue to use
+     */
+    public synchronized void setQueue(@NotNull CommandQueue queue) {
+        if (this.queue != null && this.queue != queue) this.queue.stop();
+        this.queue = queue;
+        if (plugin != null) queue.start(plugin);
+    }
+
+    /**
+     * Returns the plugin owning this handler
+     *
+     * @return The plugin, or null if not set
+     */
+    @Nullable
+    public Plugin getPlugin() {
+        return plugin;
+    }
+
+    /**
+     * Sets the plugin owning this handler
+     *
+     * @param plugin Plugin to set
+     */
+    public void setPlugin(@NotNull Plugin plugin) {
+        this.plugin = plugin;
+        resolvers.getPlayerIndex().setPlugin(plugin);
+        resolvers.getOfflinePlayers().setPlugin(plugin);
+        permissions.setPlugin(plugin);
+        narrowingCache.setPlugin(plugin);
+        synchronized (this) {
+            if (queue != null) queue.start(plugin);
+        }
+    }
+
+    /**
+     * Returns the permission snapshots of this handler
+     *
+     * @return The permission snapshots
+     */
+    public PermissionSnapshots getPermissions() {
+        return permissions;
+    }
+
+    /**
+     * Returns the cache of the last tab completions of each sender
+     *
+     * @return The narrowing cache
+     */
+    public NarrowingCache getNarrowingCache() {
+        return narrowingCache;
+    }
+
+    /**
+     * Returns the metrics of this handler
+     *
+     * @return The metrics
+     */
+    public CommandMetrics getMetrics() {
+        return metrics;
     }
 
     /**
@@ -158,4 +723,92 @@ public class CommandHandler {
         this.messagingPrefix = CommandCallback.colorize(messagingPrefix);
     }
 
-}
\ No newline at end of file
+    /**
+     * An immutable snapshot of the registered commands
+     */
+    private static final class Registry {
+
+        private static final Registry EMPTY = new Registry(new HashMap<>(), new HashMap<>());
+
+        private final Map<String, SubcommandInvokation> commands;
+        private final Map<String, SubcommandInvokation> namesOnly;
+
+        /**
+         * The completion indexes of this snapshot, with and without aliases, and ignoring case or not. Built
+         * lazily; the indexes are immutable, so racing builds are harmless
+         */
+        private final AtomicReferenceArray<PrefixIndex<SubcommandInvokation>> completionIndexes = new AtomicReferenceArray<>(4);
+
+        /**
+         * The names and aliases of this snapshot, looked up ignoring case. Built lazily
+         */
+        private volatile CaseInsensitiveIndex<SubcommandInvokation> foldedCommands;
+
+        /**
+         * The names and aliases of this snapshot, indexed by edit distance. Built lazily
+         */
+        private volatile BKTree<SubcommandInvokation> nameTree;
+
+        private Registry(Map<String, SubcommandInvokation> commands, Map<String, SubcommandInvokation> namesOnly) {
+            this.commands = Collections.unmodifiableMap(commands);
+            this.namesOnly = Collections.unmodifiableMap(namesOnly);
+        }
+
+        /**
+         * Returns a copy of this snapshot with the specified subcommand added
+         */
+        private Registry with(SubcommandInvokation subcommand) {
+            Map<String, SubcommandInvokation> commands = new HashMap<>(this.commands);
+            Map<String, SubcommandInvokation> namesOnly = new HashMap<>(this.namesOnly);
+            commands.put(subcommand.name, subcommand);
+            namesOnly.put(subcommand.name, subcommand);
+            for (String alias : subcommand.aliases)
+                commands.put(alias, subcommand);
+            return new Registry(commands, namesOnly);
+        }
+
+        /**
+         * Returns a copy of this snapshot with the specified subcommand in place of another one
+         */
+        private Registry replacing(SubcommandInvokation subcommand, SubcommandInvokation replacement) {
+            Map<String, SubcommandInvokation> commands = new HashMap<>(this.commands);
+            Map<String, SubcommandInvokation> namesOnly = new HashMap<>(this.namesOnly);
+            commands.replaceAll((name, registered) -> registered == subcommand ? replacement : registered);
+            namesOnly.replaceAll((name, registered) -> registered == subcommand ? replacement : registered);
+            return new Registry(commands, namesOnly);
+        }
+
+        /**
+         * Returns a copy of this snapshot without the matching subcommands
+         */
+        private Registry without(Predicate<SubcommandInvokation> removed) {
+            Map<String, SubcommandInvokation> commands = new HashMap<>(this.commands);
+            Map<String, SubcommandInvokation> namesOnly = new HashMap<>(this.namesOnly);
+            commands.values().removeIf(removed);
+            namesOnly.values().removeIf(removed);
+            return new Registry(commands, namesOnly);
+        }
+
+        private SubcommandInvokation get(String name, boolean ignoreCase) {
+            SubcommandInvokation subcommand = commands.get(name);
+            if (subcommand != null || !ignoreCase) return subcommand;
+            CaseInsensitiveIndex<SubcommandInvokation> folded = foldedCommands;
+            if (folded == null) foldedCommands = folded = new CaseInsensitiveIndex<>(namesOnly, commands);
+            return folded.get(name);
+        }
+
+        private BKTree<SubcommandInvokation> getNameTree() {
+            BKTree<SubcommandInvokation> tree = nameTree;
+            if (tree == null) nameTree = tree = new BKTree<>(commands);
+            return tree;
+        }
+
+        private PrefixIndex<SubcommandInvokation> getCompletionIndex(boolean aliases, boolean ignoreCase) {
+            int slot = (aliases ? 1 : 0) | (ignoreCase ? 2 : 0);
+            PrefixIndex<SubcommandInvokation> index = completionIndexes.get(slot);
+            if (index == null)
+                completionIndexes.set(slot, index = new PrefixIndex<>(aliases ? commands : namesOnly, ignoreCase));
+            return index;
+        }
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free metrics of a command handler: the outcome and latency of every subcommand invocation, as well
+ * as the time spent in resolvers and tab providers, and the hits and misses of cached tab providers.
+ * <p>
+ * Recording never blocks, so metrics are enabled by default. Use {@link #snapshot()} to read them, or a
+ * {@link MetricsExporter} to publish them.
+ */
+public class CommandMetrics {
+
+    /**
+     * The invocations of each subcommand, keyed by its name
+     */
+    private final Map<String, SubcommandMetrics> subcommands = new ConcurrentHashMap<>();
+
+    /**
+     * The time spent in each resolver, keyed by the name of the type it resolves
+     */
+    private final Map<String, LatencyHistogram> resolvers = new ConcurrentHashMap<>();
+
+    /**
+     * The time spent in each tab provider, keyed by the provider's key
+     */
+    private final Map<String, LatencyHistogram> tabProviders = new ConcurrentHashMap<>();
+
+    /**
+     * The lookups of each cached tab provider by result, keyed by the provider's key
+     */
+    private final Map<String, LongAdder[]> tabCaches = new ConcurrentHashMap<>();
+
+    /**
+     * The amount of commands which did not match any subcommand
+     */
+    private final LongAdder unknownCommands = new LongAdder();
+
+    /**
+     * Whether are metrics recorded
+     */
+    private volatile boolean enabled = true;
+
+    /**
+     * Returns whether are metrics recorded
+     *
+     * @return True if enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets whether should metrics be recorded
+     *
+     * @param enabled Whether to record metrics
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Records an invocation of the specified subcommand
+     *
+     * @param subcommand The subcommand
+     * @param outcome    How the invocation ended
+     * @param nanos      How long the invocation took, in nanoseconds
+     */
+    public void record(SubcommandInvokation subcommand, Outcome outcome, long nanos) {
+        if (!enabled) return;
+        SubcommandMetrics metrics = subcommands.get(subcommand.name);
+        if (metrics == null) metrics = subcommands.computeIfAbsent(subcommand.name, name -> new SubcommandMetrics());
+        metrics.outcomes[outcome.ordinal()].increment();
+        metrics.latency.record(nanos);
+    }
+
+    /**
+     * Records a command which did not match any subcommand
+     */
+    public void recordUnknown() {
+        if (enabled) unknownCommands.increment();
+    }
+
+    /**
+     * Records the time spent in a resolver
+     *
+     * @param type  Name of the type resolved, such as {@code int} or {@code org.bukkit.entity.Player}
+     * @param nanos Time spent, in nanoseconds
+     */
+    public void recordResolver(String type, long nanos) {
+        if (enabled) histogram(resolvers, type).record(nanos);
+    }
+
+    /**
+     * Records the time spent in a tab provider
+     *
+     * @param key   Key of the tab provider
+     * @param nanos Time spent, in nanoseconds
+     */
+    public void recordTabProvider(String key, long nanos) {
+        if (enabled) histogram(tabProviders, key).record(nanos);
+    }
+
+    /**
+     * Records a lookup of a cached tab provider
+     *
+     * @param key    Key of the tab provider
+     * @param result Whether were the tabs cached
+     * @see CachedTabProvider
+     */
+    public void recordTabCache(String key, CacheResult result) {
+        if (!enabled) return;
+        LongAdder[] lookups = tabCaches.get(key);
+        if (lookups == null) lookups = tabCaches.computeIfAbsent(key, k -> adders(CacheResult.VALUES.length));
+        lookups[result.ordinal()].increment();
+    }
+
+    /**
+     * Returns a snapshot of the current metrics
+     *
+     * @return The snapshot
+     */
+    public Snapshot snapshot() {
+        Map<String, SubcommandSnapshot> subcommands = new TreeMap<>();
+        this.subcommands.forEach((name, metrics) -> subcommands.put(name, metrics.snapshot()));
+        Map<String, TabCacheSnapshot> tabCaches = new TreeMap<>();
+        this.tabCaches.forEach((key, lookups) -> tabCaches.put(key, new TabCacheSnapshot(sums(lookups))));
+        return new Snapshot(subcommands, snapshot(resolvers), snapshot(tabProviders), tabCaches, unknownCommands.sum());
+    }
+
+    /**
+     * Discards all recorded metrics
+     */
+    public void reset() {
+        subcommands.clear();
+        resolvers.clear();
+        tabProviders.clear();
+        tabCaches.clear();
+        unknownCommands.reset();
+    }
+
+    /**
+     * Returns the histogram of the specified key. Entries are only created once, so the common case is a
+     * plain read rather than {@link Map#computeIfAbsent(Object, java.util.function.Function)}, which may lock
+     */
+    private static LatencyHistogram histogram(Map<String, LatencyHistogram> histograms, String key) {
+        LatencyHistogram histogram = histograms.get(key);
+        return histogram != null ? histogram : histograms.computeIfAbsent(key, k -> new LatencyHistogram());
+    }
+
+    private static Map<String, LatencyHistogram.Snapshot> snapshot(Map<String, LatencyHistogram> histograms) {
+        Map<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        histograms.forEach((name, histogram) -> snapshots.put(name, histogram.snapshot()));
+        return Collections.unmodifiableMap(snapshots);
+    }
+
+    private static LongAdder[] adders(int length) {
+        LongAdder[] adders = new LongAdder[length];
+        for (int i = 0; i < length; i++) adders[i] = new LongAdder();
+        return adders;
+    }
+
+    private static long[] sums(LongAdder[] adders) {
+        long[] sums = new long[adders.length];
+        for (int i = 0; i < sums.length; i++) sums[i] = adders[i].sum();
+        return sums;
+    }
+
+    /**
+     * How an invocation of a subcommand ended
+     */
+    public enum Outcome {
+
+        /**
+         * The subcommand ran without throwing
+         */
+        SUCCESS,
+
+        /**
+         * The subcommand requires a player, and the sender was not one
+         */
+        NOT_PLAYER,
+
+        /**
+         * The arguments did not match the subcommand's usage
+         */
+        INVALID_USAGE,
+
+        /**
+         * The sender did not have permission
+         */
+        NO_PERMISSION,
+
+        /**
+         * The sender ran the subcommand too often
+         */
+        RATE_LIMITED,
+
+        /**
+         * The subcommand was queued, and then rejected because the server was overloaded or the queue
+         * was full
+         */
+        SHED,
+
+        /**
+         * An argument could not be resolved
+         */
+        RESOLVER_FAIL,
+
+        /**
+         * An argument is being looked up asynchronously
+         */
+        LOOKUP_PENDING,
+
+        /**
+         * The subcommand stopped with a {@link CommandCallback.CommandCallbackException}
+         */
+        REJECTED,
+
+        /**
+         * The subcommand threw an unexpected exception
+         */
+        ERROR;
+
+        private static final Outcome[] VALUES = values();
+    }
+
+    /**
+     * The result of a lookup in a {@link CachedTabProvider}
+     */
+    public enum CacheResult {
+
+        /**
+         * The tabs were cached and fresh
+         */
+        HIT,
+
+        /**
+         * The tabs were cached but stale, so they were served while being refreshed
+         */
+        STALE,
+
+        /**
+         * The tabs were not cached, so the provider was called
+         */
+        MISS;
+
+        private static final CacheResult[] VALUES = values();
+    }
+
+    /**
+     * The metrics of a single subcommand
+     */
+    private static final class SubcommandMetrics {
+
+        private final LongAdder[] outcomes = adders(Outcome.VALUES.length);
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private SubcommandSnapshot snapshot() {
+            return new SubcommandSnapshot(sums(outcomes), latency.snapshot());
+        }
+    }
+
+    /**
+     * An immutable copy of a subcommand's metrics
+     */
+    public static final class SubcommandSnapshot {
+
+        private final long[] outcomes;
+        private final LatencyHistogram.Snapshot latency;
+
+        private SubcommandSnapshot(long[] outcomes, LatencyHistogram.Snapshot latency) {
+            this.outcomes = outcomes;
+            this.latency = latency;
+        }
+
+        /**
+         * Returns the amount of invocations which ended with the specified outcome
+         *
+         * @param outcome The outcome
+         * @return The amount of invocations
+         */
+        public long getCount(Outcome outcome) {
+            return outcomes[outcome.ordinal()];
+        }
+
+        /**
+         * Returns the total amount of invocations
+         *
+         * @return The amount of invocations
+         */
+        public long getInvocations() {
+            long total = 0;
+            for (long count : outcomes) total += count;
+            return total;
+        }
+
+        /**
+         * Returns the latency of the invocations. For asynchronous and queued subcommands, this includes
+         * the time spent waiting in the executor or the queue.
+         *
+         * @return The latency histogram
+         */
+        public LatencyHistogram.Snapshot getLatency() {
+            return latency;
+        }
+    }
+
+    /**
+     * An immutable copy of a cached tab provider's lookups
+     */
+    public static final class TabCacheSnapshot {
+
+        private final long[] lookups;
+
+        private TabCacheSnapshot(long[] lookups) {
+            this.lookups = lookups;
+        }
+
+        /**
+         * Returns the amount of lookups with the specified result
+         *
+         * @param result The result
+         * @return The amount of lookups
+         */
+        public long getCount(CacheResult result) {
+            return lookups[result.ordinal()];
+        }
+
+        /**
+         * Returns the fraction of lookups which were served from the cache, fresh or stale
+         *
+         * @return The hit ratio, or 0 if there were no lookups
+         */
+        public double getHitRatio() {
+            long total = 0;
+            for (long count : lookups) total += count;
+            return total == 0 ? 0 : 1 - (double) getCount(CacheResult.MISS) / total;
+        }
+    }
+
+    /**
+     * An immutable copy of a handler's metrics
+     */
+    public static final class Snapshot {
+
+        private final Map<String, SubcommandSnapshot> subcommands;
+        private final Map<String, LatencyHistogram.Snapshot> resolvers;
+        private final Map<String, LatencyHistogram.Snapshot> tabProviders;
+        private final Map<String, TabCacheSnapshot> tabCaches;
+        private final long unknownCommands;
+
+        private Snapshot(Map<String, SubcommandSnapshot> subcommands, Map<String, LatencyHistogram.Snapshot> resolvers,
+                         Map<String, LatencyHistogram.Snapshot> tabProviders, Map<String, TabCacheSnapshot> tabCaches,
+                         long unknownCommands) {
+            this.subcommands = Collections.unmodifiableMap(subcommands);
+            this.resolvers = resolvers;
+            this.tabProviders = tabProviders;
+            this.tabCaches = Collections.unmodifiableMap(tabCaches);
+            this.unknownCommands = unknownCommands;
+        }
+
+        /**
+         * Returns the metrics of each subcommand which has been invoked, keyed by name
+         *
+         * @return The subcommand metrics
+         */
+        public Map<String, SubcommandSnapshot> getSubcommands() {
+            return subcommands;
+        }
+
+        /**
+         * Returns the time spent in each resolver, keyed by the name of the type it resolves
+         *
+         * @return The resolver latencies
+         */
+        public Map<String, LatencyHistogram.Snapshot> getResolvers() {
+            return resolvers;
+        }
+
+        /**
+         * Returns the time spent in each tab provider, keyed by the provider's key
+         *
+         * @return The tab provider latencies
+         */
+        public Map<String, LatencyHistogram.Snapshot> getTabProviders() {
+            return tabProviders;
+        }
+
+        /**
+         * Returns the lookups of each cached tab provider, keyed by the provider's key
+         *
+         * @return The tab cache lookups
+         */
+        public Map<String, TabCacheSnapshot> getTabCaches() {
+            return tabCaches;
+        }
+
+        /**
+         * Returns the amount of commands which did not match any subcommand
+         *
+         * @return The amount of unknown commands
+         */
+        public long getUnknownCommands() {
+            return unknownCommands;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A queue of commands which are ran on the main thread within a time budget every tick.
+ * <p>
+ * Commands are drained by priority. The queue measures the time between ticks, and while it is over the
+ * overload threshold (meaning the server is lagging), {@link Priority#LOW} commands are rejected and
+ * {@link Priority#NORMAL} commands are deferred until the server recovers. Commands which waited longer
+ * than the maximum wait, or which do not fit in the queue, are rejected.
+ * <p>
+ * {@link #tick()} is called every tick once the queue is started with a plugin. It can also be called
+ * manually, together with a custom {@link Clock}, to drive the queue without a server.
+ */
+public class CommandQueue {
+
+    /**
+     * The weight of the last tick in the measured tick time
+     */
+    private static final double SMOOTHING = 0.2;
+
+    /**
+     * The time between ticks at 20 TPS, in nanoseconds
+     */
+    private static final long NORMAL_TICK = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * The queued commands of each priority
+     */
+    private final Map<Priority, Queue<Entry>> queues = new EnumMap<>(Priority.class);
+
+    /**
+     * The amount of queued commands
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * The clock which tick times and waits are measured with
+     */
+    private Clock clock = System::nanoTime;
+
+    /**
+     * The time commands may run each tick, in nanoseconds
+     */
+    private long budget = TimeUnit.MILLISECONDS.toNanos(5);
+
+    /**
+     * The tick time above which the server is considered overloaded, in nanoseconds
+     */
+    private long overloadThreshold = TimeUnit.MILLISECONDS.toNanos(60);
+
+    /**
+     * The longest time a command may wait in the queue, in nanoseconds
+     */
+    private long maxWait = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * The maximum amount of queued commands
+     */
+    private int maxSize = 1000;
+
+    /**
+     * The smoothed time between ticks, in nanoseconds
+     */
+    private volatile long tickTime = NORMAL_TICK;
+
+    /**
+     * The time of the last tick, or 0 if there was none yet
+     */
+    private long lastTick;
+
+    /**
+     * The task which ticks this queue, or null if not started
+     */
+    private BukkitTask task;
+
+    public CommandQueue() {
+        for (Priority priority : Priority.VALUES) queues.put(priority, new ConcurrentLinkedQueue<>());
+    }
+
+    /**
+     * Queues a command
+     *
+     * @param priority Priority of the command
+     * @param task     Task which runs the command
+     * @param reject   Task which rejects the command, ran if the command is shed
+     * @return True if the command was queued, false if it was rejected immediately
+     */
+    public boolean submit(Priority priority, Runnable task, Runnable reject) {
+        if (priority == Priority.LOW && isOverloaded()) {
+            reject.run();
+            return false;
+        }
+        if (size.incrementAndGet() > maxSize) {
+            size.decrementAndGet();
+            reject.run();
+            return false;
+        }
+        queues.get(priority).add(new Entry(task, reject, clock.nanoTime()));
+        return true;
+    }
+
+    /**
+     * Measures the tick time, and runs queued commands until the budget is used. At least one command runs
+     * every tick, so a single command which exceeds the budget does not block the queue.
+     */
+    public void tick() {
+        long now = clock.nanoTime();
+        if (lastTick != 0) tickTime += (long) (SMOOTHING * ((now - lastTick) - tickTime));
+        lastTick = now;
+        boolean overloaded = isOverloaded();
+        boolean ran = false;
+        for (Priority priority : Priority.VALUES) {
+            Queue<Entry> queue = queues.get(priority);
+            if (overloaded && priority == Priority.LOW) {
+                rejectAll(queue);
+                continue;
+            }
+            if (overloaded && priority == Priority.NORMAL) {
+                rejectExpired(queue, now);
+                continue;
+            }
+            Entry entry;
+            while ((!ran || clock.nanoTime() - now < budget) && (entry = queue.poll()) != null) {
+                size.decrementAndGet();
+                if (now - entry.queued > maxWait) {
+                    entry.reject.run();
+                    continue;
+                }
+                entry.task.run();
+                ran = true;
+            }
+            if (ran && clock.nanoTime() - now >= budget) return;
+        }
+    }
+
+    private void rejectAll(Queue<Entry> queue) {
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            size.decrementAndGet();
+            entry.reject.run();
+        }
+    }
+
+    private void rejectExpired(Queue<Entry> queue, long now) {
+        Entry entry;
+        while ((entry = queue.peek()) != null && now - entry.queued > maxWait && queue.remove(entry)) {
+            size.decrementAndGet();
+            entry.reject.run();
+        }
+    }
+
+    /**
+     * Returns whether is the measured tick time over the overload threshold
+     *
+     * @return True if the server is overloaded
+     */
+    public boolean isOverloaded() {
+        return tickTime > overloadThreshold;
+    }
+
+    /**
+     * Returns the smoothed time between ticks
+     *
+     * @param unit Unit to return the time in
+     * @return The tick time
+     */
+    public long getTickTime(TimeUnit unit) {
+        return unit.convert(tickTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the amount of queued commands
+     *
+     * @return The queue size
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Starts ticking this queue on the main thread, if it is not started yet
+     *
+     * @param plugin Plugin to schedule the task with
+     */
+    public synchronized void start(@NotNull Plugin plugin) {
+        if (task == null) task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+    }
+
+    /**
+     * Stops ticking this queue. Queued commands are kept.
+     */
+    public synchronized void stop() {
+        if (task != null) task.cancel();
+        task = null;
+    }
+
+    /**
+     * Returns whether is this queue ticked by the scheduler
+     *
+     * @return True if started
+     */
+    public synchronized boolean isStarted() {
+        return task != null;
+    }
+
+    /**
+     * Sets the clock which tick times and waits are measured with
+     *
+     * @param clock Clock to use
+     */
+    public void setClock(@NotNull Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Sets the time queued commands may run each tick
+     *
+     * @param budget The budget
+     * @param unit   Unit of the budget
+     */
+    public void setBudget(long budget, TimeUnit unit) {
+        this.budget = unit.toNanos(budget);
+    }
+
+    /**
+     * Sets the time between ticks above which the server is considered overloaded
+     *
+     * @param threshold The threshold
+     * @param unit      Unit of the threshold
+     */
+    public void setOverloadThreshold(long threshold, TimeUnit unit) {
+        this.overloadThreshold = unit.toNanos(threshold);
+    }
+
+    /**
+     * Sets the longest time a command may wait in the queue before it is rejected
+     *
+     * @param maxWait The maximum wait
+     * @param unit    Unit of the maximum wait
+     */
+    public void setMaxWait(long maxWait, TimeUnit unit) {
+        this.maxWait = unit.toNanos(maxWait);
+    }
+
+    /**
+     * Sets the maximum amount of queued commands. Commands over this amount are rejected.
+     *
+     * @param maxSize The maximum size
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * The priority of a queued command
+     */
+    public enum Priority {
+
+        /**
+         * Ran first, and never deferred or rejected because the server is overloaded. Still rejected when
+         * the queue is full, or when it waited longer than the maximum wait
+         */
+        HIGH,
+
+        /**
+         * Deferred while the server is overloaded
+         */
+        NORMAL,
+
+        /**
+         * Rejected while the server is overloaded
+         */
+        LOW;
+
+        private static final Priority[] VALUES = values();
+    }
+
+    /**
+     * A source of monotonic time
+     */
+    @FunctionalInterface
+    public interface Clock {
+
+        /**
+         * Returns the current time, in nanoseconds. Only differences between values are meaningful.
+         *
+         * @return The current time
+         */
+        long nanoTime();
+    }
+
+    /**
+     * A queued command
+     */
+    private static final class Entry {
+
+        private final Runnable task, reject;
+        private final long queued;
+
+        private Entry(Runnable task, Runnable reject, long queued) {
+            this.task = task;
+            this.reject = reject;
+            this.queued = queued;
+        }
+    }
+}
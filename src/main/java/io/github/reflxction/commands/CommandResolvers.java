@@ -16,7 +16,10 @@
 package io.github.reflxction.commands;
 
 import io.github.reflxction.commands.CommandCallback.CommandCallbackException;
+import io.github.reflxction.commands.CommandMetrics.Outcome;
+import io.github.reflxction.commands.PluginSubcommand.AsyncTabProvider;
 import io.github.reflxction.commands.PluginSubcommand.ParameterResolver;
+import io.github.reflxction.commands.PluginSubcommand.PrefixTabProvider;
 import io.github.reflxction.commands.PluginSubcommand.TabContext;
 import io.github.reflxction.commands.PluginSubcommand.TabProvider;
 import org.bukkit.Bukkit;
@@ -25,69 +28,146 @@ import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.Nullable;
 
+import java.text.ParsePosition;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
 
 /**
  * A class for resolving specific parameters
+ * <p>
+ * The maps of resolvers and tab providers are immutable, and replaced with an updated copy whenever
+ * something is registered. Lookups can therefore run on any thread without locking.
  */
 public class CommandResolvers {
 
-    private static final List<String> PLAYERS = Collections.singletonList("null");
-
     /**
      * A map of all resolvers
      */
-    private final Map<Class<?>, Resolver<?>> resolvers = new HashMap<>();
+    private volatile Map<Class<?>, Resolver<?>> resolvers = Collections.emptyMap();
 
     /**
-     * A map of all tab providers
+     * Incremented whenever the map of resolvers is replaced, so that binding plans know when to look their
+     * resolvers up again
      */
-    private final Map<String, TabProvider> tabProviders = new HashMap<>();
+    private volatile int resolverVersion = 0;
 
     /**
      * A map of all tab providers
      */
-    private final Map<String, List<String>> staticTabs = new HashMap<>();
+    private volatile Map<String, TabProvider> tabProviders = Collections.emptyMap();
+
+    /**
+     * A map of all asynchronous tab providers
+     */
+    private volatile Map<String, AsyncTabProvider> asyncTabProviders = Collections.emptyMap();
+
+    /**
+     * A map of all static tabs
+     */
+    private volatile Map<String, StaticTabs> staticTabs = Collections.emptyMap();
+
+    /**
+     * The index of online players
+     */
+    private final PlayerIndex playerIndex = new PlayerIndex();
+
+    /**
+     * The cache of offline player names
+     */
+    private final OfflinePlayerCache offlinePlayers = new OfflinePlayerCache();
 
     /**
      * Creates an instance of all the resolvers
      */
-    @SuppressWarnings("deprecation") // Bukkit#getOfflinePlayer...
     public CommandResolvers() {
         // register primitives
         registerResolver(String.class, new Resolver<>("string", (a, c) -> a));
 
-        registerResolver(int.class, new Resolver<>("number", (a, c) -> Integer.parseInt(a)));
-        registerResolver(Integer.class, new Resolver<>("number", (a, c) -> Integer.parseInt(a)));
+        // boxed ints, longs and doubles use the unboxed resolvers, so that replacing those applies to both
+        registerResolver(int.class, new Resolver<>("number", (a, c) -> intResolver.resolve(a, c, Integer.MIN_VALUE, Integer.MAX_VALUE)));
+        registerResolver(Integer.class, new Resolver<>("number", (a, c) -> intResolver.resolve(a, c, Integer.MIN_VALUE, Integer.MAX_VALUE)));
+        registerResolver(long.class, new Resolver<>("number", (a, c) -> longResolver.resolve(a, c, Long.MIN_VALUE, Long.MAX_VALUE)));
+        registerResolver(Long.class, new Resolver<>("number", (a, c) -> longResolver.resolve(a, c, Long.MIN_VALUE, Long.MAX_VALUE)));
+        registerResolver(double.class, new Resolver<>("number", (a, c) -> doubleResolver.resolve(a, c, -Double.MAX_VALUE, Double.MAX_VALUE)));
+        registerResolver(Double.class, new Resolver<>("number", (a, c) -> doubleResolver.resolve(a, c, -Double.MAX_VALUE, Double.MAX_VALUE)));
 
-        registerResolver(float.class, new Resolver<>("number", (a, c) -> Float.parseFloat(a)));
-        registerResolver(Float.class, new Resolver<>("number", (a, c) -> Float.parseFloat(a)));
+        ParameterResolver<Float> floating = (a, c) -> {
+            double value = NumberParser.parseDouble(a);
+            return Double.isNaN(value) || Math.abs(value) > Float.MAX_VALUE ? null : (float) value;
+        };
+        registerResolver(float.class, new Resolver<>("number", floating));
+        registerResolver(Float.class, new Resolver<>("number", floating));
 
-        registerResolver(double.class, new Resolver<>("number", (a, c) -> Double.parseDouble(a)));
-        registerResolver(Double.class, new Resolver<>("number", (a, c) -> Double.parseDouble(a)));
+        ParameterResolver<Short> shortResolver = (a, c) -> {
+            ParsePosition position = new ParsePosition(0);
+            long value = NumberParser.parseLong(a, Short.MIN_VALUE, Short.MAX_VALUE, position);
+            return position.getErrorIndex() >= 0 ? null : (short) value;
+        };
+        registerResolver(short.class, new Resolver<>("number", shortResolver));
+        registerResolver(Short.class, new Resolver<>("number", shortResolver));
 
-        registerResolver(short.class, new Resolver<>("number", (a, c) -> Short.parseShort(a)));
-        registerResolver(Short.class, new Resolver<>("number", (a, c) -> Short.parseShort(a)));
-
-        registerResolver(long.class, new Resolver<>("number", (a, c) -> Long.parseLong(a)));
-        registerResolver(Long.class, new Resolver<>("number", (a, c) -> Long.parseLong(a)));
-
-        registerResolver(byte.class, new Resolver<>("number", (a, c) -> Byte.parseByte(a)));
-        registerResolver(Byte.class, new Resolver<>("number", (a, c) -> Byte.parseByte(a)));
+        ParameterResolver<Byte> byteResolver = (a, c) -> {
+            ParsePosition position = new ParsePosition(0);
+            long value = NumberParser.parseLong(a, Byte.MIN_VALUE, Byte.MAX_VALUE, position);
+            return position.getErrorIndex() >= 0 ? null : (byte) value;
+        };
+        registerResolver(byte.class, new Resolver<>("number", byteResolver));
+        registerResolver(Byte.class, new Resolver<>("number", byteResolver));
 
         // register Bukkit types
-        registerResolver(Player.class, new Resolver<>("player", (a, c) -> Bukkit.getPlayer(a)));
+        registerResolver(Player.class, new Resolver<>("player", (a, c) -> playerIndex.isAvailable() ? playerIndex.match(a) : Bukkit.getPlayer(a)));
         registerResolver(World.class, new Resolver<>("world", (a, c) -> Bukkit.getWorld(a)));
-        registerResolver(OfflinePlayer.class, new Resolver<>("player", (a, c) -> Bukkit.getOfflinePlayer(a)));
+        registerResolver(OfflinePlayer.class, new Resolver<>("player", offlinePlayers::resolve));
 
-        registerStaticTab("players", PLAYERS); // bukkit handles that by itself.
+        registerTabProvider("players", (PrefixTabProvider) (context, prefix) -> playerIndex.isAvailable() ? playerIndex.complete(prefix, context.getSender()) : null); // let bukkit handle it if the index is not available
+        registerTabProvider("offlineplayers", (PrefixTabProvider) (context, prefix) -> offlinePlayers.complete(prefix));
         registerStaticTab("nothing", Collections.emptyList());
     }
 
+    /**
+     * The resolver of unboxed integers
+     */
+    private volatile IntResolver intResolver = (a, c, min, max) -> {
+        ParsePosition position = new ParsePosition(0);
+        long value = NumberParser.parseLong(a, min, max, position);
+        if (position.getErrorIndex() >= 0) throw fail(min, max, a, c);
+        return (int) value;
+    };
+
+    /**
+     * The resolver of unboxed longs
+     */
+    private volatile LongResolver longResolver = (a, c, min, max) -> {
+        ParsePosition position = new ParsePosition(0);
+        long value = NumberParser.parseLong(a, min, max, position);
+        if (position.getErrorIndex() >= 0) throw fail(min, max, a, c);
+        return value;
+    };
+
+    /**
+     * The resolver of unboxed doubles
+     */
+    private volatile DoubleResolver doubleResolver = (a, c, min, max) -> {
+        double value = NumberParser.parseDouble(a);
+        if (Double.isNaN(value) || value < min || value > max) throw fail(min, max, a, c);
+        return value;
+    };
+
     /**
      * Returns the resolver of this type
      *
@@ -99,26 +179,97 @@ public class CommandResolvers {
         return resolvers.get(type);
     }
 
+    /**
+     * Returns the version of the resolvers, which changes whenever a resolver is registered or unregistered
+     *
+     * @return The resolver version
+     */
+    int getResolverVersion() {
+        return resolverVersion;
+    }
+
+    /**
+     * Returns the tab provider registered for the specified key. Static tabs are returned as a
+     * {@link StaticTabs} provider.
+     *
+     * @param key Key of the tabs
+     * @return The tab provider. Returns null tabs for keys which Bukkit handles by itself
+     * @throws IllegalArgumentException If no tabs are registered for the key
+     */
+    public TabProvider getTabProvider(String key) {
+        TabProvider provider = findTabProvider(key);
+        if (provider == null)
+            throw new IllegalArgumentException("Cannot find tabs for key " + key);
+        return provider;
+    }
+
+    /**
+     * Returns the tab provider registered for the specified key, like {@link #getTabProvider(String)}
+     *
+     * @param key Key of the tabs
+     * @return The tab provider, or null if no tabs are registered for the key
+     */
+    @Nullable
+    TabProvider findTabProvider(String key) {
+        StaticTabs tabs = staticTabs.get(key);
+        return tabs != null ? tabs : tabProviders.get(key);
+    }
+
+    /**
+     * Returns the asynchronous tab provider registered for the specified key. Synchronous providers and
+     * static tabs are wrapped into an already completed future.
+     *
+     * @param key Key of the tabs
+     * @return The asynchronous tab provider
+     * @throws IllegalArgumentException If no tabs are registered for the key
+     */
+    public AsyncTabProvider getAsyncTabProvider(String key) {
+        AsyncTabProvider provider = asyncTabProviders.get(key);
+        if (provider != null) return provider;
+        TabProvider tabProvider = getTabProvider(key);
+        return (context, executor) -> CompletableFuture.completedFuture(tabProvider.getTab(context));
+    }
+
     public List<String> getTab(String key, TabContext context) {
-        List<String> tabs = staticTabs.get(key);
-        if (tabs != null && tabs.equals(PLAYERS)) return null;
-        if (tabs == null) {
-            TabProvider provider = tabProviders.get(key);
-            if (provider == null)
-                throw new IllegalArgumentException("Cannot find tabs for key " + key);
-            tabs = provider.getTab(context);
-        }
-        return tabs;
+        StaticTabs tabs = staticTabs.get(key);
+        if (tabs != null) return tabs.getTabs();
+        TabProvider provider = tabProviders.get(key);
+        if (provider == null)
+            throw new IllegalArgumentException("Cannot find tabs for key " + key);
+        return provider.getTab(context);
+    }
+
+    /**
+     * Returns the index of online players used by the player resolver and the {@code @players} tabs
+     *
+     * @return The player index
+     */
+    public PlayerIndex getPlayerIndex() {
+        return playerIndex;
+    }
+
+    /**
+     * Returns the cache of offline player names used by the offline player resolver and the
+     * {@code @offlineplayers} tabs
+     *
+     * @return The offline player cache
+     */
+    public OfflinePlayerCache getOfflinePlayers() {
+        return offlinePlayers;
     }
 
     /**
-     * Registers a static list of tabs for the specified key
+     * Registers a static list of tabs for the specified key. The tabs are deduplicated and sorted, so that
+     * completions are found with a binary search.
      *
      * @param key  Key to register for
      * @param tabs A list of all strings. For spaces, use "~~"
      */
     public void registerStaticTab(String key, List<String> tabs) {
-        staticTabs.put(key, tabs);
+        StaticTabs staticTabs = new StaticTabs(tabs); // sort outside the lock
+        synchronized (this) {
+            this.staticTabs = with(this.staticTabs, key, staticTabs);
+        }
     }
 
     /**
@@ -127,8 +278,146 @@ public class CommandResolvers {
      * @param key      Key to register for
      * @param provider The tab provider
      */
-    public void registerTabProvider(String key, TabProvider provider) {
-        tabProviders.put(key, provider);
+    public synchronized void registerTabProvider(String key, TabProvider provider) {
+        tabProviders = with(tabProviders, key, provider);
+    }
+
+    /**
+     * Registers a tab provider whose tabs are cached according to the specified policy. Cached tabs are
+     * served immediately, and refreshed in the background once they are stale.
+     *
+     * @param key      Key to register for
+     * @param provider The tab provider. Must be thread-safe, as it is refreshed off the main thread
+     * @param policy   How to cache the provider's tabs
+     * @see CachedTabProvider
+     */
+    public void registerTabProvider(String key, TabProvider provider, CachedTabProvider.Policy policy) {
+        registerTabProvider(key, new CachedTabProvider(key, provider, policy));
+    }
+
+    /**
+     * Registers an asynchronous tab provider for the specified key. When completions are requested
+     * synchronously, the provider's result is waited for up to {@link CommandHandler#setTabTimeout(long)},
+     * after which the last completed result (or an empty list) is used instead. Asynchronous requests
+     * complete with the same fallback once that time passes.
+     *
+     * @param key      Key to register for
+     * @param provider The asynchronous tab provider
+     */
+    public synchronized void registerAsyncTabProvider(String key, AsyncTabProvider provider) {
+        asyncTabProviders = with(asyncTabProviders, key, provider);
+        tabProviders = with(tabProviders, key, new BlockingTabProvider(provider));
+    }
+
+    /**
+     * Unregisters the resolvers and tab providers which are defined by the specified class loader, or
+     * which resolve into a type defined by it
+     *
+     * @param loader The class loader
+     * @see CommandHandler#unregister(Object)
+     */
+    public synchronized void unregister(ClassLoader loader) {
+        Map<Class<?>, Resolver<?>> remaining = without(resolvers, (type, resolver) -> type.getClassLoader() == loader || resolver.isDefinedBy(loader));
+        if (remaining != resolvers) {
+            resolvers = remaining;
+            resolverVersion++;
+        }
+        tabProviders = without(tabProviders, (key, provider) -> definedBy(provider, loader)
+                || (provider instanceof BlockingTabProvider && definedBy(((BlockingTabProvider) provider).provider, loader))
+                || (provider instanceof CachedTabProvider && definedBy(((CachedTabProvider) provider).getProvider(), loader)));
+        asyncTabProviders = without(asyncTabProviders, (key, provider) -> definedBy(provider, loader));
+    }
+
+    private static boolean definedBy(Object object, ClassLoader loader) {
+        return object != null && object.getClass().getClassLoader() == loader;
+    }
+
+    /**
+     * Returns an immutable copy of the map with the specified entry added
+     */
+    private static <K, V> Map<K, V> with(Map<K, V> map, K key, V value) {
+        Map<K, V> copy = new HashMap<>(map);
+        copy.put(key, value);
+        return Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Returns an immutable copy of the map without the matching entries
+     */
+    private static <K, V> Map<K, V> without(Map<K, V> map, BiPredicate<K, V> removed) {
+        Map<K, V> copy = new HashMap<>(map);
+        copy.entrySet().removeIf(entry -> removed.test(entry.getKey(), entry.getValue()));
+        return copy.size() == map.size() ? map : Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Returns the resolver of unboxed integers
+     *
+     * @return The int resolver
+     */
+    public IntResolver getIntResolver() {
+        return intResolver;
+    }
+
+    /**
+     * Returns the resolver of unboxed longs
+     *
+     * @return The long resolver
+     */
+    public LongResolver getLongResolver() {
+        return longResolver;
+    }
+
+    /**
+     * Returns the resolver of unboxed doubles
+     *
+     * @return The double resolver
+     */
+    public DoubleResolver getDoubleResolver() {
+        return doubleResolver;
+    }
+
+    /**
+     * Sets the resolver of unboxed integers
+     *
+     * @param intResolver Resolver to set
+     */
+    public void setIntResolver(IntResolver intResolver) {
+        this.intResolver = intResolver;
+    }
+
+    /**
+     * Sets the resolver of unboxed longs
+     *
+     * @param longResolver Resolver to set
+     */
+    public void setLongResolver(LongResolver longResolver) {
+        this.longResolver = longResolver;
+    }
+
+    /**
+     * Sets the resolver of unboxed doubles
+     *
+     * @param doubleResolver Resolver to set
+     */
+    public void setDoubleResolver(DoubleResolver doubleResolver) {
+        this.doubleResolver = doubleResolver;
+    }
+
+    /**
+     * Runs the resolver fallback for an invalid number, and returns the exception to stop the command with
+     */
+    private static CommandCallbackException fail(Object min, Object max, String argument, CommandContext context) {
+        String name = isUnbounded(min) && isUnbounded(max) ? "number" : "number (" + min + " to " + max + ")";
+        context.fail(Outcome.RESOLVER_FAIL);
+        context.getCommandHandler().resolverFail.onFail(name, argument, context);
+        return CommandCallbackException.SILENT;
+    }
+
+    private static boolean isUnbounded(Object bound) {
+        return bound.equals(Integer.MIN_VALUE) || bound.equals(Integer.MAX_VALUE)
+                || bound.equals(Long.MIN_VALUE) || bound.equals(Long.MAX_VALUE)
+                || bound.equals(-Double.MAX_VALUE) || bound.equals(Double.MAX_VALUE);
     }
 
     /**
@@ -139,8 +428,10 @@ public class CommandResolvers {
      * @param resolver     The resolver
      * @param <R>          Type to be resolved
      */
-    public <R> void registerResolver(Class<R> resolvedType, Resolver<R> resolver) {
-        resolvers.put(resolvedType, resolver);
+    public synchronized <R> void registerResolver(Class<R> resolvedType, Resolver<R> resolver) {
+        if (resolver.metricsKey == null) resolver.metricsKey = resolvedType.getName();
+        resolvers = with(resolvers, resolvedType, resolver);
+        resolverVersion++;
     }
 
     /**
@@ -165,6 +456,12 @@ public class CommandResolvers {
          */
         private BiConsumer<String, CommandContext> onFail;
 
+        /**
+         * The key which the resolver's latency is recorded under: the name of the type it was first
+         * registered for, or null to use its name
+         */
+        private volatile String metricsKey;
+
         /**
          * Creates a new resolver wrapper
          *
@@ -187,6 +484,13 @@ public class CommandResolvers {
             return this;
         }
 
+        /**
+         * Returns whether is this resolver or its fail fallback defined by the specified class loader
+         */
+        private boolean isDefinedBy(ClassLoader loader) {
+            return definedBy(resolver, loader) || definedBy(onFail, loader);
+        }
+
         /**
          * Resolves the specified type
          *
@@ -196,25 +500,246 @@ public class CommandResolvers {
          * @throws CommandCallbackException If the type could not be resolved
          */
         public R resolve(String argument, CommandContext context) {
+            R resolved;
+            long start = System.nanoTime();
             try {
-                R resolved = resolver.resolve(argument, context);
-                if (resolved == null)
-                    throw new NullPointerException(); // this will redirect us down below
-                return resolved;
+                resolved = resolver.resolve(argument, context);
+            } catch (CommandCallbackException e) {
+                throw e;
             } catch (Exception e) {
-                if (onFail == null && !(e instanceof CommandCallbackException)) {
-                    context.getCommandHandler().resolverFail.onFail(name, argument, context);
-                    throw new CommandCallbackException();
+                resolved = null;
+            } finally {
+                String key = metricsKey;
+                context.getCommandHandler().getMetrics().recordResolver(key == null ? name : key, System.nanoTime() - start);
+            }
+            if (resolved != null) return resolved;
+            context.fail(Outcome.RESOLVER_FAIL);
+            if (onFail != null) onFail.accept(argument, context);
+            else context.getCommandHandler().resolverFail.onFail(name, argument, context);
+            throw CommandCallbackException.SILENT;
+        }
+    }
+
+    /**
+     * Adapts an {@link AsyncTabProvider} to the synchronous {@link TabProvider} contract, by waiting for its
+     * result for a bounded time and falling back to the last completed result of the same sender and
+     * preceding arguments. Asynchronous requests are bounded by the same timeout through
+     * {@link #getTabAsync(TabContext)}.
+     */
+    static class BlockingTabProvider implements TabProvider {
+
+        /**
+         * The maximum amount of last results kept
+         */
+        private static final int MAX_STALE = 256;
+
+        /**
+         * Completes asynchronous requests which time out, shared by all providers
+         */
+        private static final ScheduledThreadPoolExecutor TIMEOUTS = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "BukkitCommands Tab Timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        static {
+            TIMEOUTS.setRemoveOnCancelPolicy(true); // most requests complete in time
+        }
+
+        private final AsyncTabProvider provider;
+
+        /**
+         * The last completed result of each sender and preceding arguments, used when the provider does not
+         * complete in time. Results are never shared between senders, whose completions may differ
+         */
+        private final Map<Object, List<String>> stale = new LinkedHashMap<Object, List<String>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, List<String>> eldest) {
+                return size() > MAX_STALE;
+            }
+        };
+
+        private BlockingTabProvider(AsyncTabProvider provider) {
+            this.provider = provider;
+        }
+
+        @Override
+        public List<String> getTab(TabContext context) {
+            CommandHandler handler = context.getHandler();
+            Object key = context.precedingKey(SenderExecutor.key(context.getSender()));
+            CompletableFuture<List<String>> future;
+            try {
+                future = request(context, key);
+            } catch (RejectedExecutionException e) {
+                return stale(key);
+            }
+            try {
+                return future.get(handler.tabTimeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return stale(key);
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof RejectedExecutionException)) e.getCause().printStackTrace();
+                return stale(key);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return stale(key);
+            }
+        }
+
+        /**
+         * Requests the tabs without blocking. The returned future completes with the last result of the
+         * sender and preceding arguments if the provider fails or does not complete within the handler's
+         * {@link CommandHandler#setTabTimeout(long) tab timeout}.
+         *
+         * @param context The tab context
+         * @return A future of the tabs, which always completes
+         */
+        CompletableFuture<List<String>> getTabAsync(TabContext context) {
+            Object key = context.precedingKey(SenderExecutor.key(context.getSender()));
+            CompletableFuture<List<String>> future;
+            try {
+                future = request(context, key);
+            } catch (RejectedExecutionException e) {
+                return CompletableFuture.completedFuture(stale(key));
+            }
+            if (future.isDone() && !future.isCompletedExceptionally()) return future;
+            CompletableFuture<List<String>> result = new CompletableFuture<>();
+            ScheduledFuture<?> timeout = TIMEOUTS.schedule(() -> result.complete(stale(key)), context.getHandler().tabTimeout, TimeUnit.MILLISECONDS);
+            future.whenComplete((tabs, error) -> {
+                timeout.cancel(false);
+                if (error == null) {
+                    result.complete(tabs);
+                    return;
                 }
-                if (onFail != null) {
-                    onFail.accept(argument, context);
-                    throw new CommandCallbackException();
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                if (!(cause instanceof RejectedExecutionException)) cause.printStackTrace();
+                result.complete(stale(key));
+            });
+            return result;
+        }
+
+        /**
+         * Calls the provider, and keeps its result for the sender and preceding arguments once it completes
+         *
+         * @throws RejectedExecutionException If the tab executor is saturated
+         */
+        private CompletableFuture<List<String>> request(TabContext context, Object key) {
+            CompletableFuture<List<String>> future = provider.getTab(context, context.getHandler().getTabExecutor());
+            future.thenAccept(tabs -> {
+                if (tabs != null) synchronized (stale) {
+                    stale.put(key, tabs);
                 }
-                return null;
+            });
+            return future;
+        }
+
+        private List<String> stale(Object key) {
+            synchronized (stale) {
+                return stale.getOrDefault(key, Collections.emptyList());
             }
         }
     }
 
+    /**
+     * A static list of tabs, deduplicated and sorted. Completions for a prefix are found with a binary search
+     * and stop at the handler's {@link CommandHandler#setMaxStaticTabs(int) limit}, so large lists are not
+     * walked on every keystroke.
+     */
+    public static final class StaticTabs implements PrefixTabProvider {
+
+        private final PrefixIndex<String> index;
+
+        /**
+         * The sorted tabs. The same list is always returned, so that indexes of it can be reused
+         */
+        private final List<String> tabs;
+
+        private StaticTabs(List<String> tabs) {
+            this.index = PrefixIndex.of(tabs);
+            String[] sorted = new String[index.size()];
+            for (int i = 0; i < sorted.length; i++) sorted[i] = index.key(i);
+            this.tabs = Collections.unmodifiableList(Arrays.asList(sorted));
+        }
+
+        @Override
+        public List<String> getTab(TabContext context, String prefix) {
+            List<String> completions = new ArrayList<>();
+            index.complete(prefix, completions, context == null ? 0 : context.getHandler().maxStaticTabs);
+            return completions;
+        }
+
+        @Override
+        public List<String> getTab(TabContext context) {
+            return tabs;
+        }
+
+        /**
+         * Returns all the tabs, sorted
+         *
+         * @return The tabs
+         */
+        public List<String> getTabs() {
+            return tabs;
+        }
+    }
+
+    /**
+     * A resolver of unboxed integers
+     */
+    @FunctionalInterface
+    public interface IntResolver {
+
+        /**
+         * Resolves the specified argument
+         *
+         * @param argument Argument to resolve
+         * @param context  Command context
+         * @param min      The minimum value, inclusive
+         * @param max      The maximum value, inclusive
+         * @return The resolved value
+         * @throws CommandCallbackException If the argument is not a valid number in the range
+         */
+        int resolve(String argument, CommandContext context, int min, int max);
+    }
+
+    /**
+     * A resolver of unboxed longs
+     */
+    @FunctionalInterface
+    public interface LongResolver {
+
+        /**
+         * Resolves the specified argument
+         *
+         * @param argument Argument to resolve
+         * @param context  Command context
+         * @param min      The minimum value, inclusive
+         * @param max      The maximum value, inclusive
+         * @return The resolved value
+         * @throws CommandCallbackException If the argument is not a valid number in the range
+         */
+        long resolve(String argument, CommandContext context, long min, long max);
+    }
+
+    /**
+     * A resolver of unboxed doubles
+     */
+    @FunctionalInterface
+    public interface DoubleResolver {
+
+        /**
+         * Resolves the specified argument
+         *
+         * @param argument Argument to resolve
+         * @param context  Command context
+         * @param min      The minimum value, inclusive
+         * @param max      The maximum value, inclusive
+         * @return The resolved value
+         * @throws CommandCallbackException If the argument is not a valid number in the range
+         */
+        double resolve(String argument, CommandContext context, double min, double max);
+    }
+
     /**
      * A fallback functional interface, with its method invoked when a
      * parameter cannot be resolved
@@ -16,6 +16,7 @@
 package io.github.reflxction.commands;
 
 import org.bukkit.permissions.PermissionDefault;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
 
@@ -24,13 +25,23 @@ import java.util.List;
  */
 public class CommandWrapper extends SubcommandInvokation {
 
-    private CommandCallback callback;
+    private final CommandCallback callback;
 
     public CommandWrapper(String name, String description, String parameters, String[] aliases, List<String> helpMenu, String permission, PermissionDefault permissionAccess, int minimumArgs, boolean requirePlayer, String tab, CommandCallback callback) {
         super(name, description, parameters, aliases, helpMenu, permission, permissionAccess, minimumArgs, requirePlayer, tab);
         this.callback = callback;
     }
 
+    private CommandWrapper(CommandWrapper source, boolean async, boolean queued, CommandQueue.Priority priority, @Nullable RateLimiter rateLimiter, @Nullable RateLimiter tabRateLimiter) {
+        super(source, async, queued, priority, rateLimiter, tabRateLimiter);
+        this.callback = source.callback;
+    }
+
+    @Override
+    public CommandWrapper withExecution(boolean async, boolean queued, CommandQueue.Priority priority, @Nullable RateLimiter rateLimiter, @Nullable RateLimiter tabRateLimiter) {
+        return new CommandWrapper(this, async, queued, priority, rateLimiter, tabRateLimiter);
+    }
+
     @Override
     public void invoke(CommandContext context) {
         callback.onProcess(context);
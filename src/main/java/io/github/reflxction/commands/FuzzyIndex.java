@@ -0,0 +1,262 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * An immutable index of tab completions which are matched fuzzily: a completion matches a query if it
+ * contains the query's characters in order, ignoring case. Matches are ranked, so that prefixes, word and
+ * camel-hump starts ({@code gs} for {@code GoldenSword} or {@code golden_sword}) and consecutive characters
+ * rank first, and only the best matches are returned.
+ * <p>
+ * For each character, the index stores a bitset of the completions containing it. A query intersects the
+ * bitsets of its characters, so only the completions which contain every character are scored. Building the
+ * index costs more than scoring a list once, so lists which change on every request should be matched with
+ * {@link #search(List, String, int)} instead.
+ */
+public class FuzzyIndex {
+
+    /**
+     * The score of a completion which does not match
+     */
+    static final int NO_MATCH = Integer.MIN_VALUE;
+
+    /**
+     * The score of a matched character
+     */
+    private static final int MATCH = 16;
+
+    /**
+     * The bonus of a character matched at the start of the completion
+     */
+    private static final int PREFIX_BONUS = 32;
+
+    /**
+     * The bonus of a character matched at the start of a word or a camel hump
+     */
+    private static final int BOUNDARY_BONUS = 24;
+
+    /**
+     * The bonus of a character matched right after the previous match
+     */
+    private static final int CONSECUTIVE_BONUS = 12;
+
+    /**
+     * The list this index was built from
+     */
+    private final List<String> source;
+
+    /**
+     * The distinct completions
+     */
+    private final String[] completions;
+
+    /**
+     * The completions containing each case-folded character, as bitsets over {@link #completions}
+     */
+    private final Map<Character, long[]> occurrences = new HashMap<>();
+
+    /**
+     * Creates a new index of the specified completions
+     *
+     * @param source Completions to index. Duplicates are removed
+     */
+    public FuzzyIndex(List<String> source) {
+        this.source = source;
+        this.completions = new LinkedHashSet<>(source).toArray(new String[0]);
+        int words = (completions.length + 63) >>> 6;
+        for (int i = 0; i < completions.length; i++) {
+            String completion = completions[i];
+            for (int j = 0; j < completion.length(); j++)
+                occurrences.computeIfAbsent(fold(completion.charAt(j)), c -> new long[words])[i >>> 6] |= 1L << i;
+        }
+    }
+
+    /**
+     * Returns whether was this index built from the specified list. Providers which return the same list
+     * instance can reuse the index.
+     *
+     * @param list List to check
+     * @return True if this index was built from the list
+     */
+    public boolean isOf(List<String> list) {
+        return source == list;
+    }
+
+    /**
+     * Returns the best completions matching the query, best first
+     *
+     * @param query The argument being completed
+     * @param limit The maximum amount of completions to return
+     * @return The matching completions
+     */
+    public List<String> search(String query, int limit) {
+        if (limit <= 0) return Collections.emptyList();
+        long[] candidates = candidates(query);
+        if (candidates == null) return Collections.emptyList();
+        PriorityQueue<Scored> best = new PriorityQueue<>(limit + 1);
+        for (int word = 0; word < candidates.length; word++) {
+            for (long bits = candidates[word]; bits != 0; bits &= bits - 1) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (index >= completions.length) break;
+                offer(best, completions[index], query, limit);
+            }
+        }
+        return results(best);
+    }
+
+    /**
+     * Returns the best completions matching the query, best first, by scoring every completion without
+     * building an index
+     *
+     * @param completions The completions. Duplicates are removed
+     * @param query       The argument being completed
+     * @param limit       The maximum amount of completions to return
+     * @return The matching completions
+     */
+    public static List<String> search(List<String> completions, String query, int limit) {
+        if (limit <= 0) return Collections.emptyList();
+        PriorityQueue<Scored> best = new PriorityQueue<>(limit + 1);
+        Set<String> seen = new HashSet<>();
+        for (String completion : completions)
+            if (seen.add(completion)) offer(best, completion, query, limit);
+        return results(best);
+    }
+
+    /**
+     * Scores the completion, and keeps it if it is among the best
+     */
+    private static void offer(PriorityQueue<Scored> best, String completion, String query, int limit) {
+        int score = score(completion, query);
+        if (score == NO_MATCH) return;
+        best.add(new Scored(completion, score));
+        if (best.size() > limit) best.poll();
+    }
+
+    private static List<String> results(PriorityQueue<Scored> best) {
+        List<String> results = new ArrayList<>(best.size());
+        while (!best.isEmpty()) results.add(best.poll().completion);
+        Collections.reverse(results);
+        return results;
+    }
+
+    /**
+     * Returns the bitset of completions which contain every character of the query
+     */
+    private long[] candidates(String query) {
+        long[] candidates = new long[(completions.length + 63) >>> 6];
+        Arrays.fill(candidates, -1L);
+        for (int i = 0; i < query.length(); i++) {
+            long[] containing = occurrences.get(fold(query.charAt(i)));
+            if (containing == null) return null;
+            for (int word = 0; word < candidates.length; word++) candidates[word] &= containing[word];
+        }
+        return candidates;
+    }
+
+    /**
+     * Scores how well does the completion match the query
+     *
+     * @param completion The completion
+     * @param query      The query
+     * @return The score, or {@link #NO_MATCH} if the completion does not contain the query's characters in order
+     */
+    static int score(String completion, String query) {
+        int score = 0, position = 0, previous = -2;
+        for (int i = 0; i < query.length(); i++) {
+            char c = fold(query.charAt(i));
+            int found = indexOf(completion, c, position);
+            if (found < 0) return NO_MATCH;
+            if (found != previous + 1) {
+                // prefer the start of a later word, if the rest of the query still matches after it
+                for (int next = found; next >= 0; next = indexOf(completion, c, next + 1)) {
+                    if (!isBoundary(completion, next)) continue;
+                    if (next != found && !matchesFrom(completion, query, i + 1, next + 1)) break;
+                    found = next;
+                    break;
+                }
+            }
+            score += MATCH;
+            if (found == 0) score += PREFIX_BONUS;
+            else if (isBoundary(completion, found)) score += BOUNDARY_BONUS;
+            if (found == previous + 1) score += CONSECUTIVE_BONUS;
+            else if (previous >= 0) score -= Math.min(found - previous - 1, 8);
+            previous = found;
+            position = found + 1;
+        }
+        return score - Math.min(completion.length() - query.length(), 16) / 4;
+    }
+
+    private static boolean matchesFrom(String completion, String query, int queryIndex, int position) {
+        for (int i = queryIndex; i < query.length(); i++) {
+            position = indexOf(completion, fold(query.charAt(i)), position);
+            if (position < 0) return false;
+            position++;
+        }
+        return true;
+    }
+
+    private static int indexOf(String completion, char folded, int from) {
+        for (int i = from; i < completion.length(); i++)
+            if (fold(completion.charAt(i)) == folded) return i;
+        return -1;
+    }
+
+    /**
+     * Returns whether does a word or a camel hump start at the specified index
+     */
+    private static boolean isBoundary(String completion, int index) {
+        if (index == 0) return true;
+        char previous = completion.charAt(index - 1), current = completion.charAt(index);
+        return !Character.isLetterOrDigit(previous)
+                || (Character.isUpperCase(current) && Character.isLowerCase(previous))
+                || (Character.isDigit(current) && !Character.isDigit(previous));
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * A scored completion, ordered from the worst to the best
+     */
+    private static final class Scored implements Comparable<Scored> {
+
+        private final String completion;
+        private final int score;
+
+        private Scored(String completion, int score) {
+            this.completion = completion;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Scored other) {
+            if (score != other.score) return Integer.compare(score, other.score);
+            return other.completion.compareTo(completion);
+        }
+    }
+}
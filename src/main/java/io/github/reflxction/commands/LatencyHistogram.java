@@ -0,0 +1,180 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in nanoseconds. Values are counted in logarithmic buckets, each power
+ * of two being split into {@link #SUB_BUCKETS} linear sub-buckets, so recorded values keep a relative
+ * precision of 12.5% over the whole range of a long.
+ */
+public class LatencyHistogram {
+
+    /**
+     * The amount of linear sub-buckets in each power of two
+     */
+    private static final int SUB_BUCKETS = 8;
+
+    /**
+     * log2({@link #SUB_BUCKETS})
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * The total amount of buckets. The highest power of two of a positive long is 2^62
+     */
+    static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records the specified duration
+     *
+     * @param nanos Duration to record, in nanoseconds. Negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    /**
+     * Returns a snapshot of the recorded values. Values recorded concurrently may or may not be included.
+     *
+     * @return The snapshot
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.counts.get(i);
+            count += counts[i];
+        }
+        return new Snapshot(counts, count, sum.sum(), max.get());
+    }
+
+    /**
+     * Returns the bucket of the specified value
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the highest value counted in the specified bucket
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return lower + width - 1 < lower ? Long.MAX_VALUE : lower + width - 1;
+    }
+
+    /**
+     * An immutable copy of a histogram's values
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count, sum, max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Returns the amount of recorded values
+         *
+         * @return The count
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the sum of all recorded values, in nanoseconds
+         *
+         * @return The sum
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * Returns the highest recorded value, in nanoseconds
+         *
+         * @return The maximum
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the mean of all recorded values, in nanoseconds
+         *
+         * @return The mean, or 0 if nothing was recorded
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Returns the value at the specified percentile, in nanoseconds. The value is the upper bound of
+         * the bucket containing the percentile, capped at the maximum.
+         *
+         * @param percentile The percentile, between 0 and 100
+         * @return The value, or 0 if nothing was recorded
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) return 0;
+            long target = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) return Math.min(upperBound(i), max);
+            }
+            return max;
+        }
+
+        /**
+         * Returns the amount of recorded values which are less than or equal to the specified value. This
+         * is accurate to the bucket containing the value.
+         *
+         * @param nanos The value, in nanoseconds
+         * @return The amount of values
+         */
+        public long countAtOrBelow(long nanos) {
+            long seen = 0;
+            for (int i = 0; i < counts.length && upperBound(i) <= nanos; i++)
+                seen += counts[i];
+            return seen;
+        }
+    }
+}
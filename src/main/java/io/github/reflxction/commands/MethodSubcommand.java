@@ -17,60 +17,511 @@ package io.github.reflxction.commands;
 
 import io.github.reflxction.commands.CommandCallback.CommandCallbackException;
 import io.github.reflxction.commands.CommandResolvers.Resolver;
+import io.github.reflxction.commands.PluginSubcommand.JoinedParameter;
+import io.github.reflxction.commands.PluginSubcommand.OptionalParameter;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.permissions.PermissionDefault;
+import org.jetbrains.annotations.Nullable;
 
 import java.lang.annotation.Annotation;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.List;
 
 public class MethodSubcommand extends SubcommandInvokation {
 
+    /**
+     * An empty arguments array, used for methods which take no parameters
+     */
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    /**
+     * The largest amount of parameters of methods which are invoked by a spun class
+     */
+    private static final int MAX_SPUN_ARITY = 6;
+
+    /**
+     * The functional interfaces which spun classes implement, by arity
+     */
+    private static final Class<?>[] ARITIES = {MethodInvoker.Arity0.class, MethodInvoker.Arity1.class, MethodInvoker.Arity2.class,
+            MethodInvoker.Arity3.class, MethodInvoker.Arity4.class, MethodInvoker.Arity5.class, MethodInvoker.Arity6.class};
+
+    /**
+     * {@code MethodHandles.privateLookupIn(Class, Lookup)}, or null on Java 8
+     */
+    @Nullable
+    private static final Method PRIVATE_LOOKUP_IN = findPrivateLookupIn();
+
+    /**
+     * The subcommand method, or null if it was registered by a generated registrar
+     */
+    @Nullable
     protected final Method method;
     protected final Object instance;
 
-    public MethodSubcommand(Method method, Object instance, String name, String description, String parameters, String[] aliases, List<String> helpMenu, String permission, PermissionDefault permissionAccess, int minimumArgs, boolean requirePlayer, String tab) {
+    /**
+     * The invoker of the method, compiled once when this subcommand is created
+     */
+    protected final MethodInvoker invoker;
+
+    /**
+     * The binding plan of the method, one binder per parameter
+     */
+    protected final ParameterBinder[] binders;
+
+    public MethodSubcommand(Method method, Object instance, CommandResolvers resolvers, String name, String description, String parameters, String[] aliases, List<String> helpMenu, String permission, PermissionDefault permissionAccess, int minimumArgs, boolean requirePlayer, String tab) {
+        this(method, instance, null, resolvers, name, description, parameters, aliases, helpMenu, permission, permissionAccess, minimumArgs, requirePlayer, tab);
+    }
+
+    public MethodSubcommand(Method method, Object instance, MethodInvoker invoker, CommandResolvers resolvers, String name, String description, String parameters, String[] aliases, List<String> helpMenu, String permission, PermissionDefault permissionAccess, int minimumArgs, boolean requirePlayer, String tab) {
         super(name, description, parameters, aliases, helpMenu, permission, permissionAccess, minimumArgs, requirePlayer, tab);
         this.method = method;
-        method.setAccessible(true);
         this.instance = instance;
+        this.binders = compileBindings(method, resolvers);
+        this.invoker = invoker == null ? createInvoker(method, instance) : invoker;
+    }
+
+    /**
+     * Creates a subcommand from the parameter layout read by a generated registrar, without looking up
+     * the method reflectively.
+     *
+     * @param owner      Name of the method, used in errors
+     * @param parameters The method's parameter types
+     * @param joined     Whether each parameter is annotated with {@link JoinedParameter}
+     * @param defaults   The {@link OptionalParameter#defaultValue() default value} of each optional
+     *                   parameter, or null for required parameters
+     * @param instance   Instance the method is invoked on
+     * @param invoker    The method invoker
+     */
+    public MethodSubcommand(String owner, Class<?>[] parameters, boolean[] joined, String[] defaults, Object instance, MethodInvoker invoker, CommandResolvers resolvers, String name, String description, String parameterUsage, String[] aliases, List<String> helpMenu, String permission, PermissionDefault permissionAccess, int minimumArgs, boolean requirePlayer, String tab) {
+        super(name, description, parameterUsage, aliases, helpMenu, permission, permissionAccess, minimumArgs, requirePlayer, tab);
+        this.method = null;
+        this.instance = instance;
+        this.binders = compileBindings(owner, parameters, joined, defaults, resolvers);
+        this.invoker = invoker;
+    }
+
+    private MethodSubcommand(MethodSubcommand source, boolean async, boolean queued, CommandQueue.Priority priority, @Nullable RateLimiter rateLimiter, @Nullable RateLimiter tabRateLimiter) {
+        super(source, async, queued, priority, rateLimiter, tabRateLimiter);
+        this.method = source.method;
+        this.instance = source.instance;
+        this.binders = source.binders;
+        this.invoker = source.invoker;
+    }
+
+    @Override
+    public MethodSubcommand withExecution(boolean async, boolean queued, CommandQueue.Priority priority, @Nullable RateLimiter rateLimiter, @Nullable RateLimiter tabRateLimiter) {
+        return new MethodSubcommand(this, async, queued, priority, rateLimiter, tabRateLimiter);
     }
 
     @Override
     public void invoke(CommandContext context) {
-        Class<?>[] parameters = method.getParameterTypes();
+        callback(bind(context), context);
+    }
+
+    @Override
+    public Runnable prepare(CommandContext context) {
+        Object[] arguments = bind(context);
+        return () -> callback(arguments, context);
+    }
+
+    private Object[] bind(CommandContext context) {
+        if (binders.length == 0) return NO_ARGUMENTS;
+        Object[] arguments = new Object[binders.length];
+        for (int i = 0; i < binders.length; i++)
+            arguments[i] = binders[i].bind(context);
+        return arguments;
+    }
+
+    private void callback(Object[] parameters, CommandContext context) {
+        try {
+            invoker.invoke(parameters);
+        } catch (CommandCallbackException e) {
+            throw e;
+        } catch (Throwable e) {
+            e.printStackTrace();
+            context.fail(CommandMetrics.Outcome.ERROR);
+            throw new CommandCallbackException("An error occurred while executing the command method callback. Check console for errors.");
+        }
+    }
+
+    /**
+     * Compiles the binding plan of the specified method. The layout of the parameters is validated here,
+     * so that a misconfigured method fails when it is registered rather than when it is first invoked.
+     * A resolver replaced after the method is registered is picked up on the next invocation.
+     *
+     * @param method    Method to compile
+     * @param resolvers Resolvers to bind parameters with
+     * @return The binders, one for each parameter
+     * @throws IllegalArgumentException If a parameter cannot be bound
+     */
+    public static ParameterBinder[] compileBindings(Method method, CommandResolvers resolvers) {
         Annotation[][] annotations = method.getParameterAnnotations();
-        switch (method.getParameterCount()) {
-            case 0:
-                callback();
-                break;
-            case 1: {
-                Class<?> first = parameters[0];
-                if (CommandContext.class.isAssignableFrom(first)) callback(context);
-                else if (Player.class.isAssignableFrom(first)) callback(context.player());
-                else if (CommandSender.class.isAssignableFrom(first)) callback(context.getSender());
-                else {
-                    Resolver<?> resolver = context.getCommandHandler().getResolvers().get(first);
-                    if (resolver != null) callback(resolver.resolve(context.getArgs()[0], context));
-                    else
-                        throw new IllegalStateException(String.format("Cannot resolve argument to appropriate type in %s#%s()", instance.getClass().getName(), method.getName()));
+        boolean[] joined = new boolean[annotations.length];
+        String[] defaults = new String[annotations.length];
+        for (int i = 0; i < annotations.length; i++) {
+            OptionalParameter optionalParameter = find(annotations[i], OptionalParameter.class);
+            joined[i] = find(annotations[i], JoinedParameter.class) != null;
+            defaults[i] = optionalParameter == null ? null : optionalParameter.defaultValue();
+        }
+        return compileBindings(method.getDeclaringClass().getName() + "#" + method.getName(), method.getParameterTypes(), joined, defaults, resolvers);
+    }
+
+    /**
+     * Compiles the binding plan of a method from its parameter layout. Generated registrars read the
+     * parameter annotations at compile time, and pass them here directly.
+     *
+     * @param owner     Name of the method, used in errors
+     * @param types     The method's parameter types
+     * @param joined    Whether each parameter is annotated with {@link JoinedParameter}
+     * @param defaults  The {@link OptionalParameter#defaultValue() default value} of each optional
+     *                  parameter, or null for required parameters
+     * @param resolvers Resolvers to bind parameters with
+     * @return The binders, one for each parameter
+     * @throws IllegalArgumentException If a parameter cannot be bound
+     */
+    public static ParameterBinder[] compileBindings(String owner, Class<?>[] types, boolean[] joined, String[] defaults, CommandResolvers resolvers) {
+        if (joined.length != types.length || defaults.length != types.length)
+            throw invalid(owner, "Parameter layout does not match the parameter types");
+        ParameterBinder[] binders = new ParameterBinder[types.length];
+        int version = resolvers.getResolverVersion(); // read before the resolvers, so that a newer one is looked up again
+        int index = 0;
+        boolean optional = false;
+        for (int i = 0; i < types.length; i++) {
+            Class<?> type = types[i];
+            String defaultValue = defaults[i];
+            if (CommandContext.class.isAssignableFrom(type)) binders[i] = context -> context;
+            else if (Player.class.isAssignableFrom(type)) binders[i] = CommandContext::player;
+            else if (CommandSender.class.isAssignableFrom(type)) binders[i] = CommandContext::getSender;
+            else {
+                if (joined[i] || type == String[].class) {
+                    if (i != types.length - 1)
+                        throw invalid(owner, "Parameter #" + i + " must be the last parameter, as it takes the remaining arguments");
+                    if (joined[i] && type != String.class)
+                        throw invalid(owner, "Parameter #" + i + " is annotated with @JoinedParameter, but is not a String");
+                    binders[i] = tailBinder(index, joined[i], defaultValue);
+                    break;
                 }
+                if (defaultValue != null) {
+                    optional = true;
+                    if (type.isPrimitive() && defaultValue.equals(PluginSubcommand.OPTIONAL_PARAM_DEFAULT))
+                        throw invalid(owner, "Optional primitive parameter #" + i + " must specify a default value");
+                } else if (optional)
+                    throw invalid(owner, "Required parameter #" + i + " cannot come after an optional parameter");
+                Resolver<?> resolver = resolvers.get(type);
+                if (resolver == null)
+                    throw invalid(owner, "No resolver is registered for parameter #" + i + " of type " + type.getName());
+                binders[i] = resolverBinder(new BoundResolver(owner, type, resolvers, resolver, version), index++, defaultValue);
+            }
+        }
+        return binders;
+    }
+
+    private static ParameterBinder resolverBinder(BoundResolver resolver, int index, @Nullable String defaultValue) {
+        if (defaultValue == null) return context -> {
+            Arguments args = context.getArguments();
+            if (index >= args.size()) context.invalidUsage();
+            return resolver.resolve(args.get(index), context);
+        };
+        if (defaultValue.equals(PluginSubcommand.OPTIONAL_PARAM_DEFAULT)) return context -> {
+            Arguments args = context.getArguments();
+            return index < args.size() ? resolver.resolve(args.get(index), context) : null;
+        };
+        return context -> {
+            Arguments args = context.getArguments();
+            return resolver.resolve(index < args.size() ? args.get(index) : defaultValue, context);
+        };
+    }
+
+    private static ParameterBinder tailBinder(int index, boolean joined, @Nullable String optional) {
+        String defaultValue = optional == null || optional.equals(PluginSubcommand.OPTIONAL_PARAM_DEFAULT) ? null : optional;
+        return context -> {
+            Arguments args = context.getArguments();
+            if (index >= args.size()) {
+                if (joined && optional == null) context.invalidUsage();
+                if (joined) return defaultValue;
+                return defaultValue == null ? new String[0] : new String[]{defaultValue};
+            }
+            return joined ? args.join(index) : args.slice(index).toArray();
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <A extends Annotation> A find(Annotation[] annotations, Class<A> type) {
+        for (Annotation annotation : annotations)
+            if (annotation.annotationType() == type) return (A) annotation;
+        return null;
+    }
+
+    private static IllegalArgumentException invalid(String owner, String message) {
+        return new IllegalArgumentException(String.format("Cannot register method %s(): %s", owner, message));
+    }
+
+    /**
+     * Compiles an invoker for the specified method. The returned invoker is bound to the instance, and
+     * accepts the method arguments as a single array, which avoids the reflective access checks and
+     * exception wrapping of {@link Method#invoke(Object, Object...)}.
+     * <p>
+     * Methods with up to {@link #MAX_SPUN_ARITY} parameters are invoked by a class spun with
+     * {@link LambdaMetafactory}, which calls the method without access checks or spreading the arguments.
+     * The class is defined in the holder's package, using {@code MethodHandles.privateLookupIn} on Java 9
+     * and above. This requires the holder's package to be open to this library, which is always the case
+     * on the class path. On Java 8, or when the package is not open, public methods of public classes are
+     * spun from this library's lookup instead, as long as their signature is visible from this library's
+     * class loader.
+     * <p>
+     * The spun classes of all methods with the same arity are called from one adapter, so that call is
+     * not inlined once several such methods are invoked. {@code InvocationBenchmark} measures this case.
+     * <p>
+     * Otherwise, the method is made accessible with {@link Method#setAccessible(boolean)} and invoked
+     * through a method handle, which is slower. This requires deep reflective access to the holder.
+     *
+     * @param method   Method to compile
+     * @param instance Instance to invoke the method on. Ignored for static methods
+     * @return The compiled invoker
+     * @throws IllegalArgumentException If the method cannot be accessed
+     */
+    public static MethodInvoker createInvoker(Method method, Object instance) {
+        Lookup lookup = lookupFor(method);
+        MethodHandle handle;
+        try {
+            if (lookup != null) handle = lookup.unreflect(method);
+            else {
+                method.setAccessible(true);
+                handle = MethodHandles.lookup().unreflect(method);
+            }
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalArgumentException(String.format("Cannot access method %s#%s()", method.getDeclaringClass().getName(), method.getName()), e);
+        }
+        if (lookup != null && method.getParameterCount() <= MAX_SPUN_ARITY) {
+            try {
+                return spin(lookup, method, handle, instance);
+            } catch (Throwable e) {
+                // the lookup may not be allowed to define classes, fall back to the method handle
+            }
+        }
+        if (!Modifier.isStatic(method.getModifiers())) handle = handle.bindTo(instance);
+        MethodHandle invoker = handle
+                .asSpreader(Object[].class, method.getParameterCount())
+                .asType(MethodType.methodType(void.class, Object[].class));
+        return arguments -> {
+            invoker.invokeExact(arguments);
+        };
+    }
+
+    /**
+     * Returns a lookup which can spin a class calling the specified method: one with private access to
+     * its class, or this library's lookup if the method is public and linkable from this library. Returns
+     * null if neither can be used.
+     */
+    @Nullable
+    private static Lookup lookupFor(Method method) {
+        if (PRIVATE_LOOKUP_IN != null) {
+            try {
+                return (Lookup) PRIVATE_LOOKUP_IN.invoke(null, method.getDeclaringClass(), MethodHandles.lookup());
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // the holder's package is not open to this library
             }
-            break;
+        }
+        if (!Modifier.isPublic(method.getModifiers()) || !isLinkable(method.getDeclaringClass()) || !isLinkable(method.getReturnType()))
+            return null;
+        for (Class<?> type : method.getParameterTypes())
+            if (!isLinkable(type)) return null;
+        return MethodHandles.lookup();
+    }
+
+    /**
+     * Returns whether can a class defined by this library reference the specified type: it must be public,
+     * along with the classes enclosing it, and visible from this library's class loader
+     */
+    private static boolean isLinkable(Class<?> type) {
+        while (type.isArray()) type = type.getComponentType();
+        if (type.isPrimitive()) return true;
+        for (Class<?> enclosing = type; enclosing != null; enclosing = enclosing.getEnclosingClass())
+            if (!Modifier.isPublic(enclosing.getModifiers())) return false;
+        try {
+            return Class.forName(type.getName(), false, MethodSubcommand.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Spins a class which implements the functional interface of the method's arity by calling the method
+     * directly, and adapts it to a {@link MethodInvoker}
+     */
+    private static MethodInvoker spin(Lookup lookup, Method method, MethodHandle handle, Object instance) throws Throwable {
+        int arity = method.getParameterCount();
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        Class<?> arityType = ARITIES[arity];
+        MethodType erased = MethodType.genericMethodType(arity).changeReturnType(void.class);
+        MethodType instantiated = MethodType.methodType(void.class, method.getParameterTypes()).wrap().changeReturnType(void.class);
+        MethodType factory = isStatic ? MethodType.methodType(arityType) : MethodType.methodType(arityType, method.getDeclaringClass());
+        MethodHandle constructor = LambdaMetafactory.metafactory(lookup, "invoke", factory, erased, handle, instantiated).getTarget();
+        Object target = isStatic ? constructor.invoke() : constructor.invoke(instance);
+        switch (arity) {
+            case 0:
+                MethodInvoker.Arity0 a0 = (MethodInvoker.Arity0) target;
+                return arguments -> a0.invoke();
+            case 1:
+                MethodInvoker.Arity1 a1 = (MethodInvoker.Arity1) target;
+                return arguments -> a1.invoke(arguments[0]);
+            case 2:
+                MethodInvoker.Arity2 a2 = (MethodInvoker.Arity2) target;
+                return arguments -> a2.invoke(arguments[0], arguments[1]);
+            case 3:
+                MethodInvoker.Arity3 a3 = (MethodInvoker.Arity3) target;
+                return arguments -> a3.invoke(arguments[0], arguments[1], arguments[2]);
+            case 4:
+                MethodInvoker.Arity4 a4 = (MethodInvoker.Arity4) target;
+                return arguments -> a4.invoke(arguments[0], arguments[1], arguments[2], arguments[3]);
+            case 5:
+                MethodInvoker.Arity5 a5 = (MethodInvoker.Arity5) target;
+                return arguments -> a5.invoke(arguments[0], arguments[1], arguments[2], arguments[3], arguments[4]);
             default:
-                throw new IllegalArgumentException(String.format("Cannot invoke method %s#%s(): Invalid parameter count", instance.getClass().getName(), method.getName()));
+                MethodInvoker.Arity6 a6 = (MethodInvoker.Arity6) target;
+                return arguments -> a6.invoke(arguments[0], arguments[1], arguments[2], arguments[3], arguments[4], arguments[5]);
         }
     }
 
-    private void callback(Object... parameters) {
+    @Nullable
+    private static Method findPrivateLookupIn() {
         try {
-            method.invoke(instance, parameters);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            if (e.getCause() instanceof CommandCallbackException) throw (CommandCallbackException) e.getCause();
-            e.printStackTrace();
-            throw new CommandCallback.CommandCallbackException("An error occurred while executing the command method callback. Check console for errors.");
+            return MethodHandles.class.getMethod("privateLookupIn", Class.class, Lookup.class);
+        } catch (NoSuchMethodException e) {
+            return null; // Java 8
         }
     }
+
+    /**
+     * The resolver of a parameter, looked up when the method is registered. It is only looked up again when
+     * the {@link CommandResolvers#getResolverVersion() resolver version} changes, such as when the resolver
+     * is replaced.
+     */
+    private static final class BoundResolver {
+
+        private final String owner;
+        private final Class<?> type;
+        private final CommandResolvers resolvers;
+
+        /**
+         * The resolver, along with the resolver version it was looked up in
+         */
+        private volatile Binding binding;
+
+        private BoundResolver(String owner, Class<?> type, CommandResolvers resolvers, Resolver<?> resolver, int version) {
+            this.owner = owner;
+            this.type = type;
+            this.resolvers = resolvers;
+            this.binding = new Binding(resolver, version);
+        }
+
+        private Object resolve(String argument, CommandContext context) {
+            Binding binding = this.binding;
+            int version = resolvers.getResolverVersion(); // read before the resolver, like when compiling
+            if (binding.version != version) {
+                Resolver<?> resolver = resolvers.get(type);
+                if (resolver == null) { // unregistered along with the class loader which defined it
+                    new IllegalStateException(String.format("Cannot invoke method %s(): No resolver is registered for type %s", owner, type.getName())).printStackTrace();
+                    context.fail(CommandMetrics.Outcome.ERROR);
+                    throw new CommandCallbackException("An error occurred while executing the command method callback. Check console for errors.");
+                }
+                this.binding = binding = new Binding(resolver, version);
+            }
+            return binding.resolver.resolve(argument, context);
+        }
+    }
+
+    /**
+     * A resolver and the resolver version it was looked up in
+     */
+    private static final class Binding {
+
+        private final Resolver<?> resolver;
+        private final int version;
+
+        private Binding(Resolver<?> resolver, int version) {
+            this.resolver = resolver;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Represents a compiled call site for a subcommand method
+     */
+    @FunctionalInterface
+    public interface MethodInvoker {
+
+        /**
+         * Invokes the method with the specified arguments
+         *
+         * @param arguments Arguments to pass to the method
+         * @throws Throwable Any exception thrown by the method, unwrapped
+         */
+        void invoke(Object[] arguments) throws Throwable;
+
+        /*
+         * The interfaces below are implemented by the classes spun by createInvoker(), one per arity. They
+         * are public so that classes defined in the holder's package can implement them, and are not meant
+         * to be used directly.
+         */
+
+        @FunctionalInterface
+        interface Arity0 {
+            void invoke() throws Throwable;
+        }
+
+        @FunctionalInterface
+        interface Arity1 {
+            void invoke(Object a) throws Throwable;
+        }
+
+        @FunctionalInterface
+        interface Arity2 {
+            void invoke(Object a, Object b) throws Throwable;
+        }
+
+        @FunctionalInterface
+        interface Arity3 {
+            void invoke(Object a, Object b, Object c) throws Throwable;
+        }
+
+        @FunctionalInterface
+        interface Arity4 {
+            void invoke(Object a, Object b, Object c, Object d) throws Throwable;
+        }
+
+        @FunctionalInterface
+        interface Arity5 {
+            void invoke(Object a, Object b, Object c, Object d, Object e) throws Throwable;
+        }
+
+        @FunctionalInterface
+        interface Arity6 {
+            void invoke(Object a, Object b, Object c, Object d, Object e, Object f) throws Throwable;
+        }
+    }
+
+    /**
+     * Binds a single method parameter from the command context
+     */
+    @FunctionalInterface
+    public interface ParameterBinder {
+
+        /**
+         * Returns the value of the parameter for the specified context
+         *
+         * @param context Context to bind from
+         * @return The parameter value
+         * @throws CommandCallbackException If the parameter could not be bound
+         */
+        Object bind(CommandContext context);
+
+    }
 }
@@ -0,0 +1,186 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import io.github.reflxction.commands.CommandMetrics.CacheResult;
+import io.github.reflxction.commands.CommandMetrics.Outcome;
+import io.github.reflxction.commands.CommandMetrics.SubcommandSnapshot;
+import io.github.reflxction.commands.CommandMetrics.TabCacheSnapshot;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Writes the metrics of command handlers to a file in the Prometheus text format, suitable for the node
+ * exporter's textfile collector. The file is replaced atomically, so it is never read half-written.
+ */
+public class MetricsExporter {
+
+    /**
+     * The histogram buckets exported, in seconds
+     */
+    private static final double[] BUCKETS = {0.00001, 0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1};
+
+    /**
+     * The file to write to
+     */
+    private final File file;
+
+    /**
+     * The metrics to export, keyed by their command name
+     */
+    private final Map<String, CommandMetrics> metrics = new LinkedHashMap<>();
+
+    /**
+     * Creates a new exporter
+     *
+     * @param file The file to write to
+     */
+    public MetricsExporter(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Adds the metrics of a command
+     *
+     * @param command Name of the command, used as the {@code command} label
+     * @param metrics The command's metrics
+     * @return This exporter instance
+     */
+    public synchronized MetricsExporter add(String command, CommandMetrics metrics) {
+        this.metrics.put(command, metrics);
+        return this;
+    }
+
+    /**
+     * Writes the metrics to the file. Concurrent writes, such as a manual write while the
+     * {@link #schedule(Plugin, long) scheduled} task runs, are serialized.
+     *
+     * @throws IOException If the file could not be written
+     */
+    public synchronized void write() throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                write(writer);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Writes the metrics to the file periodically, off the main thread
+     *
+     * @param plugin Plugin to schedule the task with
+     * @param period Period between writes, in ticks
+     * @return The scheduled task
+     */
+    public BukkitTask schedule(Plugin plugin, long period) {
+        return Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+            try {
+                write();
+            } catch (IOException e) {
+                plugin.getLogger().warning("Failed to export command metrics to " + file + ": " + e);
+            }
+        }, period, period);
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text format
+     *
+     * @param out Writer to write to
+     * @throws IOException If writing fails
+     */
+    public synchronized void write(Writer out) throws IOException {
+        Map<String, CommandMetrics.Snapshot> snapshots = new LinkedHashMap<>();
+        metrics.forEach((command, metrics) -> snapshots.put(command, metrics.snapshot()));
+
+        header(out, "bukkitcommands_unknown_total", "counter", "Commands which did not match any subcommand");
+        for (Entry<String, CommandMetrics.Snapshot> entry : snapshots.entrySet())
+            out.write("bukkitcommands_unknown_total{command=\"" + escape(entry.getKey()) + "\"} " + entry.getValue().getUnknownCommands() + "\n");
+
+        header(out, "bukkitcommands_invocations_total", "counter", "Subcommand invocations by outcome");
+        for (Entry<String, CommandMetrics.Snapshot> entry : snapshots.entrySet())
+            for (Entry<String, SubcommandSnapshot> subcommand : entry.getValue().getSubcommands().entrySet())
+                for (Outcome outcome : Outcome.values())
+                    out.write("bukkitcommands_invocations_total{" + labels(entry.getKey(), "subcommand", subcommand.getKey())
+                            + ",outcome=\"" + outcome.name().toLowerCase(Locale.ROOT) + "\"} " + subcommand.getValue().getCount(outcome) + "\n");
+
+        header(out, "bukkitcommands_latency_seconds", "histogram", "Subcommand invocation latency");
+        for (Entry<String, CommandMetrics.Snapshot> entry : snapshots.entrySet())
+            for (Entry<String, SubcommandSnapshot> subcommand : entry.getValue().getSubcommands().entrySet())
+                histogram(out, "bukkitcommands_latency_seconds", labels(entry.getKey(), "subcommand", subcommand.getKey()), subcommand.getValue().getLatency());
+
+        header(out, "bukkitcommands_resolver_seconds", "histogram", "Time spent resolving arguments");
+        for (Entry<String, CommandMetrics.Snapshot> entry : snapshots.entrySet())
+            for (Entry<String, LatencyHistogram.Snapshot> resolver : entry.getValue().getResolvers().entrySet())
+                histogram(out, "bukkitcommands_resolver_seconds", labels(entry.getKey(), "type", resolver.getKey()), resolver.getValue());
+
+        header(out, "bukkitcommands_tab_provider_seconds", "histogram", "Time spent in tab providers");
+        for (Entry<String, CommandMetrics.Snapshot> entry : snapshots.entrySet())
+            for (Entry<String, LatencyHistogram.Snapshot> provider : entry.getValue().getTabProviders().entrySet())
+                histogram(out, "bukkitcommands_tab_provider_seconds", labels(entry.getKey(), "provider", provider.getKey()), provider.getValue());
+
+        header(out, "bukkitcommands_tab_cache_lookups_total", "counter", "Cached tab provider lookups by result");
+        for (Entry<String, CommandMetrics.Snapshot> entry : snapshots.entrySet())
+            for (Entry<String, TabCacheSnapshot> cache : entry.getValue().getTabCaches().entrySet())
+                for (CacheResult result : CacheResult.values())
+                    out.write("bukkitcommands_tab_cache_lookups_total{" + labels(entry.getKey(), "provider", cache.getKey())
+                            + ",result=\"" + result.name().toLowerCase(Locale.ROOT) + "\"} " + cache.getValue().getCount(result) + "\n");
+    }
+
+    private static void header(Writer out, String name, String type, String help) throws IOException {
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    private static void histogram(Writer out, String name, String labels, LatencyHistogram.Snapshot histogram) throws IOException {
+        for (double bucket : BUCKETS)
+            out.write(name + "_bucket{" + labels + ",le=\"" + bucket + "\"} " + histogram.countAtOrBelow((long) (bucket * 1e9)) + "\n");
+        out.write(name + "_bucket{" + labels + ",le=\"+Inf\"} " + histogram.getCount() + "\n");
+        out.write(name + "_sum{" + labels + "} " + histogram.getSum() / 1e9 + "\n");
+        out.write(name + "_count{" + labels + "} " + histogram.getCount() + "\n");
+    }
+
+    private static String labels(String command, String name, String value) {
+        return "command=\"" + escape(command) + "\"," + name + "=\"" + escape(value) + "\"";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
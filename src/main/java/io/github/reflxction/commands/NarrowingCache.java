@@ -0,0 +1,258 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the last tab completions of each sender, so that consecutive requests do not call the tab
+ * provider again. Clients request completions on almost every keystroke: when the argument being completed
+ * extends the cached one, and the subcommand and preceding arguments are the same, the cached completions
+ * are narrowed down to the new prefix instead.
+ * <p>
+ * An entry is discarded when it is older than the configured lifetime, when the sender quits, or when
+ * {@link #invalidate(CommandSender)} is called. Expired entries are swept periodically once the listener
+ * is registered, until the plugin is disabled or the cache is {@link #stop() stopped}. Without a plugin, or
+ * while it is disabled, they are swept on insertion once there are many entries instead. All entries are
+ * discarded whenever the handler's subcommands change. Narrowing only applies to completions which are
+ * filtered by a case-sensitive prefix, so providers which do their own matching are not cached.
+ */
+public class NarrowingCache implements Listener {
+
+    /**
+     * How often are expired entries swept, in ticks
+     */
+    private static final long SWEEP_PERIOD = 100;
+
+    /**
+     * The amount of entries after which expired ones are swept on insertion, while no sweeper is scheduled
+     */
+    private static final int SWEEP_THRESHOLD = 256;
+
+    /**
+     * The last completions of each sender
+     */
+    private final Map<Object, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The plugin to register the listener with
+     */
+    private volatile Plugin plugin;
+
+    /**
+     * Whether is the listener registered
+     */
+    private volatile boolean active;
+
+    /**
+     * The task sweeping expired entries, scheduled while the listener is registered
+     */
+    private BukkitTask sweeper;
+
+    /**
+     * How long an entry is used for, in nanoseconds. 0 to disable the cache
+     */
+    private volatile long lifetime = TimeUnit.SECONDS.toNanos(2);
+
+    /**
+     * Sets the plugin which this will register its listener with
+     *
+     * @param plugin The plugin
+     */
+    public synchronized void setPlugin(Plugin plugin) {
+        if (plugin != this.plugin) stop();
+        this.plugin = plugin;
+    }
+
+    /**
+     * Sets how long the completions of a provider are narrowed down before it is called again
+     *
+     * @param lifetime The lifetime, or 0 to disable the cache
+     * @param unit     Unit of the lifetime
+     */
+    public void setLifetime(long lifetime, TimeUnit unit) {
+        this.lifetime = unit.toNanos(lifetime);
+        if (lifetime <= 0) stop();
+    }
+
+    /**
+     * Returns the cached completions narrowed down to the argument being completed, if the sender's last
+     * request was for the same subcommand and preceding arguments, and a prefix of the argument
+     *
+     * @param sender     Sender requesting completions
+     * @param subcommand The subcommand being completed
+     * @param args       The arguments passed to the command, including the subcommand and the argument being completed
+     * @return The narrowed completions, or null if they are not cached
+     */
+    @Nullable
+    public List<String> get(CommandSender sender, SubcommandInvokation subcommand, String[] args) {
+        if (lifetime <= 0) return null;
+        Object key = SenderExecutor.key(sender);
+        Entry entry = entries.get(key);
+        String prefix = args[args.length - 1];
+        if (entry == null || !entry.matches(subcommand, args) || !prefix.startsWith(entry.prefix)) return null;
+        if (System.nanoTime() - entry.created > lifetime) {
+            entries.remove(key, entry);
+            return null;
+        }
+        if (prefix.length() == entry.prefix.length()) return new ArrayList<>(entry.completions);
+        List<String> narrowed = new ArrayList<>();
+        for (String completion : entry.completions)
+            if (completion.startsWith(prefix)) narrowed.add(completion);
+        entries.replace(key, entry, new Entry(entry, prefix, narrowed));
+        return new ArrayList<>(narrowed);
+    }
+
+    /**
+     * Caches the completions of the specified request
+     *
+     * @param sender      Sender which requested completions
+     * @param subcommand  The subcommand being completed
+     * @param args        The arguments passed to the command, including the subcommand and the argument being completed
+     * @param completions The completions, all starting with the argument being completed
+     */
+    public void put(CommandSender sender, SubcommandInvokation subcommand, String[] args, List<String> completions) {
+        if (lifetime <= 0) return;
+        activate();
+        entries.put(SenderExecutor.key(sender), new Entry(subcommand, args, new ArrayList<>(completions), System.nanoTime()));
+        if (!active && entries.size() > SWEEP_THRESHOLD) sweep();
+    }
+
+    /**
+     * Discards the cached completions of the specified sender
+     *
+     * @param sender Sender to invalidate
+     */
+    public void invalidate(CommandSender sender) {
+        entries.remove(SenderExecutor.key(sender));
+    }
+
+    /**
+     * Discards all cached completions. Called by the handler whenever subcommands are registered or
+     * unregistered, so that no entry outlives the subcommand it was computed for.
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the amount of cached entries, one for each sender
+     *
+     * @return The amount of entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); )
+            if (now - iterator.next().created > lifetime) iterator.remove();
+    }
+
+    private void activate() {
+        Plugin plugin = this.plugin;
+        if (active || plugin == null || !plugin.isEnabled() || !Bukkit.isPrimaryThread()) return;
+        synchronized (this) {
+            if (active || plugin != this.plugin) return;
+            Bukkit.getPluginManager().registerEvents(this, plugin);
+            sweeper = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::sweep, SWEEP_PERIOD, SWEEP_PERIOD);
+            active = true;
+        }
+    }
+
+    /**
+     * Unregisters the listener, cancels the sweeping task and discards all cached completions. Called when
+     * the plugin is disabled, the handler's plugin is changed or the cache is disabled. The cache registers
+     * itself again the next time completions are cached while the plugin is enabled.
+     */
+    public synchronized void stop() {
+        entries.clear();
+        if (!active) return;
+        HandlerList.unregisterAll(this);
+        sweeper.cancel();
+        sweeper = null;
+        active = false;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(PluginDisableEvent event) {
+        if (event.getPlugin() == plugin) stop();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        entries.remove(SenderExecutor.key(event.getPlayer()));
+    }
+
+    /**
+     * The last completions of a sender
+     */
+    private static final class Entry {
+
+        private final SubcommandInvokation subcommand;
+
+        /**
+         * The arguments between the subcommand and the argument being completed
+         */
+        private final String[] preceding;
+
+        private final String prefix;
+        private final List<String> completions;
+        private final long created;
+
+        private Entry(SubcommandInvokation subcommand, String[] args, List<String> completions, long created) {
+            this.subcommand = subcommand;
+            this.preceding = Arrays.copyOfRange(args, 1, args.length - 1);
+            this.prefix = args[args.length - 1];
+            this.completions = completions;
+            this.created = created;
+        }
+
+        private Entry(Entry entry, String prefix, List<String> completions) {
+            this.subcommand = entry.subcommand;
+            this.preceding = entry.preceding;
+            this.prefix = prefix;
+            this.completions = completions;
+            this.created = entry.created;
+        }
+
+        private boolean matches(SubcommandInvokation subcommand, String[] args) {
+            if (this.subcommand != subcommand || preceding.length != args.length - 2) return false;
+            for (int i = 0; i < preceding.length; i++)
+                if (!preceding[i].equals(args[i + 1])) return false;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import java.text.ParsePosition;
+
+/**
+ * Number parsing which scans the characters directly and reports invalid input through return values
+ * and a {@link ParsePosition}, rather than throwing a {@link NumberFormatException}.
+ */
+public final class NumberParser {
+
+    private NumberParser() {
+    }
+
+    /**
+     * Parses the specified decimal integer, from the position's index to the end of the string. An optional
+     * leading sign is accepted.
+     * <p>
+     * If the input is valid, the position's index is set to the length of the string. Otherwise, its error
+     * index is set to the index of the first invalid character, or of the digit which overflows a long.
+     *
+     * @param s        String to parse
+     * @param position Position to start at, which receives the result
+     * @return The parsed number, or 0 if the input is not a valid number
+     */
+    public static long parseLong(String s, ParsePosition position) {
+        int length = s.length();
+        int i = position.getIndex();
+        if (i >= length) return invalid(position, i);
+        boolean negative = false;
+        char first = s.charAt(i);
+        if (first == '-' || first == '+') {
+            if (++i == length) return invalid(position, i);
+            negative = first == '-';
+        }
+        // accumulate negatively, as the negative range is larger
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyLimit = limit / 10;
+        long result = 0;
+        for (; i < length; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multiplyLimit) return invalid(position, i);
+            result *= 10;
+            if (result < limit + digit) return invalid(position, i);
+            result -= digit;
+        }
+        position.setIndex(length);
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parses the specified decimal integer like {@link #parseLong(String, ParsePosition)}, and checks that it
+     * is in the specified range. If it is not, the position's error index is set to its start index.
+     *
+     * @param s        String to parse
+     * @param min      The minimum value, inclusive
+     * @param max      The maximum value, inclusive
+     * @param position Position to start at, which receives the result
+     * @return The parsed number, or 0 if the input is not a valid number in the range
+     */
+    public static long parseLong(String s, long min, long max, ParsePosition position) {
+        int start = position.getIndex();
+        long value = parseLong(s, position);
+        if (position.getErrorIndex() < 0 && (value < min || value > max)) {
+            position.setIndex(start);
+            return invalid(position, start);
+        }
+        return value;
+    }
+
+    private static long invalid(ParsePosition position, int index) {
+        position.setErrorIndex(index);
+        return 0;
+    }
+
+    /**
+     * Checks whether is the specified string a plain decimal number, such as {@code -1}, {@code 2.5},
+     * {@code .5} or {@code 1e3}. Hexadecimal notation, type suffixes, whitespace, {@code NaN} and
+     * {@code Infinity} are not accepted.
+     *
+     * @param s String to check
+     * @return True if the string can be parsed by {@link Double#parseDouble(String)} into a plain number
+     */
+    public static boolean isDecimal(String s) {
+        int length = s.length();
+        int i = 0;
+        if (i < length && (s.charAt(i) == '-' || s.charAt(i) == '+')) i++;
+        int digits = 0;
+        while (i < length && isDigit(s.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < length && s.charAt(i) == '.') {
+            i++;
+            while (i < length && isDigit(s.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) return false;
+        if (i < length && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (s.charAt(i) == '-' || s.charAt(i) == '+')) i++;
+            int exponentDigits = 0;
+            while (i < length && isDigit(s.charAt(i))) {
+                i++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) return false;
+        }
+        return i == length;
+    }
+
+    /**
+     * Parses the specified decimal number
+     *
+     * @param s String to parse
+     * @return The parsed number, or {@link Double#NaN} if the input is not a plain decimal number or is
+     * too large to be represented
+     */
+    public static double parseDouble(String s) {
+        if (!isDecimal(s)) return Double.NaN;
+        double value = Double.parseDouble(s);
+        return Double.isInfinite(value) ? Double.NaN : value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
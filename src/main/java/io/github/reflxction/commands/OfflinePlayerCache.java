@@ -0,0 +1,457 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import io.github.reflxction.commands.CommandCallback.CommandCallbackException;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A cache of player names to UUIDs, used to resolve offline players without blocking the main thread
+ * on profile lookups.
+ * <p>
+ * Names are persisted in an append-only log in the plugin's data folder, which is loaded when the cache
+ * is first used while the plugin is enabled, and updated whenever a player joins. When a player changes
+ * their name, their previous name is discarded. Names which are not cached are looked up asynchronously.
+ * <p>
+ * When the plugin is disabled, the listener is unregistered and the names queued for the log are written
+ * before the plugin finishes disabling. The thread which lookups and writes run on exits once it is idle,
+ * so the cache keeps no thread alive across reloads.
+ */
+public class OfflinePlayerCache implements Listener {
+
+    /**
+     * The name of the log file, in the plugin's data folder
+     */
+    private static final String FILE_NAME = "player-names.dat";
+
+    /**
+     * The header of the log file
+     */
+    private static final int MAGIC = 0x424E4331;
+
+    /**
+     * How long names of players who never played are cached, in nanoseconds
+     */
+    private static final long UNKNOWN_LIFETIME = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * The amount of unknown names after which expired ones are swept on insertion
+     */
+    private static final int SWEEP_THRESHOLD = 256;
+
+    /**
+     * How long the executor's thread is kept alive without tasks, in seconds
+     */
+    private static final long IDLE_TIMEOUT = 30;
+
+    /**
+     * The maximum time to wait for queued writes when the cache is stopped, in seconds
+     */
+    private static final long FLUSH_TIMEOUT = 5;
+
+    /**
+     * The cached names, keyed by their lower-case form
+     */
+    private final NavigableMap<String, CachedName> names = new ConcurrentSkipListMap<>();
+
+    /**
+     * The key of each cached UUID in {@link #names}, used to discard the previous name of players who
+     * changed it. Also guards updates which span both maps
+     */
+    private final Map<UUID, String> keys = new ConcurrentHashMap<>();
+
+    /**
+     * The names of players who never played, keyed by their lower-case form. These are only kept for
+     * {@link #UNKNOWN_LIFETIME} so that repeated commands do not look them up again, and are never completed
+     * nor persisted
+     */
+    private final Map<String, UnknownName> unknown = new ConcurrentHashMap<>();
+
+    /**
+     * The names which are currently being looked up
+     */
+    private final Map<String, CompletableFuture<OfflinePlayer>> lookups = new ConcurrentHashMap<>();
+
+    /**
+     * The executor which lookups and file writes run on
+     */
+    private final ExecutorService executor = createExecutor();
+
+    /**
+     * The plugin to register the listener with, and whose data folder contains the log
+     */
+    private volatile Plugin plugin;
+
+    /**
+     * The log file, or null if not loaded yet or stopped since
+     */
+    private volatile File file;
+
+    /**
+     * The maximum amount of names returned by {@link #complete(String)}
+     */
+    private int limit = Integer.MAX_VALUE;
+
+    /**
+     * Sets the plugin which this cache will register its listener with, and store its names in
+     *
+     * @param plugin The plugin
+     */
+    public synchronized void setPlugin(Plugin plugin) {
+        if (plugin != this.plugin) stop();
+        this.plugin = plugin;
+    }
+
+    /**
+     * Sets the maximum amount of names returned by {@link #complete(String)}
+     *
+     * @param limit The limit
+     */
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Loads the log and registers the listener, if this has not been done yet and the plugin is enabled
+     */
+    private void activate() {
+        Plugin plugin = this.plugin;
+        if (file != null || plugin == null || !plugin.isEnabled() || !Bukkit.isPrimaryThread()) return;
+        synchronized (this) {
+            if (file != null || plugin != this.plugin) return;
+            Bukkit.getPluginManager().registerEvents(this, plugin);
+            File file = new File(plugin.getDataFolder(), FILE_NAME);
+            this.file = file; // assigned before seeding, so that the online players are appended to the log
+            executor.execute(() -> load(file));
+            for (Player player : Bukkit.getOnlinePlayers()) put(player.getName(), player.getUniqueId());
+        }
+    }
+
+    /**
+     * Resolves the offline player with the specified name. If the name is not cached, an asynchronous
+     * lookup is started, and the command is stopped after running the {@code lookupPending} hook.
+     *
+     * @param name    Name of the player
+     * @param context The command context
+     * @return The offline player
+     * @throws CommandCallbackException If the player is being looked up
+     */
+    public OfflinePlayer resolve(String name, CommandContext context) {
+        OfflinePlayer player = getCached(name);
+        if (player != null) return player;
+        lookup(name);
+        context.fail(CommandMetrics.Outcome.LOOKUP_PENDING);
+        context.getCommandHandler().lookupPending.onFail("player", name, context);
+        throw CommandCallbackException.SILENT;
+    }
+
+    /**
+     * Returns the offline player with the specified name if it is cached. This never blocks.
+     *
+     * @param name Name of the player
+     * @return The offline player, or null if not cached
+     */
+    @Nullable
+    public OfflinePlayer getCached(String name) {
+        activate();
+        String key = name.toLowerCase(Locale.ROOT);
+        CachedName cached = names.get(key);
+        if (cached != null) return Bukkit.getOfflinePlayer(cached.uuid);
+        UnknownName unknown = this.unknown.get(key);
+        if (unknown == null) return null;
+        if (System.nanoTime() - unknown.created <= UNKNOWN_LIFETIME) return Bukkit.getOfflinePlayer(unknown.uuid);
+        this.unknown.remove(key, unknown);
+        return null;
+    }
+
+    /**
+     * Looks up the offline player with the specified name asynchronously, and caches the result
+     *
+     * @param name Name of the player
+     * @return A future of the offline player
+     */
+    public CompletableFuture<OfflinePlayer> lookup(String name) {
+        OfflinePlayer cached = getCached(name);
+        if (cached != null) return CompletableFuture.completedFuture(cached);
+        String key = name.toLowerCase(Locale.ROOT);
+        CompletableFuture<OfflinePlayer> future = lookups.computeIfAbsent(key, k -> CompletableFuture.supplyAsync(() -> lookupBlocking(name), executor));
+        // attached outside computeIfAbsent, as it runs immediately if the lookup already completed
+        future.whenComplete((player, e) -> lookups.remove(key, future));
+        return future;
+    }
+
+    @SuppressWarnings("deprecation") // Bukkit#getOfflinePlayer(String)
+    private OfflinePlayer lookupBlocking(String name) {
+        OfflinePlayer player = Bukkit.getOfflinePlayer(name);
+        String actualName = player.getName() == null ? name : player.getName();
+        if (player.hasPlayedBefore()) put(actualName, player.getUniqueId());
+        else putUnknown(name.toLowerCase(Locale.ROOT), player.getUniqueId());
+        return player;
+    }
+
+    /**
+     * Returns the cached names starting with the specified prefix, ignoring case, sorted alphabetically
+     *
+     * @param prefix The name prefix
+     * @return The player names, up to the limit
+     */
+    public List<String> complete(String prefix) {
+        activate();
+        List<String> completions = new ArrayList<>();
+        String key = prefix.toLowerCase(Locale.ROOT);
+        for (CachedName cached : names.subMap(key, true, key + Character.MAX_VALUE, false).values()) {
+            if (completions.size() >= limit) break;
+            completions.add(cached.name);
+        }
+        return completions;
+    }
+
+    /**
+     * Caches the specified name, and appends it to the log if it is new or changed. The previous name of
+     * the player is discarded
+     */
+    private void put(String name, UUID uuid) {
+        CachedName cached = new CachedName(name, uuid);
+        String key = name.toLowerCase(Locale.ROOT);
+        CachedName previous = index(key, cached);
+        unknown.remove(key);
+        if (previous == null || !previous.equals(cached)) {
+            File file = this.file;
+            if (file != null) executor.execute(() -> append(file, cached));
+        }
+    }
+
+    /**
+     * Maps the key to the specified name, and discards the previous name of its player, if it changed
+     *
+     * @return The name previously mapped to the key
+     */
+    private CachedName index(String key, CachedName cached) {
+        synchronized (keys) {
+            CachedName previous = names.put(key, cached);
+            if (previous != null && !previous.uuid.equals(cached.uuid))
+                keys.remove(previous.uuid, key); // the name now belongs to another player
+            String previousKey = keys.put(cached.uuid, key);
+            if (previousKey != null && !previousKey.equals(key))
+                names.computeIfPresent(previousKey, (k, name) -> name.uuid.equals(cached.uuid) ? null : name);
+            return previous;
+        }
+    }
+
+    /**
+     * Caches the name of a player who never played, for a short time
+     */
+    private void putUnknown(String key, UUID uuid) {
+        long now = System.nanoTime();
+        unknown.put(key, new UnknownName(uuid, now));
+        if (unknown.size() > SWEEP_THRESHOLD)
+            unknown.values().removeIf(name -> now - name.created > UNKNOWN_LIFETIME);
+    }
+
+    private void load(File file) {
+        if (!file.exists()) return;
+        int records = 0;
+        Map<String, CachedName> latest = new HashMap<>(); // the latest record of each name
+        Map<UUID, String> latestKeys = new HashMap<>(); // the latest name of each player
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Invalid header");
+            while (true) {
+                CachedName cached;
+                try {
+                    UUID uuid = new UUID(in.readLong(), in.readLong());
+                    cached = new CachedName(in.readUTF(), uuid);
+                } catch (EOFException e) {
+                    break; // end of log, or a partially written record
+                }
+                String key = cached.name.toLowerCase(Locale.ROOT);
+                latest.put(key, cached);
+                latestKeys.put(cached.uuid, key);
+                records++;
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to load cached player names from " + file + ": " + e);
+            return;
+        }
+        synchronized (keys) {
+            for (Map.Entry<String, CachedName> entry : latest.entrySet()) {
+                CachedName cached = entry.getValue();
+                // skip names which their player changed since, and names or players seen since startup
+                if (!entry.getKey().equals(latestKeys.get(cached.uuid)) || keys.containsKey(cached.uuid)
+                        || names.putIfAbsent(entry.getKey(), cached) != null) continue;
+                keys.put(cached.uuid, entry.getKey());
+            }
+        }
+        if (records > names.size() * 2 + 64) compact(file);
+    }
+
+    /**
+     * Rewrites the log with only the latest record of each name
+     */
+    private void compact(File file) {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            for (CachedName cached : names.values()) cached.write(out);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to compact cached player names: " + e);
+            return;
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to replace " + file + " with its compacted log: " + e);
+        }
+    }
+
+    private void append(File file, CachedName cached) {
+        boolean exists = file.exists();
+        if (!exists) file.getParentFile().mkdirs();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            if (!exists) out.writeInt(MAGIC);
+            cached.write(out);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to save cached player name " + cached.name + ": " + e);
+        }
+    }
+
+    /**
+     * Unregisters the listener, and waits for the names queued for the log to be written. Called when the
+     * plugin is disabled or the handler's plugin is changed. Cached names are kept, and the log is loaded
+     * again the next time the cache is used while the plugin is enabled.
+     */
+    public synchronized void stop() {
+        if (file == null) return;
+        HandlerList.unregisterAll(this);
+        file = null;
+        try {
+            executor.submit(() -> {
+            }).get(FLUSH_TIMEOUT, TimeUnit.SECONDS); // runs after the queued writes
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            plugin.getLogger().warning("Failed to wait for cached player names to be saved: " + e);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        put(event.getPlayer().getName(), event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(PluginDisableEvent event) {
+        if (event.getPlugin() == plugin) stop();
+    }
+
+    /**
+     * Creates the executor which lookups and file writes run on. Its thread exits once idle, so that it
+     * does not keep the plugin's class loader alive after the plugin is disabled
+     */
+    private static ExecutorService createExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, IDLE_TIMEOUT, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "BukkitCommands Player Names");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * The UUID of a player who never played, and when it was looked up
+     */
+    private static final class UnknownName {
+
+        private final UUID uuid;
+        private final long created;
+
+        private UnknownName(UUID uuid, long created) {
+            this.uuid = uuid;
+            this.created = created;
+        }
+    }
+
+    /**
+     * A name and the UUID it belongs to
+     */
+    private static final class CachedName {
+
+        private final String name;
+        private final UUID uuid;
+
+        private CachedName(String name, UUID uuid) {
+            this.name = name;
+            this.uuid = uuid;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+            out.writeUTF(name);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CachedName)) return false;
+            CachedName that = (CachedName) o;
+            return name.equals(that.name) && uuid.equals(that.uuid);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * name.hashCode() + uuid.hashCode();
+        }
+    }
+}
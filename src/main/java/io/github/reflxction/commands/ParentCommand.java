@@ -2,22 +2,26 @@ package io.github.reflxction.commands;
 
 import io.github.reflxction.commands.CommandResolvers.Resolver;
 import io.github.reflxction.commands.CommandResolvers.ResolverFallback;
+import io.github.reflxction.commands.PluginSubcommand.AsyncTabProvider;
 import io.github.reflxction.commands.PluginSubcommand.ParameterResolver;
 import io.github.reflxction.commands.PluginSubcommand.TabContext;
 import io.github.reflxction.commands.PluginSubcommand.TabProvider;
-import org.apache.commons.lang.ArrayUtils;
-import org.apache.commons.lang.StringUtils;
+import io.github.reflxction.commands.RateLimiter.RateLimitFallback;
+import io.github.reflxction.commands.SubcommandInvokation.TabCompletion;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabExecutor;
+import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * Represents a parent command
@@ -74,47 +78,71 @@ public class ParentCommand implements TabExecutor {
      */
     @Override
     public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String alias, String[] args) {
-        if (args.length == 1)
-            return commandHandler.getCommands().values().stream().filter(a -> a.name.startsWith(args[0]))
-                    .filter(s -> s.hasPermission(sender))
-                    .map(c -> c.name)
-                    .distinct()
-                    .collect(Collectors.toList());
+        if (args.length == 1) {
+            List<String> completions = new ArrayList<>();
+            commandHandler.getCompletionIndex().complete(args[0], s -> commandHandler.getPermissions().test(sender, s), completions);
+            return completions;
+        }
         if (args.length > 1) {
-            String[] finalArgs = (String[]) ArrayUtils.subarray(args, 1, args.length);
-            if (finalArgs.length == 0) return Collections.emptyList();
-            SubcommandInvokation subcommand = commandHandler.getCommands().get(args[0]);
-            if (subcommand == null) return Collections.emptyList();
-            String tab = subcommand.tab;
-            if (subcommand.tab.equals(PluginSubcommand.DEFAULT_COMPLETION)) return Collections.emptyList();
-            TabContext context = new TabContext(finalArgs, sender, subcommand, command, commandHandler);
-            String[] tabs = tab.split(" ");
-
-            String thisTab;
-            try {
-                thisTab = tabs[finalArgs.length - 1];
-            } catch (ArrayIndexOutOfBoundsException e) {
-                return Collections.emptyList();
-            }
-            if (thisTab.startsWith("@")) {
-                List<String> text = commandHandler.getResolvers()
-                        .getTab(thisTab.substring(1), context);
-                return text == null ? null : text
-                        .stream()
-                        .distinct()
-                        .filter(c -> c.startsWith(finalArgs[finalArgs.length - 1]))
-                        .collect(Collectors.toList());
-            }
-            return Arrays
-                    .stream(StringUtils.split(thisTab, "|"))
-                    .map(a -> a.replace("~~", " "))
-                    .distinct()
-                    .filter(a -> a.startsWith(finalArgs[finalArgs.length - 1]))
-                    .collect(Collectors.toList());
+            SubcommandInvokation subcommand = commandHandler.getSubcommand(args[0]);
+            TabCompletion tab = getTabCompletion(subcommand, args);
+            if (tab == null || isTabRateLimited(sender, subcommand)) return Collections.emptyList();
+            NarrowingCache cache = commandHandler.getNarrowingCache();
+            List<String> cached = cache.get(sender, subcommand, args);
+            if (cached != null) return cached;
+            TabContext context = tab.requiresContext() ? createTabContext(sender, command, subcommand, args) : null;
+            List<String> completions = tab.complete(args[args.length - 1], context);
+            if (completions != null && tab.isNarrowable(commandHandler)) cache.put(sender, subcommand, args, completions);
+            return completions;
         }
         return Collections.emptyList();
     }
 
+    /**
+     * Requests a list of possible completions for a command argument, without blocking on asynchronous
+     * tab providers. This can be used from asynchronous tab completion events on servers which support them.
+     *
+     * @param sender  Source of the command
+     * @param command Command which was executed
+     * @param alias   The alias used
+     * @param args    The arguments passed to the command, including final
+     *                partial argument to be completed and command label
+     * @return A future of the possible completions for the final argument. Completes with null
+     * to default to the command executor
+     * @see #onTabComplete(CommandSender, Command, String, String[])
+     */
+    public CompletableFuture<List<String>> completeAsync(@NotNull CommandSender sender, @NotNull Command command, @NotNull String alias, String[] args) {
+        if (args.length > 1) {
+            SubcommandInvokation subcommand = commandHandler.getSubcommand(args[0]);
+            TabCompletion tab = getTabCompletion(subcommand, args);
+            if (tab == null || isTabRateLimited(sender, subcommand))
+                return CompletableFuture.completedFuture(Collections.emptyList());
+            NarrowingCache cache = commandHandler.getNarrowingCache();
+            List<String> cached = cache.get(sender, subcommand, args);
+            if (cached != null) return CompletableFuture.completedFuture(cached);
+            return tab.completeAsync(args[args.length - 1], createTabContext(sender, command, subcommand, args)).thenApply(completions -> {
+                if (completions != null && tab.isNarrowable(commandHandler)) cache.put(sender, subcommand, args, completions);
+                return completions;
+            });
+        }
+        return CompletableFuture.completedFuture(onTabComplete(sender, command, alias, args));
+    }
+
+    private static TabCompletion getTabCompletion(SubcommandInvokation subcommand, String[] args) {
+        if (subcommand == null) return null;
+        TabCompletion[] tabs = subcommand.tabCompletions;
+        int position = args.length - 2;
+        return position < tabs.length ? tabs[position] : null;
+    }
+
+    private static boolean isTabRateLimited(CommandSender sender, SubcommandInvokation subcommand) {
+        return subcommand.tabRateLimiter != null && subcommand.tabRateLimiter.tryAcquire(sender) > 0;
+    }
+
+    private TabContext createTabContext(CommandSender sender, Command command, SubcommandInvokation subcommand, String[] args) {
+        return new TabContext(Arguments.of(args, 1), sender, subcommand, command, commandHandler);
+    }
+
     /**
      * Registers/Contains the specified command in the processing
      *
@@ -138,6 +166,94 @@ public class ParentCommand implements TabExecutor {
         return this;
     }
 
+    /**
+     * Sets whether should subcommand names and aliases be matched ignoring case
+     *
+     * @param ignoreCase Whether to ignore case
+     * @return This parent command for chaining
+     * @see CommandHandler#setIgnoreCase(boolean)
+     */
+    public ParentCommand setIgnoreCase(boolean ignoreCase) {
+        commandHandler.setIgnoreCase(ignoreCase);
+        return this;
+    }
+
+    /**
+     * Sets whether should the completions of tab providers be matched fuzzily and ranked
+     *
+     * @param maxResults The maximum amount of completions to return, or 0 to match by prefix
+     * @return This parent command for chaining
+     * @see CommandHandler#setFuzzyCompletions(int)
+     */
+    public ParentCommand setFuzzyCompletions(int maxResults) {
+        commandHandler.setFuzzyCompletions(maxResults);
+        return this;
+    }
+
+    /**
+     * Sets the maximum amount of completions returned from static tabs
+     *
+     * @param maxStaticTabs The maximum amount of completions, or 0 for no limit
+     * @return This parent command for chaining
+     * @see CommandHandler#setMaxStaticTabs(int)
+     */
+    public ParentCommand setMaxStaticTabs(int maxStaticTabs) {
+        commandHandler.setMaxStaticTabs(maxStaticTabs);
+        return this;
+    }
+
+    /**
+     * Sets how long the tab completions of a sender are narrowed down on the following keystrokes, before
+     * the tab provider is called again
+     *
+     * @param lifetime The lifetime, or 0 to always call the provider
+     * @param unit     Unit of the lifetime
+     * @return This parent command for chaining
+     * @see NarrowingCache
+     */
+    public ParentCommand setTabCacheLifetime(long lifetime, TimeUnit unit) {
+        commandHandler.getNarrowingCache().setLifetime(lifetime, unit);
+        return this;
+    }
+
+    /**
+     * Sets how long the permissions of a player are cached before they are checked again
+     *
+     * @param lifetime The lifetime, or 0 to always check permissions directly
+     * @param unit     Unit of the lifetime
+     * @return This parent command for chaining
+     * @see CommandHandler#setPermissionCacheLifetime(long, TimeUnit)
+     */
+    public ParentCommand setPermissionCacheLifetime(long lifetime, TimeUnit unit) {
+        commandHandler.setPermissionCacheLifetime(lifetime, unit);
+        return this;
+    }
+
+    /**
+     * Sets how are invalid subcommands matched to suggestions
+     *
+     * @param maxDistance    The maximum edit distance between the input and a suggestion
+     * @param maxSuggestions The maximum amount of suggestions. 0 to disable suggestions
+     * @return This parent command for chaining
+     * @see CommandContext#getSuggestions()
+     */
+    public ParentCommand setSuggestions(int maxDistance, int maxSuggestions) {
+        commandHandler.setSuggestions(maxDistance, maxSuggestions);
+        return this;
+    }
+
+    /**
+     * Unregisters the subcommands registered from the specified object
+     *
+     * @param holder Object to unregister
+     * @return This command
+     * @see CommandHandler#unregister(Object)
+     */
+    public ParentCommand unregister(Object holder) {
+        commandHandler.unregister(holder);
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -146,6 +262,17 @@ public class ParentCommand implements TabExecutor {
         return this;
     }
 
+    /**
+     * Sets whether should aliases be suggested when completing the subcommand name
+     *
+     * @param completeAliases Whether to suggest aliases
+     * @return This parent command for chaining
+     */
+    public ParentCommand setCompleteAliases(boolean completeAliases) {
+        commandHandler.setCompleteAliases(completeAliases);
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -154,6 +281,182 @@ public class ParentCommand implements TabExecutor {
         return this;
     }
 
+    /**
+     * Registers a tab provider whose tabs are cached, and refreshed in the background once stale
+     *
+     * @param key      Key to register for
+     * @param provider The tab provider. Must be thread-safe
+     * @param policy   How to cache the provider's tabs
+     * @return This parent command for chaining
+     * @see CommandResolvers#registerTabProvider(String, TabProvider, CachedTabProvider.Policy)
+     */
+    public ParentCommand registerTabProvider(String key, TabProvider provider, CachedTabProvider.Policy policy) {
+        commandHandler.getResolvers().registerTabProvider(key, provider, policy);
+        return this;
+    }
+
+    /**
+     * Registers an asynchronous tab provider for the specified key
+     *
+     * @param key      Key to register for
+     * @param provider The asynchronous tab provider
+     * @return This parent command for chaining
+     * @see CommandResolvers#registerAsyncTabProvider(String, AsyncTabProvider)
+     */
+    public ParentCommand registerAsyncTabProvider(String key, AsyncTabProvider provider) {
+        commandHandler.getResolvers().registerAsyncTabProvider(key, provider);
+        return this;
+    }
+
+    /**
+     * Registers a tab provider for the specified key, which will be ran on the tab executor
+     *
+     * @param key      Key to register for
+     * @param provider The tab provider
+     * @return This parent command for chaining
+     */
+    public ParentCommand registerAsyncTabProvider(String key, TabProvider provider) {
+        return registerAsyncTabProvider(key, (context, executor) -> CompletableFuture.supplyAsync(() -> provider.getTab(context), executor));
+    }
+
+    /**
+     * Sets the executor which asynchronous tab providers run on
+     *
+     * @param executor Executor to use
+     * @return This parent command for chaining
+     */
+    public ParentCommand setTabExecutor(@NotNull Executor executor) {
+        commandHandler.setTabExecutor(executor);
+        return this;
+    }
+
+    /**
+     * Sets the plugin owning this command. Required for asynchronous commands to run tasks
+     * on the main thread
+     *
+     * @param plugin Plugin to set
+     * @return This parent command for chaining
+     */
+    public ParentCommand setPlugin(@NotNull Plugin plugin) {
+        commandHandler.setPlugin(plugin);
+        return this;
+    }
+
+    /**
+     * Sets the executor which asynchronous commands run on. Defaults to virtual threads when available,
+     * otherwise a cached thread pool.
+     *
+     * @param executor Executor to use
+     * @return This parent command for chaining
+     */
+    public ParentCommand setAsyncExecutor(@NotNull Executor executor) {
+        commandHandler.setAsyncExecutor(executor);
+        return this;
+    }
+
+    /**
+     * Sets whether should the specified subcommands run asynchronously. Asynchronous subcommands are not
+     * queued.
+     *
+     * @param async Whether should the subcommands run asynchronously
+     * @param names Names of the subcommands
+     * @return This parent command for chaining
+     * @see PluginSubcommand#async()
+     */
+    public ParentCommand setAsync(boolean async, String... names) {
+        for (String name : names)
+            commandHandler.replace(name, s -> s.withExecution(async, s.queued && !async, s.priority, s.rateLimiter, s.tabRateLimiter));
+        return this;
+    }
+
+    /**
+     * Limits how often may a sender run the specified subcommand. This replaces any limit or cooldown
+     * set by the annotation.
+     *
+     * @param name    Name of the subcommand
+     * @param permits Amount of runs allowed in the period
+     * @param period  The period
+     * @param unit    Unit of the period
+     * @return This parent command for chaining
+     * @see PluginSubcommand#rateLimit()
+     */
+    public ParentCommand setRateLimit(String name, int permits, long period, TimeUnit unit) {
+        RateLimiter rateLimiter = new RateLimiter(permits, period, unit);
+        commandHandler.replace(name, s -> s.withExecution(s.async, s.queued, s.priority, rateLimiter, s.tabRateLimiter));
+        return this;
+    }
+
+    /**
+     * Sets the time a sender must wait between runs of the specified subcommand. This replaces any limit
+     * or cooldown set by the annotation.
+     *
+     * @param name     Name of the subcommand
+     * @param cooldown The cooldown
+     * @param unit     Unit of the cooldown
+     * @return This parent command for chaining
+     * @see PluginSubcommand#cooldown()
+     */
+    public ParentCommand setCooldown(String name, long cooldown, TimeUnit unit) {
+        RateLimiter rateLimiter = RateLimiter.cooldown(cooldown, unit);
+        commandHandler.replace(name, s -> s.withExecution(s.async, s.queued, s.priority, rateLimiter, s.tabRateLimiter));
+        return this;
+    }
+
+    /**
+     * Limits how often may a sender request tab completions for the arguments of the specified subcommand
+     *
+     * @param name    Name of the subcommand
+     * @param permits Amount of requests allowed in the period
+     * @param period  The period
+     * @param unit    Unit of the period
+     * @return This parent command for chaining
+     * @see PluginSubcommand#tabRateLimit()
+     */
+    public ParentCommand setTabRateLimit(String name, int permits, long period, TimeUnit unit) {
+        RateLimiter tabRateLimiter = new RateLimiter(permits, period, unit);
+        commandHandler.replace(name, s -> s.withExecution(s.async, s.queued, s.priority, s.rateLimiter, tabRateLimiter));
+        return this;
+    }
+
+    /**
+     * Sets whether should the specified subcommands run from the handler's queue. Queued subcommands do
+     * not run asynchronously.
+     *
+     * @param queued   Whether should the subcommands be queued
+     * @param priority Priority of the subcommands in the queue
+     * @param names    Names of the subcommands
+     * @return This parent command for chaining
+     * @see PluginSubcommand#queued()
+     */
+    public ParentCommand setQueued(boolean queued, CommandQueue.Priority priority, String... names) {
+        for (String name : names)
+            commandHandler.replace(name, s -> s.withExecution(s.async && !queued, queued, priority, s.rateLimiter, s.tabRateLimiter));
+        return this;
+    }
+
+    /**
+     * Sets the queue which queued subcommands run from
+     *
+     * @param queue Queue to use
+     * @return This parent command for chaining
+     * @see CommandHandler#setQueue(CommandQueue)
+     */
+    public ParentCommand setQueue(@NotNull CommandQueue queue) {
+        commandHandler.setQueue(queue);
+        return this;
+    }
+
+    /**
+     * Sets the maximum time to wait for an asynchronous tab provider when tabs are completed synchronously
+     *
+     * @param millis Time to wait, in milliseconds
+     * @return This parent command for chaining
+     */
+    public ParentCommand setTabTimeout(long millis) {
+        commandHandler.setTabTimeout(millis);
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -214,6 +517,53 @@ public class ParentCommand implements TabExecutor {
         return this;
     }
 
+    /**
+     * Sets the task ran when an argument is being looked up asynchronously, such as an offline player
+     * which is not cached yet
+     *
+     * @param action Action to run
+     * @return This parent command for chaining
+     */
+    public ParentCommand setOnLookupPending(@NotNull ResolverFallback action) {
+        commandHandler.lookupPending = action;
+        return this;
+    }
+
+    /**
+     * Sets the action to run when a sender runs a subcommand too often
+     *
+     * @param action Action to run
+     * @return This parent command for chaining
+     */
+    public ParentCommand setOnRateLimited(@NotNull RateLimitFallback action) {
+        commandHandler.rateLimited = action;
+        return this;
+    }
+
+    /**
+     * Sets the action invoked when a queued subcommand is rejected, because the server is overloaded or
+     * the queue is full
+     *
+     * @param action New action to invoke
+     * @return This parent command for chaining
+     */
+    public ParentCommand setOnQueueRejected(@NotNull Consumer<CommandContext> action) {
+        commandHandler.queueRejected = action;
+        return this;
+    }
+
+    /**
+     * Sets whether should the handler record metrics. Metrics are enabled by default.
+     *
+     * @param enabled Whether to record metrics
+     * @return This parent command for chaining
+     * @see CommandHandler#getMetrics()
+     */
+    public ParentCommand setMetricsEnabled(boolean enabled) {
+        commandHandler.getMetrics().setEnabled(enabled);
+        return this;
+    }
+
     /**
      * Creates a new command
      */
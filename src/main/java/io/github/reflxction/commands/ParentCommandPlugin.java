@@ -28,7 +28,7 @@ import java.util.List;
  */
 public class ParentCommandPlugin extends JavaPlugin {
 
-    protected ParentCommand command = ParentCommand.create();
+    protected ParentCommand command = ParentCommand.create().setPlugin(this);
 
     /**
      * {@inheritDoc}
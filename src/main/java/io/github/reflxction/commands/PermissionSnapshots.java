@@ -0,0 +1,230 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches which subcommands each player may run, as a bitset indexed by {@link SubcommandInvokation#ordinal}.
+ * Each bit is computed the first time it is needed, so filtering tab completions and suggestions becomes bit
+ * tests. Executing a command always checks the permission directly, as Bukkit has no event for permission
+ * changes and a snapshot may be stale for up to its lifetime.
+ * <p>
+ * A player's snapshot is discarded when they quit or change worlds, when their operator status changes,
+ * when it is older than the configured lifetime, or when {@link #invalidate(CommandSender)} is called. Plugins
+ * which change permissions at runtime should call it after doing so. All snapshots are discarded whenever the
+ * handler's subcommands change, as their bits are indexed by the registered subcommands. Senders which are
+ * not players are always checked directly.
+ * <p>
+ * The listener is registered the first time a snapshot is taken while the plugin is enabled, and
+ * unregistered when the plugin is disabled or replaced. While a plugin is set but the listener is not
+ * registered, permissions are checked directly, as quits and world changes would go unnoticed.
+ *
+ * @see CommandHandler#setPermissionCacheLifetime(long, TimeUnit)
+ */
+public class PermissionSnapshots implements Listener {
+
+    /**
+     * The amount of snapshots after which expired ones are swept on insertion
+     */
+    private static final int SWEEP_THRESHOLD = 256;
+
+    /**
+     * How long a snapshot is used for by default, in nanoseconds
+     */
+    private static final long DEFAULT_LIFETIME = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * The snapshot of each player
+     */
+    private final Map<UUID, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * The plugin to register the listener with
+     */
+    private volatile Plugin plugin;
+
+    /**
+     * Whether is the listener registered
+     */
+    private volatile boolean active;
+
+    /**
+     * How long a snapshot is used for, in nanoseconds. 0 to always check permissions directly
+     */
+    private volatile long lifetime = DEFAULT_LIFETIME;
+
+    /**
+     * Sets the plugin which this will register its listener with
+     *
+     * @param plugin The plugin
+     */
+    public synchronized void setPlugin(Plugin plugin) {
+        if (plugin != this.plugin) stop();
+        this.plugin = plugin;
+    }
+
+    /**
+     * Sets how long a snapshot is used before the permissions are checked again
+     *
+     * @param lifetime The lifetime, or 0 to always check permissions directly
+     * @param unit     Unit of the lifetime
+     */
+    public void setLifetime(long lifetime, TimeUnit unit) {
+        this.lifetime = unit.toNanos(lifetime);
+        snapshots.clear();
+    }
+
+    /**
+     * Tests whether may the sender run the specified subcommand
+     *
+     * @param sender     Sender to test
+     * @param subcommand The subcommand
+     * @return True if the sender has the subcommand's permission, or it has none
+     */
+    public boolean test(CommandSender sender, SubcommandInvokation subcommand) {
+        if (subcommand.permission == null) return true;
+        if (!(sender instanceof Player) || subcommand.ordinal < 0 || lifetime <= 0)
+            return subcommand.hasPermission(sender);
+        activate();
+        if (!active && plugin != null) return subcommand.hasPermission(sender);
+        Player player = (Player) sender;
+        long now = System.nanoTime();
+        Snapshot snapshot = snapshots.get(player.getUniqueId());
+        if (snapshot == null || now - snapshot.created > lifetime || snapshot.op != player.isOp()) {
+            snapshot = new Snapshot(now, player.isOp());
+            snapshots.put(player.getUniqueId(), snapshot);
+            if (snapshots.size() > SWEEP_THRESHOLD) sweep(now);
+        }
+        return snapshot.test(player, subcommand);
+    }
+
+    /**
+     * Discards the snapshot of the specified sender, so that its permissions are checked again
+     *
+     * @param sender Sender to invalidate
+     */
+    public void invalidate(CommandSender sender) {
+        if (sender instanceof Player) snapshots.remove(((Player) sender).getUniqueId());
+    }
+
+    /**
+     * Discards all snapshots
+     */
+    public void invalidateAll() {
+        snapshots.clear();
+    }
+
+    private void sweep(long now) {
+        for (Iterator<Snapshot> iterator = snapshots.values().iterator(); iterator.hasNext(); )
+            if (now - iterator.next().created > lifetime) iterator.remove();
+    }
+
+    private void activate() {
+        Plugin plugin = this.plugin;
+        if (active || plugin == null || !plugin.isEnabled() || !Bukkit.isPrimaryThread()) return;
+        synchronized (this) {
+            if (active || plugin != this.plugin) return;
+            Bukkit.getPluginManager().registerEvents(this, plugin);
+            active = true;
+        }
+    }
+
+    /**
+     * Unregisters the listener and discards all snapshots. Called when the plugin is disabled or the
+     * handler's plugin is changed. The listener is registered again the next time a snapshot is taken while
+     * the plugin is enabled.
+     */
+    public synchronized void stop() {
+        snapshots.clear();
+        if (!active) return;
+        HandlerList.unregisterAll(this);
+        active = false;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(PluginDisableEvent event) {
+        if (event.getPlugin() == plugin) stop();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        snapshots.remove(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        snapshots.remove(event.getPlayer().getUniqueId()); // permissions may be per-world
+    }
+
+    /**
+     * The permissions of a single player
+     */
+    private static final class Snapshot {
+
+        private final long created;
+        private final boolean op;
+
+        /**
+         * The bits which have been computed
+         */
+        private long[] computed = new long[1];
+
+        /**
+         * The bits of the subcommands which may be ran
+         */
+        private long[] allowed = new long[1];
+
+        private Snapshot(long created, boolean op) {
+            this.created = created;
+            this.op = op;
+        }
+
+        private synchronized boolean test(Player player, SubcommandInvokation subcommand) {
+            int word = subcommand.ordinal >>> 6;
+            long bit = 1L << subcommand.ordinal;
+            if (word >= computed.length) {
+                int length = Math.max(word + 1, computed.length * 2);
+                long[] computed = new long[length], allowed = new long[length];
+                System.arraycopy(this.computed, 0, computed, 0, this.computed.length);
+                System.arraycopy(this.allowed, 0, allowed, 0, this.allowed.length);
+                this.computed = computed;
+                this.allowed = allowed;
+            }
+            if ((computed[word] & bit) == 0) {
+                if (subcommand.hasPermission(player)) allowed[word] |= bit;
+                computed[word] |= bit;
+            }
+            return (allowed[word] & bit) != 0;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A case-insensitive index of online players by name, which is kept up to date through join and
+ * quit events. Lookups are safe from any thread.
+ * <p>
+ * The index starts listening the first time it is used while its plugin is enabled, and stops when the
+ * plugin is disabled. While it is not listening, {@link #isAvailable()} returns false and callers should
+ * fall back to the Bukkit lookups.
+ */
+public class PlayerIndex implements Listener {
+
+    /**
+     * The online players, keyed by their lower-case names
+     */
+    private final NavigableMap<String, Player> players = new ConcurrentSkipListMap<>();
+
+    /**
+     * The plugin to register the listener with
+     */
+    private volatile Plugin plugin;
+
+    /**
+     * Whether is the listener registered
+     */
+    private volatile boolean active;
+
+    /**
+     * The maximum amount of names returned by {@link #complete(String, CommandSender)}
+     */
+    private int limit = Integer.MAX_VALUE;
+
+    /**
+     * Sets the plugin which this index will register its listener with
+     *
+     * @param plugin The plugin
+     */
+    public synchronized void setPlugin(Plugin plugin) {
+        if (plugin != this.plugin) stop();
+        this.plugin = plugin;
+    }
+
+    /**
+     * Sets the maximum amount of names returned by {@link #complete(String, CommandSender)}
+     *
+     * @param limit The limit
+     */
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Returns whether is this index listening to players, registering its listener if possible
+     *
+     * @return True if the index can be used
+     */
+    public boolean isAvailable() {
+        Plugin plugin = this.plugin;
+        if (active && plugin.isEnabled()) return true;
+        if (plugin == null || !plugin.isEnabled() || !Bukkit.isPrimaryThread()) return false;
+        synchronized (this) {
+            if (!active) {
+                Bukkit.getPluginManager().registerEvents(this, plugin);
+                for (Player player : Bukkit.getOnlinePlayers()) add(player);
+                active = true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the online player with exactly the specified name, ignoring case
+     *
+     * @param name Name of the player
+     * @return The player, or null if not online
+     */
+    @Nullable
+    public Player getExact(String name) {
+        return players.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Returns the online player matching the specified name, in the same way as {@link Bukkit#getPlayer(String)}:
+     * an exact match, otherwise the player with the shortest name starting with it.
+     *
+     * @param name Name or name prefix of the player
+     * @return The player, or null if none match
+     */
+    @Nullable
+    public Player match(String name) {
+        String key = name.toLowerCase(Locale.ROOT);
+        Player exact = players.get(key);
+        if (exact != null) return exact;
+        Player found = null;
+        int shortest = Integer.MAX_VALUE;
+        for (Player player : withPrefix(key).values()) {
+            int length = player.getName().length();
+            if (length < shortest) {
+                found = player;
+                shortest = length;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the names of online players starting with the specified prefix, ignoring case, sorted
+     * alphabetically. Players that the viewer cannot see are excluded.
+     *
+     * @param prefix The name prefix
+     * @param viewer The sender requesting the names. Can be null
+     * @return The player names, up to the limit
+     */
+    public List<String> complete(String prefix, @Nullable CommandSender viewer) {
+        List<String> names = new ArrayList<>();
+        Player viewingPlayer = viewer instanceof Player ? (Player) viewer : null;
+        for (Player player : withPrefix(prefix.toLowerCase(Locale.ROOT)).values()) {
+            if (names.size() >= limit) break;
+            if (viewingPlayer == null || viewingPlayer.canSee(player)) names.add(player.getName());
+        }
+        return names;
+    }
+
+    private NavigableMap<String, Player> withPrefix(String prefix) {
+        return players.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private void add(Player player) {
+        players.put(player.getName().toLowerCase(Locale.ROOT), player);
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        add(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        players.remove(event.getPlayer().getName().toLowerCase(Locale.ROOT), event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(PluginDisableEvent event) {
+        if (event.getPlugin() == plugin) stop();
+    }
+
+    /**
+     * Unregisters the listener and forgets the indexed players, which are not kept up to date anymore. The
+     * index is filled again the next time it is used while the plugin is enabled.
+     */
+    private synchronized void stop() {
+        if (!active) return;
+        HandlerList.unregisterAll(this);
+        active = false;
+        players.clear();
+    }
+}
@@ -24,7 +24,10 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Represents a plugin's subcommand
@@ -98,6 +101,66 @@ public @interface PluginSubcommand {
      */
     String tabCompletions() default DEFAULT_COMPLETION;
 
+    /**
+     * Whether should this command run asynchronously. The arguments are resolved on the thread the command
+     * was dispatched on, after which the callback runs on the handler's asynchronous executor. Commands of
+     * the same sender run one at a time, in order.
+     * <p>
+     * Use {@link CommandContext#sync(Runnable)} to run code which uses the Bukkit API.
+     *
+     * @return Whether does this command run asynchronously
+     */
+    boolean async() default false;
+
+    /**
+     * Whether should this command run from the handler's {@link CommandQueue}. The arguments are resolved
+     * when the command is dispatched, after which the callback runs on the main thread within the queue's
+     * time budget of a later tick. Cannot be combined with {@link #async()}.
+     *
+     * @return Whether is this command queued
+     */
+    boolean queued() default false;
+
+    /**
+     * The priority of this command in the queue, which decides whether it is deferred or rejected while
+     * the server is overloaded. Only used if {@link #queued()} is true.
+     *
+     * @return The queue priority
+     */
+    CommandQueue.Priority priority() default CommandQueue.Priority.NORMAL;
+
+    /**
+     * The time a sender must wait between runs of this command, in milliseconds. 0 for no cooldown.
+     * Cannot be combined with {@link #rateLimit()}.
+     *
+     * @return The cooldown
+     */
+    long cooldown() default 0;
+
+    /**
+     * The amount of times a sender may run this command in {@link #rateLimitPeriod()}. Unused runs
+     * accumulate up to this amount, allowing short bursts. 0 for no limit. Cannot be combined with
+     * {@link #cooldown()}.
+     *
+     * @return The rate limit
+     */
+    int rateLimit() default 0;
+
+    /**
+     * The period of {@link #rateLimit()}, in milliseconds
+     *
+     * @return The rate limit period
+     */
+    long rateLimitPeriod() default 1000;
+
+    /**
+     * The amount of times per second a sender may request tab completions for this command's arguments.
+     * Requests over the limit are answered with no completions. 0 for no limit.
+     *
+     * @return The tab completion rate limit
+     */
+    int tabRateLimit() default 0;
+
     /**
      * The permission default access for this command
      *
@@ -121,13 +184,11 @@ public @interface PluginSubcommand {
     String OPTIONAL_PARAM_DEFAULT = "_no_default_";
 
     /**
-     * Represents an optional parameter
-     *
-     * @deprecated Unimplemented.
+     * Represents an optional parameter. If the argument is not specified, the default value
+     * is resolved instead, or null is passed if there is no default value.
      */
     @Retention(RetentionPolicy.RUNTIME)
     @Target(ElementType.PARAMETER)
-    @Deprecated
     @interface OptionalParameter {
 
         /**
@@ -139,6 +200,16 @@ public @interface PluginSubcommand {
 
     }
 
+    /**
+     * Represents a {@link String} parameter which takes all the remaining arguments, joined
+     * by a space. Must be the last parameter of the method.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.PARAMETER)
+    @interface JoinedParameter {
+
+    }
+
     /**
      * An interface which acts like a converter between specific types
      *
@@ -173,11 +244,52 @@ public @interface PluginSubcommand {
         List<String> getTab(TabContext context);
     }
 
+    /**
+     * A tab provider which filters its completions by the argument being completed itself, for example
+     * to do an indexed or case-insensitive lookup. Its results are not filtered again.
+     */
+    @FunctionalInterface
+    interface PrefixTabProvider extends TabProvider {
+
+        /**
+         * Returns the tab completions which match the specified prefix
+         *
+         * @param context Tab context
+         * @param prefix  The argument being completed
+         * @return The completions
+         */
+        List<String> getTab(TabContext context, String prefix);
+
+        @Override
+        default List<String> getTab(TabContext context) {
+            return getTab(context, "");
+        }
+    }
+
+    /**
+     * An interface for providing tab completions asynchronously, for providers which do expensive work
+     * such as database queries
+     */
+    @FunctionalInterface
+    interface AsyncTabProvider {
+
+        /**
+         * Returns the tab completions from the specified context. This is invoked on the thread requesting
+         * the completions, and should hand any expensive work to the specified executor.
+         *
+         * @param context  Tab context
+         * @param executor The executor configured for asynchronous tab completions
+         * @return A future of the completions
+         */
+        CompletableFuture<List<String>> getTab(TabContext context, Executor executor);
+    }
+
     /**
      * Command tab resolving context
      */
     class TabContext {
 
+        private final Arguments arguments;
         private String[] args;
         private CommandSender sender;
         private Command command;
@@ -185,17 +297,27 @@ public @interface PluginSubcommand {
         private CommandHandler handler;
 
         public TabContext(String[] args, CommandSender sender, SubcommandInvokation subcommand, Command command, CommandHandler handler) {
+            this(Arguments.of(args), sender, subcommand, command, handler);
             this.args = args;
+        }
+
+        public TabContext(Arguments arguments, CommandSender sender, SubcommandInvokation subcommand, Command command, CommandHandler handler) {
+            this.arguments = arguments;
             this.sender = sender;
             this.command = command;
             this.handler = handler;
-            fakeContext = new CommandContext(sender, args, command, subcommand, handler);
+            fakeContext = new CommandContext(sender, arguments, command, subcommand, handler);
         }
 
         public String[] getArgs() {
+            if (args == null) args = arguments.toArray();
             return args;
         }
 
+        public Arguments getArguments() {
+            return arguments;
+        }
+
         public CommandSender getSender() {
             return sender;
         }
@@ -212,11 +334,25 @@ public @interface PluginSubcommand {
             return command;
         }
 
+        /**
+         * Returns a key which identifies the arguments before the one being completed, within the specified
+         * scope
+         *
+         * @param scope The scope of the key, such as the sender's key
+         * @return The key, suitable for hash maps
+         */
+        List<Object> precedingKey(Object scope) {
+            Object[] key = new Object[Math.max(1, arguments.size())];
+            key[0] = scope;
+            for (int i = 0; i < key.length - 1; i++) key[i + 1] = arguments.get(i);
+            return Arrays.asList(key);
+        }
+
         @Nullable
         @SuppressWarnings("unchecked")
         public <R> R resolveFirst(Class<R> type, int index) {
             try {
-                return (R) handler.getResolvers().get(type).resolve(args[index], fakeContext);
+                return (R) handler.getResolvers().get(type).resolve(arguments.get(index), fakeContext);
             } catch (Exception e) {
                 return null;
             }
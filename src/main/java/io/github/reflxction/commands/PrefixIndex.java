@@ -0,0 +1,190 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Predicate;
+
+/**
+ * An immutable index of string keys sorted lexicographically, which finds all keys starting with a prefix
+ * using a binary search. Lookups cost O(log n + results) and do not scan the whole index.
+ * <p>
+ * An index which ignores case sorts its keys with {@link String#CASE_INSENSITIVE_ORDER}, and compares them
+ * with the prefix character by character, without creating a lower case copy of either.
+ *
+ * @param <V> The type of values associated with each key
+ */
+public class PrefixIndex<V> {
+
+    /**
+     * The sorted keys
+     */
+    private final String[] keys;
+
+    /**
+     * The values, in the same order as {@link #keys}
+     */
+    private final Object[] values;
+
+    /**
+     * Whether are prefixes matched ignoring case
+     */
+    private final boolean ignoreCase;
+
+    /**
+     * Creates a new index from the specified entries
+     *
+     * @param entries Entries to index
+     */
+    public PrefixIndex(Map<String, ? extends V> entries) {
+        this(entries, false);
+    }
+
+    /**
+     * Creates a new index from the specified entries
+     *
+     * @param entries    Entries to index
+     * @param ignoreCase Whether to match prefixes ignoring case
+     */
+    public PrefixIndex(Map<String, ? extends V> entries, boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+        Comparator<String> order = ignoreCase
+                ? String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder())
+                : Comparator.naturalOrder();
+        List<Entry<String, ? extends V>> sorted = new ArrayList<>(entries.entrySet());
+        sorted.sort((a, b) -> order.compare(a.getKey(), b.getKey()));
+        keys = new String[sorted.size()];
+        values = new Object[sorted.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = sorted.get(i).getKey();
+            values[i] = sorted.get(i).getValue();
+        }
+    }
+
+    /**
+     * Creates a new index of the specified keys, without values. Duplicate keys are removed
+     *
+     * @param keys Keys to index
+     * @return The index
+     */
+    public static PrefixIndex<String> of(Collection<String> keys) {
+        Map<String, String> entries = new HashMap<>();
+        for (String key : keys) entries.put(key, key);
+        return new PrefixIndex<>(entries);
+    }
+
+    /**
+     * Returns the index of the first key which is greater than or equal to the prefix. All keys starting
+     * with the prefix are stored consecutively from this index.
+     *
+     * @param prefix Prefix to look for
+     * @return The index of the first candidate
+     */
+    public int first(String prefix) {
+        int low = 0, high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = ignoreCase ? String.CASE_INSENSITIVE_ORDER.compare(keys[middle], prefix) : keys[middle].compareTo(prefix);
+            if (comparison < 0) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Adds all keys starting with the specified prefix whose value matches the filter, in sorted order.
+     *
+     * @param prefix Prefix to look for
+     * @param filter Filter to test values with
+     * @param into   List to add the keys into
+     */
+    public void complete(String prefix, Predicate<? super V> filter, List<String> into) {
+        for (int i = first(prefix); i < keys.length && startsWith(i, prefix); i++)
+            if (filter.test(value(i))) into.add(keys[i]);
+    }
+
+    /**
+     * Adds all keys starting with the specified prefix, in sorted order.
+     *
+     * @param prefix Prefix to look for
+     * @param into   List to add the keys into
+     */
+    public void complete(String prefix, List<String> into) {
+        for (int i = first(prefix); i < keys.length && startsWith(i, prefix); i++)
+            into.add(keys[i]);
+    }
+
+    /**
+     * Adds the keys starting with the specified prefix, in sorted order, stopping after the limit
+     *
+     * @param prefix Prefix to look for
+     * @param into   List to add the keys into
+     * @param limit  The maximum amount of keys to add, or 0 for no limit
+     */
+    public void complete(String prefix, List<String> into, int limit) {
+        int first = first(prefix);
+        int end = limit <= 0 ? keys.length : (int) Math.min(keys.length, (long) first + limit);
+        for (int i = first; i < end && startsWith(i, prefix); i++)
+            into.add(keys[i]);
+    }
+
+    /**
+     * Returns whether does the key at the specified index start with the prefix
+     *
+     * @param index  Index of the key
+     * @param prefix Prefix to test
+     * @return True if the key starts with the prefix
+     */
+    public boolean startsWith(int index, String prefix) {
+        return keys[index].regionMatches(ignoreCase, 0, prefix, 0, prefix.length());
+    }
+
+    /**
+     * Returns the key at the specified index
+     *
+     * @param index Index of the key
+     * @return The key
+     */
+    public String key(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Returns the value at the specified index
+     *
+     * @param index Index of the value
+     * @return The value
+     */
+    @SuppressWarnings("unchecked")
+    public V value(int index) {
+        return (V) values[index];
+    }
+
+    /**
+     * Returns the amount of keys in this index
+     *
+     * @return The size
+     */
+    public int size() {
+        return keys.length;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.bukkit.command.CommandSender;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A per-sender token bucket. Each sender may use up to {@code permits} tokens at once, and tokens are
+ * refilled at a rate of {@code permits} per {@code period}. A cooldown is a bucket of a single token.
+ * <p>
+ * The bucket is implemented as a generic cell rate algorithm: each sender only stores the time at which
+ * its bucket will be full again, updated with a compare-and-set. Senders whose bucket is full are evicted
+ * periodically.
+ */
+public class RateLimiter {
+
+    /**
+     * How often are full buckets evicted, in nanoseconds
+     */
+    private static final long SWEEP_INTERVAL = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * The time at which each sender's bucket is full again
+     */
+    private final Map<Object, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * The time it takes to refill a single token, in nanoseconds
+     */
+    private final long interval;
+
+    /**
+     * The time it takes to refill all but one token, in nanoseconds
+     */
+    private final long tolerance;
+
+    /**
+     * When were full buckets last evicted
+     */
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+    /**
+     * Creates a new rate limiter
+     *
+     * @param permits The size of the bucket
+     * @param period  The time it takes to refill the whole bucket
+     * @param unit    Unit of the period
+     */
+    public RateLimiter(int permits, long period, TimeUnit unit) {
+        if (permits <= 0) throw new IllegalArgumentException("permits must be positive");
+        if (period <= 0) throw new IllegalArgumentException("period must be positive");
+        this.interval = Math.max(1, unit.toNanos(period) / permits);
+        this.tolerance = interval * (permits - 1);
+    }
+
+    /**
+     * Creates a rate limiter which allows a single use per sender in the specified duration
+     *
+     * @param cooldown The cooldown
+     * @param unit     Unit of the cooldown
+     * @return The rate limiter
+     */
+    public static RateLimiter cooldown(long cooldown, TimeUnit unit) {
+        return new RateLimiter(1, cooldown, unit);
+    }
+
+    /**
+     * Takes a token of the specified sender, if one is available
+     *
+     * @param sender Sender to take from
+     * @return 0 if a token was taken, otherwise the time until the next token is available, in nanoseconds
+     */
+    public long tryAcquire(CommandSender sender) {
+        long now = System.nanoTime();
+        sweep(now);
+        AtomicLong bucket = buckets.get(SenderExecutor.key(sender));
+        if (bucket == null) {
+            bucket = buckets.putIfAbsent(SenderExecutor.key(sender), new AtomicLong(now + interval));
+            if (bucket == null) return 0;
+        }
+        while (true) {
+            long full = bucket.get();
+            long start = full - now < 0 ? now : full;
+            long wait = start - now - tolerance;
+            if (wait > 0) return wait;
+            if (bucket.compareAndSet(full, start + interval)) return 0;
+        }
+    }
+
+    /**
+     * Refills the bucket of the specified sender
+     *
+     * @param sender Sender to reset
+     */
+    public void reset(CommandSender sender) {
+        buckets.remove(SenderExecutor.key(sender));
+    }
+
+    /**
+     * Evicts the buckets which are full, if this has not been done recently. An eviction that races with
+     * {@link #tryAcquire(CommandSender)} may at worst refill a bucket which was just used.
+     */
+    private void sweep(long now) {
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL || !lastSweep.compareAndSet(last, now)) return;
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+
+    /**
+     * A fallback functional interface, with its method invoked when a sender is rate limited
+     */
+    @FunctionalInterface
+    public interface RateLimitFallback {
+
+        /**
+         * Invoked when a sender runs a command too often
+         *
+         * @param context    The command context
+         * @param retryAfter The time until the sender may run the command again, in milliseconds
+         */
+        void onRateLimited(CommandContext context, long retryAfter);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Entity;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * An executor which runs tasks on a delegate executor, while running the tasks of each sender one at
+ * a time and in the order they were submitted. Tasks of different senders run concurrently.
+ * <p>
+ * A task which throws does not stop the tasks submitted after it. If the delegate rejects a sender's
+ * drain, the sender's tasks run on the submitting thread instead.
+ */
+public class SenderExecutor {
+
+    /**
+     * The pending tasks of each sender. A sender only has an entry while it has tasks running
+     */
+    private final Map<Object, Queue<Runnable>> queues = new ConcurrentHashMap<>();
+
+    /**
+     * The executor which tasks run on
+     */
+    private final Executor delegate;
+
+    /**
+     * Creates a new sender executor
+     *
+     * @param delegate The executor which tasks run on
+     */
+    public SenderExecutor(Executor delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Runs the specified task after all the previously submitted tasks of the sender
+     *
+     * @param sender Sender to run for
+     * @param task   Task to run
+     */
+    public void execute(CommandSender sender, Runnable task) {
+        Object key = key(sender);
+        boolean[] start = new boolean[1];
+        queues.compute(key, (k, queue) -> {
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                start[0] = true;
+            }
+            queue.add(task);
+            return queue;
+        });
+        if (!start[0]) return;
+        try {
+            delegate.execute(() -> drain(key));
+        } catch (RejectedExecutionException e) {
+            drain(key); // the entry is already inserted, so the sender's tasks must be drained here
+        }
+    }
+
+    private void drain(Object key) {
+        Runnable[] next = new Runnable[1];
+        while (true) {
+            queues.compute(key, (k, queue) -> {
+                next[0] = queue.peek();
+                if (next[0] == null) return null; // no more tasks, remove the entry
+                return queue;
+            });
+            if (next[0] == null) return;
+            try {
+                next[0].run();
+            } catch (Throwable t) {
+                t.printStackTrace(); // keep draining, so that the sender's later tasks still run
+            } finally {
+                queues.computeIfPresent(key, (k, queue) -> {
+                    queue.poll();
+                    return queue;
+                });
+            }
+        }
+    }
+
+    /**
+     * Returns the key which identifies the specified sender across sessions
+     *
+     * @param sender Sender to identify
+     * @return The sender's key
+     */
+    static Object key(CommandSender sender) {
+        return sender instanceof Entity ? ((Entity) sender).getUniqueId() : sender;
+    }
+
+    /**
+     * Creates the default executor for asynchronous commands. This uses virtual threads when the runtime
+     * supports them, and a cached pool of daemon threads otherwise.
+     *
+     * @return The default executor
+     */
+    public static Executor createDefault() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "BukkitCommands Async Command");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
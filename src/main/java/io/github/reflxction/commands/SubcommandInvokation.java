@@ -15,11 +15,25 @@
  */
 package io.github.reflxction.commands;
 
+import io.github.reflxction.commands.CommandResolvers.BlockingTabProvider;
+import io.github.reflxction.commands.CommandResolvers.StaticTabs;
+import io.github.reflxction.commands.PluginSubcommand.PrefixTabProvider;
+import io.github.reflxction.commands.PluginSubcommand.TabContext;
+import io.github.reflxction.commands.PluginSubcommand.TabProvider;
+import org.apache.commons.lang.StringUtils;
+import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
 import org.bukkit.permissions.Permission;
 import org.bukkit.permissions.PermissionDefault;
+import org.bukkit.plugin.PluginManager;
 
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Represents a method or class that handles a subcommand
@@ -34,6 +48,62 @@ public abstract class SubcommandInvokation {
     public final boolean requirePlayer;
     public final String tab;
 
+    /**
+     * The tab completions, compiled from {@link #tab}. Each element represents the argument in its position
+     */
+    public final TabCompletion[] tabCompletions;
+
+    /**
+     * Whether does this command run asynchronously
+     *
+     * @see PluginSubcommand#async()
+     */
+    public final boolean async;
+
+    /**
+     * Whether does this command run from the handler's queue
+     *
+     * @see PluginSubcommand#queued()
+     */
+    public final boolean queued;
+
+    /**
+     * The priority of this command in the handler's queue
+     *
+     * @see PluginSubcommand#priority()
+     */
+    public final CommandQueue.Priority priority;
+
+    /**
+     * The limit of how often may a sender run this command, or null if unlimited
+     *
+     * @see PluginSubcommand#rateLimit()
+     * @see PluginSubcommand#cooldown()
+     */
+    @Nullable
+    public final RateLimiter rateLimiter;
+
+    /**
+     * The limit of how often may a sender request tab completions for this command, or null if unlimited
+     *
+     * @see PluginSubcommand#tabRateLimit()
+     */
+    @Nullable
+    public final RateLimiter tabRateLimiter;
+
+    /**
+     * The index of this command in its handler, assigned when it is registered. Used to index per-sender
+     * permission snapshots. -1 if not registered
+     */
+    public int ordinal = -1;
+
+    /**
+     * The object this command was registered from, used to unregister it. null if added directly
+     *
+     * @see CommandHandler#unregister(Object)
+     */
+    public Object holder;
+
     public SubcommandInvokation(String name,
                                 String description,
                                 String parameters,
@@ -50,14 +120,120 @@ public abstract class SubcommandInvokation {
         this.aliases = aliases;
         this.helpMenu = helpMenu;
         if (!permission.equals(PluginSubcommand.NO_PERMISSION))
-            this.permission = new Permission(name, permission);
+            this.permission = new Permission(permission, description, permissionAccess);
         this.minimumArgs = minimumArgs;
         this.requirePlayer = requirePlayer;
         this.tab = tab;
+        this.tabCompletions = compileTabs(tab);
+        this.async = false;
+        this.queued = false;
+        this.priority = CommandQueue.Priority.NORMAL;
+        this.rateLimiter = null;
+        this.tabRateLimiter = null;
     }
 
+    /**
+     * Creates a copy of the specified command with other execution settings. Used by subclasses to
+     * implement {@link #withExecution(boolean, boolean, CommandQueue.Priority, RateLimiter, RateLimiter)}.
+     *
+     * @param source         Command to copy
+     * @param async          Whether does the copy run asynchronously
+     * @param queued         Whether does the copy run from the handler's queue
+     * @param priority       Priority of the copy in the handler's queue
+     * @param rateLimiter    Limit of how often may a sender run the copy, or null if unlimited
+     * @param tabRateLimiter Limit of how often may a sender request tab completions, or null if unlimited
+     * @throws IllegalArgumentException If the copy is both asynchronous and queued
+     */
+    protected SubcommandInvokation(SubcommandInvokation source,
+                                   boolean async,
+                                   boolean queued,
+                                   CommandQueue.Priority priority,
+                                   @Nullable RateLimiter rateLimiter,
+                                   @Nullable RateLimiter tabRateLimiter) {
+        if (async && queued)
+            throw new IllegalArgumentException("Subcommand " + source.name + " cannot be both async and queued");
+        this.name = source.name;
+        this.description = source.description;
+        this.parameters = source.parameters;
+        this.aliases = source.aliases;
+        this.helpMenu = source.helpMenu;
+        this.permission = source.permission;
+        this.minimumArgs = source.minimumArgs;
+        this.requirePlayer = source.requirePlayer;
+        this.tab = source.tab;
+        this.tabCompletions = source.tabCompletions;
+        this.ordinal = source.ordinal;
+        this.holder = source.holder;
+        this.async = async;
+        this.queued = queued;
+        this.priority = priority;
+        this.rateLimiter = rateLimiter;
+        this.tabRateLimiter = tabRateLimiter;
+    }
+
+    /**
+     * Returns a copy of this command with the specified execution settings. Registered commands are not
+     * modified; the handler publishes the copy in their place, so that a command which is being dispatched
+     * sees either the old settings or the new ones, never a mix of both.
+     *
+     * @param async          Whether does the copy run asynchronously
+     * @param queued         Whether does the copy run from the handler's queue
+     * @param priority       Priority of the copy in the handler's queue
+     * @param rateLimiter    Limit of how often may a sender run the copy, or null if unlimited
+     * @param tabRateLimiter Limit of how often may a sender request tab completions, or null if unlimited
+     * @return The copy
+     * @throws IllegalArgumentException If the copy would be both asynchronous and queued
+     */
+    public abstract SubcommandInvokation withExecution(boolean async, boolean queued, CommandQueue.Priority priority, @Nullable RateLimiter rateLimiter, @Nullable RateLimiter tabRateLimiter);
+
     public abstract void invoke(CommandContext context);
 
+    /**
+     * Prepares this command to be invoked later, possibly on another thread. Any work which requires the
+     * thread the command was dispatched on (such as resolving arguments) should be done here.
+     *
+     * @param context The command context
+     * @return A task which completes the invocation
+     */
+    public Runnable prepare(CommandContext context) {
+        return () -> invoke(context);
+    }
+
+    /**
+     * Compiles the specified tab completions specification
+     *
+     * @param tab Tab completions to compile. See {@link PluginSubcommand#tabCompletions()}
+     * @return The compiled completions, one per argument
+     */
+    public static TabCompletion[] compileTabs(String tab) {
+        if (tab.equals(PluginSubcommand.DEFAULT_COMPLETION)) return new TabCompletion[0];
+        String[] arguments = tab.split(" ");
+        TabCompletion[] completions = new TabCompletion[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            String argument = arguments[i];
+            if (argument.startsWith("@")) completions[i] = new ReferenceCompletion(argument.substring(1));
+            else {
+                List<String> literals = new ArrayList<>();
+                for (String literal : StringUtils.split(argument, "|"))
+                    literals.add(literal.replace("~~", " "));
+                completions[i] = new LiteralCompletion(PrefixIndex.of(literals));
+            }
+        }
+        return completions;
+    }
+
+    /**
+     * Registers the permission of this command with the plugin manager. If a permission with the same
+     * name is already registered (for example, in the plugin.yml), that permission is used instead.
+     */
+    public void registerPermission() {
+        if (permission == null || Bukkit.getServer() == null) return;
+        PluginManager pluginManager = Bukkit.getPluginManager();
+        Permission registered = pluginManager.getPermission(permission.getName());
+        if (registered != null) permission = registered;
+        else pluginManager.addPermission(permission);
+    }
+
     /**
      * Checks whether does the sender have the permission to use this
      *
@@ -68,4 +244,172 @@ public abstract class SubcommandInvokation {
         return permission == null || sender.hasPermission(permission);
     }
 
+    /**
+     * Represents the tab completions of a single argument
+     */
+    public interface TabCompletion {
+
+        /**
+         * Returns the completions which start with the specified prefix
+         *
+         * @param prefix  The argument being completed
+         * @param context The tab context. Null if {@link #requiresContext()} is false
+         * @return The completions, or null to let Bukkit complete player names
+         */
+        @Nullable
+        List<String> complete(String prefix, @Nullable TabContext context);
+
+        /**
+         * Returns whether does this completion require a tab context
+         *
+         * @return True if a context is required
+         */
+        default boolean requiresContext() {
+            return true;
+        }
+
+        /**
+         * Returns whether are the completions for a longer prefix exactly the completions for a shorter one
+         * which start with the longer prefix. Such completions can be narrowed down by the
+         * {@link NarrowingCache} instead of being computed again.
+         *
+         * @param handler The command handler
+         * @return True if the completions can be narrowed down
+         */
+        default boolean isNarrowable(CommandHandler handler) {
+            return false;
+        }
+
+        /**
+         * Returns the completions which start with the specified prefix, without blocking on
+         * asynchronous tab providers
+         *
+         * @param prefix  The argument being completed
+         * @param context The tab context
+         * @return A future of the completions. Completes with null to let Bukkit complete player names
+         */
+        default CompletableFuture<List<String>> completeAsync(String prefix, TabContext context) {
+            return CompletableFuture.completedFuture(complete(prefix, context));
+        }
+    }
+
+    /**
+     * Completions from a static list of literals, sorted for prefix lookups
+     */
+    public static class LiteralCompletion implements TabCompletion {
+
+        private final PrefixIndex<String> literals;
+
+        public LiteralCompletion(PrefixIndex<String> literals) {
+            this.literals = literals;
+        }
+
+        @Override
+        public List<String> complete(String prefix, @Nullable TabContext context) {
+            List<String> completions = new ArrayList<>();
+            literals.complete(prefix, completions);
+            return completions;
+        }
+
+        @Override
+        public boolean requiresContext() {
+            return false;
+        }
+    }
+
+    /**
+     * Completions from an {@code @key} reference. The provider is looked up on every request rather than
+     * held, as it may be registered after the subcommand, replaced, or unregistered with its plugin.
+     */
+    public static class ReferenceCompletion implements TabCompletion {
+
+        private final String key;
+
+        /**
+         * The fuzzy index of the provider's last completions, for providers which return the same list until
+         * it changes. Reused while the provider returns the same list
+         */
+        private volatile FuzzyIndex fuzzyIndex;
+
+        public ReferenceCompletion(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public List<String> complete(String prefix, @Nullable TabContext context) {
+            TabProvider provider = context.getHandler().getResolvers().getTabProvider(key);
+            long start = System.nanoTime();
+            try {
+                if (provider instanceof PrefixTabProvider && !isFuzzyStatic(provider, context.getHandler()))
+                    return ((PrefixTabProvider) provider).getTab(context, prefix);
+                return filter(provider.getTab(context), prefix, context.getHandler(), isStable(provider));
+            } finally {
+                context.getHandler().getMetrics().recordTabProvider(key, System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public CompletableFuture<List<String>> completeAsync(String prefix, TabContext context) {
+            TabProvider provider = context.getHandler().getResolvers().getTabProvider(key);
+            if (!(provider instanceof BlockingTabProvider))
+                return CompletableFuture.completedFuture(complete(prefix, context));
+            long start = System.nanoTime();
+            // completes with the last result once the tab timeout passes, so async completion events never hang
+            CompletableFuture<List<String>> future = ((BlockingTabProvider) provider).getTabAsync(context);
+            return future.thenApply(tabs -> {
+                context.getHandler().getMetrics().recordTabProvider(key, System.nanoTime() - start);
+                return filter(tabs, prefix, context.getHandler(), false);
+            });
+        }
+
+        /**
+         * Returns whether is the provider a static list which should be matched fuzzily, in which case the
+         * whole list is needed rather than the completions starting with the prefix
+         */
+        private static boolean isFuzzyStatic(TabProvider provider, CommandHandler handler) {
+            return provider instanceof StaticTabs && handler.fuzzyCompletions > 0;
+        }
+
+        @Override
+        public boolean isNarrowable(CommandHandler handler) {
+            TabProvider provider = handler.getResolvers().findTabProvider(key);
+            return provider != null && !(provider instanceof PrefixTabProvider)
+                    && !(provider instanceof BlockingTabProvider) // may have answered with stale completions
+                    && handler.fuzzyCompletions <= 0;
+        }
+
+        /**
+         * Returns whether does the provider return the same list until its tabs change, so that indexes of
+         * the list can be reused
+         */
+        private static boolean isStable(TabProvider provider) {
+            return provider instanceof StaticTabs || provider instanceof CachedTabProvider;
+        }
+
+        /**
+         * Returns the tabs which match the prefix
+         *
+         * @param tabs    The provider's tabs
+         * @param prefix  The argument being completed
+         * @param handler The command handler
+         * @param stable  Whether does the provider return the same list until its tabs change
+         * @return The matching tabs
+         */
+        private List<String> filter(@Nullable List<String> tabs, String prefix, CommandHandler handler, boolean stable) {
+            if (tabs == null) return null;
+            int fuzzy = handler.fuzzyCompletions;
+            if (fuzzy > 0) {
+                if (!stable) return FuzzyIndex.search(tabs, prefix, fuzzy);
+                FuzzyIndex index = fuzzyIndex;
+                if (index == null || !index.isOf(tabs)) fuzzyIndex = index = new FuzzyIndex(tabs);
+                return index.search(prefix, fuzzy);
+            }
+            List<String> completions = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            for (String tab : tabs)
+                if (tab.startsWith(prefix) && seen.add(tab)) completions.add(tab);
+            return completions;
+        }
+    }
+
 }
@@ -0,0 +1,68 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Registers the subcommands of a holder class without scanning it reflectively. Implementations are
+ * generated at compile time by the {@code processor} module, and are named after the holder's binary
+ * name with {@link #SUFFIX} appended.
+ * <p>
+ * Generated registrars pass the annotation values and the parameter layout of each method to
+ * {@link CommandHandler#registerGenerated}, and invoke the methods directly. The only reflective
+ * operation left is loading the registrar itself in {@link #find(Class)}.
+ *
+ * @param <T> The holder type
+ */
+@FunctionalInterface
+public interface SubcommandRegistrar<T> {
+
+    /**
+     * The suffix of generated registrar classes
+     */
+    String SUFFIX = "_SubcommandRegistrar";
+
+    /**
+     * Registers all subcommands of the specified instance
+     *
+     * @param handler  Handler to register into
+     * @param instance The holder instance
+     */
+    void register(CommandHandler handler, T instance);
+
+    /**
+     * Returns the generated registrar of the specified holder class
+     *
+     * @param type The holder class
+     * @param <T>  The holder type
+     * @return The registrar, or null if none was generated for this class
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    static <T> SubcommandRegistrar<T> find(Class<?> type) {
+        try {
+            Class<?> registrar = Class.forName(type.getName() + SUFFIX, true, type.getClassLoader());
+            if (!SubcommandRegistrar.class.isAssignableFrom(registrar)) return null;
+            return (SubcommandRegistrar<T>) registrar.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create the generated registrar of " + type.getName(), e);
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.bukkit.command.CommandSender;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class AsyncTabProviderTest {
+
+    private final ParentCommand command = ParentCommand.create().contain(this);
+    private final CommandSender console = StandIns.console(StandIns.DISCARD);
+
+    /**
+     * The future which the provider returns on its next call
+     */
+    private volatile CompletableFuture<List<String>> next = new CompletableFuture<>();
+
+    @BeforeClass
+    public static void installServer() {
+        StandIns.install();
+    }
+
+    @Before
+    public void registerProvider() {
+        command.registerAsyncTabProvider("names", (context, executor) -> next);
+        command.getCommandHandler().setTabTimeout(20);
+    }
+
+    @PluginSubcommand(name = "greet", description = "Greets someone", tabCompletions = "@names")
+    public void greet(CommandContext context) {
+    }
+
+    @Test
+    public void completesWithTheProvidersResult() throws Exception {
+        next = CompletableFuture.completedFuture(Arrays.asList("Alex", "Sam", "Steve"));
+        assertEquals(Arrays.asList("Sam", "Steve"), complete("S"));
+        next = new CompletableFuture<>();
+        CompletableFuture<List<String>> pending = completeAsync("A");
+        next.complete(Arrays.asList("Alex", "Sam"));
+        assertEquals(Collections.singletonList("Alex"), pending.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void providerWhichNeverCompletesTimesOut() throws Exception {
+        assertEquals(Collections.emptyList(), complete(""));
+    }
+
+    @Test
+    public void timedOutRequestsUseTheLastResult() throws Exception {
+        next = new CompletableFuture<>();
+        CompletableFuture<List<String>> pending = completeAsync("S");
+        next.complete(Arrays.asList("Sam", "Steve")); // completes the request and is kept for later
+        pending.get(1, TimeUnit.SECONDS);
+
+        next = new CompletableFuture<>(); // never completes
+        assertEquals(Collections.singletonList("Steve"), complete("St"));
+    }
+
+    @Test
+    public void failedRequestsUseTheLastResult() throws Exception {
+        next = CompletableFuture.completedFuture(Arrays.asList("Sam", "Steve"));
+        complete("");
+        next = new CompletableFuture<>();
+        next.completeExceptionally(new IllegalStateException("expected failure"));
+        assertEquals(Arrays.asList("Sam", "Steve"), complete("S"));
+    }
+
+    private List<String> complete(String prefix) throws Exception {
+        return completeAsync(prefix).get(1, TimeUnit.SECONDS);
+    }
+
+    private CompletableFuture<List<String>> completeAsync(String prefix) {
+        return command.completeAsync(console, StandIns.command("test"), "test", new String[]{"greet", prefix});
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import io.github.reflxction.commands.BKTree.Match;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BKTreeTest {
+
+    private static final List<String> WORDS = Arrays.asList("help", "hello", "heal", "home", "homes", "sethome",
+            "give", "gift", "kit", "kits", "kill", "spawn", "setspawn", "tp", "tpa", "tphere", "warp", "warps");
+
+    @Test
+    public void computesEditDistances() {
+        assertEquals(3, distance("kitten", "sitting"));
+        assertEquals(3, distance("", "abc"));
+        assertEquals(3, distance("abc", ""));
+        assertEquals(1, distance("warp", "warps"));
+        assertEquals(2, distance("tp", "tpa2"));
+        assertEquals(0, distance("SetHome", "sethome")); // case-insensitive
+    }
+
+    @Test
+    public void findsEveryKeyWithinDistance() {
+        BKTree<String> tree = tree(WORDS);
+        Random random = new Random(42);
+        for (int n = 0; n < 200; n++) {
+            String query = mutate(WORDS.get(random.nextInt(WORDS.size())), random);
+            for (int maxDistance = 0; maxDistance <= 3; maxDistance++) {
+                int max = maxDistance;
+                List<String> expected = WORDS.stream()
+                        .filter(word -> distance(word, query) <= max)
+                        .sorted(Comparator.<String>comparingInt(word -> distance(word, query)).thenComparing(Comparator.naturalOrder()))
+                        .collect(Collectors.toList());
+                assertEquals(query + " within " + max, expected, keys(tree.search(query, max)));
+            }
+        }
+    }
+
+    @Test
+    public void sortsMatchesByDistanceThenKey() {
+        List<Match<String>> matches = tree(WORDS).search("kil", 1);
+        assertEquals(Arrays.asList("kill", "kit"), keys(matches));
+        assertEquals(1, matches.get(0).getDistance());
+        assertEquals("KILL", matches.get(0).getValue());
+    }
+
+    @Test
+    public void emptyTreesAndLongQueriesHaveNoMatches() {
+        assertTrue(tree(Collections.emptyList()).search("help", 2).isEmpty());
+        char[] query = new char[BKTree.MAX_QUERY_LENGTH + 1];
+        Arrays.fill(query, 'a');
+        assertTrue(tree(WORDS).search(new String(query), Integer.MAX_VALUE).isEmpty());
+    }
+
+    private static BKTree<String> tree(List<String> words) {
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (String word : words) entries.put(word, word.toUpperCase());
+        return new BKTree<>(entries);
+    }
+
+    private static int distance(String a, String b) {
+        return BKTree.distance(a, b, new int[(b.length() + 1) * 2]);
+    }
+
+    private static List<String> keys(List<Match<String>> matches) {
+        List<String> keys = new ArrayList<>();
+        for (Match<String> match : matches) keys.add(match.getKey());
+        return keys;
+    }
+
+    /**
+     * Applies up to two random edits to a word
+     */
+    private static String mutate(String word, Random random) {
+        StringBuilder builder = new StringBuilder(word);
+        for (int edits = random.nextInt(3); edits > 0; edits--) {
+            int index = random.nextInt(builder.length() + 1);
+            char c = (char) ('a' + random.nextInt(26));
+            switch (random.nextInt(3)) {
+                case 0:
+                    builder.insert(index, c);
+                    break;
+                case 1:
+                    if (index < builder.length()) builder.deleteCharAt(index);
+                    break;
+                default:
+                    if (index < builder.length()) builder.setCharAt(index, c);
+            }
+        }
+        return builder.toString();
+    }
+}
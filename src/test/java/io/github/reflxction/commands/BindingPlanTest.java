@@ -0,0 +1,165 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import io.github.reflxction.commands.CommandResolvers.Resolver;
+import io.github.reflxction.commands.PluginSubcommand.JoinedParameter;
+import io.github.reflxction.commands.PluginSubcommand.OptionalParameter;
+import org.bukkit.command.CommandSender;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BindingPlanTest {
+
+    private final CommandHandler handler = new CommandHandler();
+    private final List<String> replies = new ArrayList<>();
+    private final CommandSender console = StandIns.console(replies::add);
+    private final List<Object> bound = new ArrayList<>();
+
+    public enum Colour {
+        RED, GREEN
+    }
+
+    public class Subcommands {
+
+        @PluginSubcommand(name = "give", description = "Gives an amount")
+        public void give(CommandSender sender, String target, int amount) {
+            bound.addAll(Arrays.asList(sender, target, amount));
+        }
+
+        @PluginSubcommand(name = "page", description = "Shows a page")
+        public void page(CommandContext context, @OptionalParameter(defaultValue = "1") int page, @OptionalParameter String filter) {
+            bound.addAll(Arrays.asList(page, filter));
+        }
+
+        @PluginSubcommand(name = "tags", description = "Takes any amount of tags")
+        public void tags(CommandContext context, String[] tags) {
+            bound.add(Arrays.asList(tags));
+        }
+
+        @PluginSubcommand(name = "say", description = "Says something")
+        public void say(CommandContext context, @JoinedParameter String message) {
+            bound.add(message);
+        }
+
+        @PluginSubcommand(name = "paint", description = "Paints in a colour")
+        public void paint(CommandContext context, Colour colour) {
+            bound.add(colour);
+        }
+    }
+
+    @Before
+    public void registerColours() {
+        handler.getResolvers().registerResolver(Colour.class, new Resolver<>("colour", (a, c) -> Colour.valueOf(a.toUpperCase())));
+    }
+
+    @Test
+    public void bindsSenderAndResolvedArguments() {
+        handler.register(new Subcommands());
+        run("give", "Steve", "64");
+        assertEquals(Arrays.asList(console, "Steve", 64), bound);
+        run("give", "Steve");
+        assertEquals(3, bound.size());
+        assertEquals(1, replies.size()); // invalid usage
+    }
+
+    @Test
+    public void bindsOptionalParameters() {
+        handler.register(new Subcommands());
+        run("page");
+        assertEquals(Arrays.asList(1, null), bound);
+        bound.clear();
+        run("page", "3", "red");
+        assertEquals(Arrays.asList(3, "red"), bound);
+    }
+
+    @Test
+    public void bindsRemainingArguments() {
+        handler.register(new Subcommands());
+        run("tags", "a", "b");
+        run("tags");
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Collections.emptyList()), bound);
+        run("say", "hello", "world");
+        assertEquals("hello world", bound.get(2));
+        run("say");
+        assertEquals(3, bound.size());
+        assertEquals(1, replies.size()); // a joined parameter needs a message
+    }
+
+    @Test
+    public void resolversCanBeReplacedAfterSubcommands() {
+        handler.register(new Subcommands());
+        run("paint", "red");
+        handler.getResolvers().registerResolver(Colour.class, new Resolver<>("colour", (a, c) -> Colour.GREEN));
+        run("paint", "red");
+        assertEquals(Arrays.asList(Colour.RED, Colour.GREEN), bound);
+    }
+
+    @Test
+    public void invalidLayoutsAreRejectedOnRegistration() {
+        assertRejected(new Object() {
+            @PluginSubcommand(name = "bad", description = "Tail is not last")
+            public void bad(CommandContext context, String[] tail, int amount) {
+            }
+        });
+        assertRejected(new Object() {
+            @PluginSubcommand(name = "bad", description = "Required after optional")
+            public void bad(CommandContext context, @OptionalParameter String first, String second) {
+            }
+        });
+        assertRejected(new Object() {
+            @PluginSubcommand(name = "bad", description = "Joined but not a string")
+            public void bad(CommandContext context, @JoinedParameter Integer amount) {
+            }
+        });
+        assertRejected(new Object() {
+            @PluginSubcommand(name = "bad", description = "Optional primitive without default")
+            public void bad(CommandContext context, @OptionalParameter int amount) {
+            }
+        });
+    }
+
+    @Test
+    public void missingResolverFailsOnRegistration() {
+        try {
+            new CommandHandler().register(new Subcommands());
+            fail("registered");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().endsWith(Colour.class.getName()));
+        }
+    }
+
+    private void assertRejected(Object holder) {
+        try {
+            handler.register(holder);
+            fail("registered");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private void run(String... args) {
+        handler.onCommand(StandIns.command("test"), console, args);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import io.github.reflxction.commands.CachedTabProvider.Policy;
+import io.github.reflxction.commands.CachedTabProvider.Scope;
+import io.github.reflxction.commands.PluginSubcommand.TabContext;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CachedTabProviderTest {
+
+    private final CommandHandler handler = new CommandHandler();
+    private final Player player = StandIns.player("Steve", StandIns.DISCARD, true);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeClass
+    public static void installServer() {
+        StandIns.install();
+    }
+
+    @Before
+    public void runRefreshesInline() {
+        handler.setTabExecutor(Runnable::run);
+    }
+
+    @Test
+    public void servesCachedTabsWithinTimeToLive() {
+        CachedTabProvider cached = cached(new Policy(1, TimeUnit.HOURS), context -> Collections.singletonList("v" + loads.incrementAndGet()));
+        assertEquals(Collections.singletonList("v1"), cached.getTab(context(player)));
+        assertEquals(Collections.singletonList("v1"), cached.getTab(context(player)));
+        assertEquals(1, loads.get());
+        cached.invalidate();
+        assertEquals(Collections.singletonList("v2"), cached.getTab(context(player)));
+    }
+
+    @Test
+    public void servesStaleTabsWhileRefreshing() {
+        AtomicReference<Runnable> refresh = new AtomicReference<>();
+        handler.setTabExecutor(refresh::set);
+        CachedTabProvider cached = cached(new Policy(0, TimeUnit.SECONDS), context -> Collections.singletonList("v" + loads.incrementAndGet()));
+        assertEquals(Collections.singletonList("v1"), cached.getTab(context(player)));
+        assertEquals(Collections.singletonList("v1"), cached.getTab(context(player))); // stale, refresh scheduled
+        assertEquals(1, loads.get());
+        refresh.getAndSet(null).run();
+        assertEquals(Collections.singletonList("v2"), cached.getTab(context(player)));
+    }
+
+    @Test
+    public void keepsStaleTabsWhenRefreshFails() {
+        CachedTabProvider cached = cached(new Policy(0, TimeUnit.SECONDS), context -> {
+            if (loads.incrementAndGet() > 1) throw new IllegalStateException("expected failure");
+            return Collections.singletonList("v1");
+        });
+        assertEquals(Collections.singletonList("v1"), cached.getTab(context(player)));
+        assertEquals(Collections.singletonList("v1"), cached.getTab(context(player)));
+        assertEquals(Collections.singletonList("v1"), cached.getTab(context(player)));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void concurrentMissesLoadOnce() throws Exception {
+        handler.setTabTimeout(5000);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CachedTabProvider cached = cached(new Policy(1, TimeUnit.HOURS), context -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Collections.singletonList("loaded");
+        });
+        CompletableFuture<List<String>> first = CompletableFuture.supplyAsync(() -> cached.getTab(context(player)));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<List<String>> second = CompletableFuture.supplyAsync(() -> cached.getTab(context(player)));
+        Thread.sleep(50); // let the second request start waiting
+        release.countDown();
+        assertEquals(Collections.singletonList("loaded"), first.get(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("loaded"), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void globalTabsAreLoadedAsConsole() {
+        CachedTabProvider cached = cached(new Policy(1, TimeUnit.HOURS), context -> Collections.singletonList(context.getSender().getName()));
+        assertEquals(Collections.singletonList("CONSOLE"), cached.getTab(context(player)));
+    }
+
+    @Test
+    public void senderTabsAreCachedPerSender() {
+        CachedTabProvider cached = cached(new Policy(1, TimeUnit.HOURS).setScope(Scope.SENDER),
+                context -> Collections.singletonList(context.getSender().getName()));
+        Player alex = StandIns.player("Alex", StandIns.DISCARD, true);
+        assertEquals(Collections.singletonList("Steve"), cached.getTab(context(player)));
+        assertEquals(Collections.singletonList("Alex"), cached.getTab(context(alex)));
+        assertEquals(2, cached.size());
+    }
+
+    private CachedTabProvider cached(Policy policy, PluginSubcommand.TabProvider provider) {
+        return new CachedTabProvider("test", provider, policy);
+    }
+
+    private TabContext context(CommandSender sender) {
+        return new TabContext(new String[]{""}, sender, null, StandIns.command("test"), handler);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CaseInsensitiveIndexTest {
+
+    @Test
+    public void looksUpKeysIgnoringCase() {
+        Map<String, Integer> entries = new HashMap<>();
+        entries.put("home", 1);
+        entries.put("setHome", 2);
+        entries.put("WARP", 3);
+        CaseInsensitiveIndex<Integer> index = new CaseInsensitiveIndex<>(entries);
+        assertEquals(Integer.valueOf(1), index.get("HOME"));
+        assertEquals(Integer.valueOf(2), index.get("sethome"));
+        assertEquals(Integer.valueOf(3), index.get("Warp"));
+        assertNull(index.get("homes"));
+        assertNull(index.get("hom"));
+        assertNull(index.get(""));
+    }
+
+    @Test
+    public void earlierMapsTakePrecedence() {
+        Map<String, String> names = Collections.singletonMap("Home", "name");
+        Map<String, String> aliases = new LinkedHashMap<>();
+        aliases.put("home", "alias");
+        aliases.put("h", "alias");
+        CaseInsensitiveIndex<String> index = new CaseInsensitiveIndex<>(names, aliases);
+        assertEquals("name", index.get("HOME"));
+        assertEquals("alias", index.get("H"));
+    }
+
+    @Test
+    public void smallestKeyWinsWithinAMap() {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("home", "home");
+        entries.put("HOME", "HOME");
+        entries.put("Home", "Home");
+        assertEquals("HOME", new CaseInsensitiveIndex<>(entries).get("home"));
+    }
+
+    @Test
+    public void holdsManyKeys() {
+        Map<String, Integer> entries = new HashMap<>();
+        for (int i = 0; i < 1000; i++) entries.put("command" + i, i);
+        CaseInsensitiveIndex<Integer> index = new CaseInsensitiveIndex<>(entries);
+        for (int i = 0; i < 1000; i++) assertEquals(Integer.valueOf(i), index.get("COMMAND" + i));
+        assertNull(index.get("command1000"));
+        assertNull(new CaseInsensitiveIndex<Integer>(Collections.emptyMap()).get("command"));
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import io.github.reflxction.commands.CommandQueue.Priority;
+import org.bukkit.plugin.Plugin;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandQueueTest {
+
+    private final CommandQueue queue = new CommandQueue();
+    private final AtomicLong time = new AtomicLong(1);
+    private final List<String> ran = new ArrayList<>();
+    private final List<String> rejected = new ArrayList<>();
+
+    @Before
+    public void useManualClock() {
+        queue.setClock(time::get);
+    }
+
+    @Test
+    public void runsByPriority() {
+        submit(Priority.LOW, "low");
+        submit(Priority.NORMAL, "normal");
+        submit(Priority.HIGH, "high");
+        queue.tick();
+        assertEquals(Arrays.asList("high", "normal", "low"), ran);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void stopsAtTheBudget() {
+        queue.setBudget(5, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 3; i++) {
+            String name = "task" + i;
+            queue.submit(Priority.NORMAL, () -> {
+                ran.add(name);
+                advance(3);
+            }, () -> rejected.add(name));
+        }
+        queue.tick();
+        assertEquals(Arrays.asList("task0", "task1"), ran);
+        assertEquals(1, queue.size());
+        queue.tick();
+        assertEquals(3, ran.size());
+    }
+
+    @Test
+    public void rejectsWhenFull() {
+        queue.setMaxSize(1);
+        assertTrue(submit(Priority.HIGH, "first"));
+        assertFalse(submit(Priority.HIGH, "second"));
+        assertEquals(Collections.singletonList("second"), rejected);
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void shedsLowAndDefersNormalWhileOverloaded() {
+        queue.tick();
+        submit(Priority.LOW, "queued low");
+        overload();
+        assertEquals(Collections.singletonList("queued low"), rejected);
+
+        assertFalse(submit(Priority.LOW, "low"));
+        submit(Priority.NORMAL, "normal");
+        submit(Priority.HIGH, "high");
+        tick(50);
+        assertTrue(queue.isOverloaded());
+        assertEquals(Collections.singletonList("high"), ran); // normal is deferred
+        assertEquals(Arrays.asList("queued low", "low"), rejected);
+
+        while (queue.isOverloaded()) tick(50);
+        assertEquals(Arrays.asList("high", "normal"), ran);
+    }
+
+    @Test
+    public void rejectsCommandsWhichWaitedTooLong() {
+        queue.setMaxWait(1, TimeUnit.SECONDS);
+        overload();
+        submit(Priority.NORMAL, "normal");
+        advance(1500);
+        tick(0);
+        assertEquals(Collections.singletonList("normal"), rejected);
+        assertTrue(ran.isEmpty());
+        assertEquals(0, queue.size());
+
+        submit(Priority.HIGH, "high");
+        advance(1500);
+        tick(0);
+        assertEquals(Arrays.asList("normal", "high"), rejected);
+    }
+
+    /**
+     * Ticks the queue slowly until it is overloaded
+     */
+    @Test
+    public void replacedQueuesStopTicking() {
+        StandIns.install();
+        Plugin plugin = StandIns.plugin();
+        CommandHandler handler = new CommandHandler();
+        handler.setPlugin(plugin);
+        CommandQueue first = handler.getQueue();
+        assertTrue(first.isStarted());
+        handler.setQueue(queue);
+        assertFalse(first.isStarted());
+        assertTrue(queue.isStarted());
+        assertEquals(1, StandIns.timers(plugin));
+        handler.setQueue(queue); // the same queue keeps ticking
+        assertTrue(queue.isStarted());
+        queue.stop();
+    }
+
+    private void overload() {
+        while (!queue.isOverloaded()) tick(200);
+    }
+
+    private void tick(long millis) {
+        advance(millis);
+        queue.tick();
+    }
+
+    private void advance(long millis) {
+        time.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private boolean submit(Priority priority, String name) {
+        return queue.submit(priority, () -> ran.add(name), () -> rejected.add(name));
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.bukkit.Bukkit;
+import org.bukkit.permissions.Permission;
+import org.bukkit.permissions.PermissionDefault;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CommandRegistryTest {
+
+    private final CommandHandler handler = new CommandHandler();
+
+    public static class Home {
+
+        @PluginSubcommand(name = "home", description = "Teleports home", aliases = {"h", "house"})
+        public void home(CommandContext context) {
+        }
+    }
+
+    public static class OtherHome {
+
+        @PluginSubcommand(name = "home", description = "Teleports to another home")
+        public void home(CommandContext context) {
+        }
+    }
+
+    public static class Backup {
+
+        @PluginSubcommand(name = "backup", description = "Backs up the world", aliases = {"save"}, queued = true)
+        public void backup(CommandContext context) {
+        }
+    }
+
+    public static class Reload {
+
+        @PluginSubcommand(name = "reload", description = "Reloads the plugin", permission = "registry.admin", permissionAccess = PermissionDefault.TRUE)
+        public void reload(CommandContext context) {
+        }
+    }
+
+    public static class Purge {
+
+        @PluginSubcommand(name = "purge", description = "Purges old data", permission = "registry.admin")
+        public void purge(CommandContext context) {
+        }
+    }
+
+    public static class Declared {
+
+        @PluginSubcommand(name = "declared", description = "Uses a permission from the plugin.yml", permission = "registry.declared")
+        public void declared(CommandContext context) {
+        }
+    }
+
+    @Test
+    public void registeringPublishesNewSnapshot() {
+        Map<String, SubcommandInvokation> before = handler.getCommands();
+        handler.register(new Home());
+        Map<String, SubcommandInvokation> after = handler.getCommands();
+        assertTrue(before.isEmpty());
+        assertEquals(3, after.size());
+        assertSame(after.get("home"), after.get("h"));
+        assertEquals(Collections.singleton("home"), handler.getNamesOnly().keySet());
+    }
+
+    @Test
+    public void unregisterRemovesNameAndAliases() {
+        Home home = new Home();
+        handler.register(home);
+        Map<String, SubcommandInvokation> registered = handler.getCommands();
+        List<SubcommandInvokation> removed = handler.unregister(home);
+        assertEquals(1, removed.size());
+        assertTrue(handler.getCommands().isEmpty());
+        assertTrue(handler.getNamesOnly().isEmpty());
+        assertEquals(3, registered.size()); // earlier snapshots are not modified
+    }
+
+    @Test
+    public void unregisterRemovesAliasesOfOverriddenSubcommand() {
+        Home home = new Home();
+        OtherHome other = new OtherHome();
+        handler.register(home);
+        handler.register(other); // takes over the name, the aliases still run the first one
+        SubcommandInvokation first = handler.getCommands().get("h");
+        assertFalse(first == handler.getCommands().get("home"));
+
+        assertEquals(Collections.singletonList(first), handler.unregister(home));
+        assertNull(handler.getCommands().get("h"));
+        assertNull(handler.getCommands().get("house"));
+        assertEquals(Collections.singleton("home"), handler.getCommands().keySet());
+
+        handler.unregister(other);
+        assertTrue(handler.getCommands().isEmpty());
+    }
+
+    @Test
+    public void unregisterOfUnknownHolderChangesNothing() {
+        handler.register(new Home());
+        Map<String, SubcommandInvokation> registered = handler.getCommands();
+        assertTrue(handler.unregister(new Home()).isEmpty());
+        assertSame(registered, handler.getCommands());
+    }
+
+    @Test
+    public void unregisterRemovesUnusedPermissions() {
+        StandIns.install();
+        Reload reload = new Reload();
+        Purge purge = new Purge();
+        handler.register(reload);
+        handler.register(purge); // reuses the permission added by reload
+        Permission added = Bukkit.getPluginManager().getPermission("registry.admin");
+        assertEquals(PermissionDefault.TRUE, added.getDefault());
+        assertSame(added, handler.getSubcommand("purge").permission);
+
+        handler.unregister(reload);
+        assertSame(added, Bukkit.getPluginManager().getPermission("registry.admin")); // purge still uses it
+        handler.unregister(purge);
+        assertNull(Bukkit.getPluginManager().getPermission("registry.admin"));
+
+        handler.register(purge); // registered again with its own default
+        assertEquals(PermissionDefault.OP, Bukkit.getPluginManager().getPermission("registry.admin").getDefault());
+        handler.unregister(purge);
+    }
+
+    @Test
+    public void unregisterKeepsDeclaredPermissions() {
+        StandIns.install();
+        Permission declared = new Permission("registry.declared", PermissionDefault.FALSE);
+        Bukkit.getPluginManager().addPermission(declared);
+        Declared holder = new Declared();
+        handler.register(holder);
+        handler.unregister(holder);
+        assertSame(declared, Bukkit.getPluginManager().getPermission("registry.declared"));
+        Bukkit.getPluginManager().removePermission(declared);
+    }
+
+    @Test
+    public void settingsArePublishedAsReplacement() {
+        ParentCommand command = ParentCommand.create().contain(new Backup());
+        CommandHandler backups = command.getCommandHandler();
+        Map<String, SubcommandInvokation> before = backups.getCommands();
+        SubcommandInvokation queued = before.get("backup");
+        assertTrue(queued.queued);
+
+        command.setAsync(true, "backup");
+        SubcommandInvokation async = backups.getCommands().get("backup");
+        assertTrue(async.async);
+        assertFalse(async.queued);
+        assertSame(async, backups.getCommands().get("save"));
+        assertSame(async, backups.getNamesOnly().get("backup"));
+        assertEquals(queued.ordinal, async.ordinal);
+        assertSame(queued, before.get("backup")); // earlier snapshots keep the old settings
+        assertTrue(queued.queued);
+
+        command.setCooldown("backup", 5, TimeUnit.SECONDS).setQueued(true, CommandQueue.Priority.HIGH, "backup");
+        SubcommandInvokation requeued = backups.getCommands().get("backup");
+        assertFalse(requeued.async);
+        assertTrue(requeued.queued);
+        assertEquals(CommandQueue.Priority.HIGH, requeued.priority);
+        assertNotNull(requeued.rateLimiter);
+        assertEquals(Collections.singletonList(requeued), backups.unregister(requeued.holder));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void settingsOfUnknownSubcommandAreRejected() {
+        ParentCommand.create().contain(new Backup()).setAsync(true, "restore");
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FuzzyIndexTest {
+
+    @Test
+    public void requiresCharactersInOrder() {
+        assertEquals(FuzzyIndex.NO_MATCH, FuzzyIndex.score("warp", "pw"));
+        assertEquals(FuzzyIndex.NO_MATCH, FuzzyIndex.score("warp", "warpz"));
+        assertTrue(FuzzyIndex.score("WaRp", "wp") > FuzzyIndex.NO_MATCH); // case-insensitive
+    }
+
+    @Test
+    public void ranksPrefixesFirst() {
+        assertEquals(Arrays.asList("gamemode", "omega", "megagame"), FuzzyIndex.search(Arrays.asList("megagame", "omega", "gamemode"), "ga", 10));
+    }
+
+    @Test
+    public void ranksWordStartsAboveScatteredMatches() {
+        assertEquals(Arrays.asList("setHome", "set_home", "seashore"), FuzzyIndex.search(Arrays.asList("seashore", "set_home", "setHome"), "sh", 10));
+        assertEquals(Arrays.asList("tpHere", "toothbrush"), FuzzyIndex.search(Arrays.asList("toothbrush", "tpHere"), "th", 10));
+    }
+
+    @Test
+    public void prefersShorterCompletionsOnTies() {
+        assertEquals(Arrays.asList("tp", "tpa", "tphere"), FuzzyIndex.search(Arrays.asList("tphere", "tpa", "tp"), "tp", 10));
+    }
+
+    @Test
+    public void appliesTheLimitAndRemovesDuplicates() {
+        List<String> completions = Arrays.asList("home", "home", "homes", "sethome");
+        assertEquals(Arrays.asList("home", "homes"), FuzzyIndex.search(completions, "home", 2));
+        assertEquals(Arrays.asList("home", "homes"), new FuzzyIndex(completions).search("home", 2));
+        assertTrue(FuzzyIndex.search(completions, "home", 0).isEmpty());
+    }
+
+    @Test
+    public void indexMatchesAFullScan() {
+        Random random = new Random(7);
+        List<String> completions = new ArrayList<>();
+        for (int i = 0; i < 300; i++) completions.add(word(random, 3 + random.nextInt(8)));
+        FuzzyIndex index = new FuzzyIndex(completions);
+        for (int n = 0; n < 300; n++) {
+            String query = word(random, random.nextInt(4));
+            assertEquals(query, FuzzyIndex.search(completions, query, 20), index.search(query, 20));
+        }
+    }
+
+    @Test
+    public void isOfTheSourceList() {
+        List<String> completions = Collections.singletonList("home");
+        FuzzyIndex index = new FuzzyIndex(completions);
+        assertTrue(index.isOf(completions));
+        assertFalse(index.isOf(new ArrayList<>(completions)));
+    }
+
+    /**
+     * Returns a random word over a small alphabet, so that queries often match
+     */
+    private static String word(Random random, int length) {
+        String alphabet = "abcdefgHIJ_1";
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        return new String(chars);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import io.github.reflxction.commands.LatencyHistogram.Snapshot;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesHaveTheirOwnBuckets() {
+        for (int value = 0; value < 8; value++) {
+            assertEquals(value, LatencyHistogram.bucket(value));
+            assertEquals(value, LatencyHistogram.upperBound(value));
+        }
+    }
+
+    @Test
+    public void powersOfTwoAreSplitLinearly() {
+        assertEquals(8, LatencyHistogram.bucket(8));
+        assertEquals(8, LatencyHistogram.upperBound(8));
+        assertEquals(15, LatencyHistogram.bucket(15));
+        assertEquals(15, LatencyHistogram.upperBound(15));
+        assertEquals(16, LatencyHistogram.bucket(16));
+        assertEquals(16, LatencyHistogram.bucket(17)); // buckets are two wide from 16
+        assertEquals(17, LatencyHistogram.upperBound(16));
+        assertEquals(17, LatencyHistogram.bucket(18));
+        assertEquals(31, LatencyHistogram.upperBound(LatencyHistogram.bucket(31)));
+        assertEquals(LatencyHistogram.bucket(31) + 1, LatencyHistogram.bucket(32));
+    }
+
+    @Test
+    public void largestValueFitsTheLastUsedBucket() {
+        int bucket = LatencyHistogram.bucket(Long.MAX_VALUE);
+        assertEquals(LatencyHistogram.BUCKETS - 1, bucket);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(bucket));
+        assertEquals(bucket, LatencyHistogram.bucket(Long.MAX_VALUE - (1L << 58)));
+        assertTrue(LatencyHistogram.upperBound(bucket - 1) < Long.MAX_VALUE - (1L << 58));
+    }
+
+    @Test
+    public void everyValueIsWithinItsBucket() {
+        for (long value = 0; value < 1 << 16; value++) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(value <= LatencyHistogram.upperBound(bucket));
+            if (bucket > 0) assertTrue(value > LatencyHistogram.upperBound(bucket - 1));
+        }
+        for (int shift = 16; shift < 63; shift++) {
+            long value = (1L << shift) + 12345;
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(value <= LatencyHistogram.upperBound(bucket));
+            assertTrue(value > LatencyHistogram.upperBound(bucket - 1));
+            assertTrue(LatencyHistogram.upperBound(bucket) - value <= value / 8); // 12.5% relative precision
+        }
+    }
+
+    @Test
+    public void percentilesAreCappedAtTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 100; value++) histogram.record(value * 1000L);
+        histogram.record(-5); // recorded as 0
+        Snapshot snapshot = histogram.snapshot();
+        assertEquals(101, snapshot.getCount());
+        assertEquals(5_050_000, snapshot.getSum());
+        assertEquals(100_000, snapshot.getMax());
+
+        assertEquals(0, snapshot.getPercentile(0));
+        long median = snapshot.getPercentile(50);
+        assertTrue(median >= 50_000 && median <= 50_000 * 9 / 8);
+        long p99 = snapshot.getPercentile(99);
+        assertTrue(p99 >= 99_000 && p99 <= 100_000);
+        assertEquals(100_000, snapshot.getPercentile(100));
+        assertEquals(0, new LatencyHistogram().snapshot().getPercentile(50));
+    }
+
+    @Test
+    public void countsAreCumulativeByBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(7);
+        histogram.record(8);
+        histogram.record(16);
+        histogram.record(17);
+        histogram.record(Long.MAX_VALUE);
+        Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.countAtOrBelow(6));
+        assertEquals(1, snapshot.countAtOrBelow(7));
+        assertEquals(2, snapshot.countAtOrBelow(8));
+        assertEquals(2, snapshot.countAtOrBelow(16)); // 16 shares its bucket with 17
+        assertEquals(4, snapshot.countAtOrBelow(17));
+        assertEquals(4, snapshot.countAtOrBelow(Long.MAX_VALUE - 1));
+        assertEquals(5, snapshot.countAtOrBelow(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import io.github.reflxction.commands.MethodSubcommand.MethodInvoker;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MethodInvokerTest {
+
+    private static final List<String> STATIC_CALLS = new ArrayList<>();
+
+    private final List<String> calls = new ArrayList<>();
+
+    public void first(String value) {
+        calls.add("first " + value);
+    }
+
+    public void second(String value) {
+        calls.add("second " + value);
+    }
+
+    public void seven(String a, String b, String c, String d, String e, String f, int g) {
+        calls.add(String.join(" ", a, b, c, d, e, f, String.valueOf(g)));
+    }
+
+    private long primitives(int i, long l, double d, boolean b, char c) {
+        calls.add(i + " " + l + " " + d + " " + b + " " + c);
+        return l;
+    }
+
+    static double staticMethod(Object value) {
+        STATIC_CALLS.add(String.valueOf(value));
+        return 0;
+    }
+
+    void failing() throws IOException {
+        throw new IOException("expected failure");
+    }
+
+    public interface Defaulted {
+        default void run(List<String> calls) {
+            calls.add("default");
+        }
+    }
+
+    @Test
+    public void invokesEachMethodOfTheSameArity() throws Throwable {
+        invoker("first", String.class).invoke(new Object[]{"a"});
+        invoker("second", String.class).invoke(new Object[]{"b"});
+        assertEquals("[first a, second b]", calls.toString());
+    }
+
+    @Test
+    public void invokesMethodsWithManyParameters() throws Throwable {
+        invoker("seven", String.class, String.class, String.class, String.class, String.class, String.class, int.class)
+                .invoke(new Object[]{"a", "b", "c", "d", "e", "f", 7});
+        assertEquals("[a b c d e f 7]", calls.toString());
+    }
+
+    @Test
+    public void unboxesPrimitivesAndDiscardsResults() throws Throwable {
+        invoker("primitives", int.class, long.class, double.class, boolean.class, char.class).invoke(new Object[]{1, 2L, 3.5, true, 'x'});
+        assertEquals("[1 2 3.5 true x]", calls.toString());
+    }
+
+    @Test
+    public void invokesStaticAndInterfaceMethods() throws Throwable {
+        MethodSubcommand.createInvoker(MethodInvokerTest.class.getDeclaredMethod("staticMethod", Object.class), null).invoke(new Object[]{"static"});
+        assertTrue(STATIC_CALLS.contains("static"));
+        MethodSubcommand.createInvoker(Defaulted.class.getMethod("run", List.class), new Defaulted() {
+        }).invoke(new Object[]{calls});
+        assertEquals("[default]", calls.toString());
+    }
+
+    @Test
+    public void propagatesExceptionsUnwrapped() throws Throwable {
+        try {
+            invoker("failing").invoke(new Object[0]);
+            fail("no exception");
+        } catch (IOException e) {
+            assertEquals("expected failure", e.getMessage());
+        }
+        try {
+            invoker("first", String.class).invoke(new Object[]{42});
+            fail("no exception");
+        } catch (ClassCastException expected) {
+        }
+    }
+
+    private MethodInvoker invoker(String name, Class<?>... parameters) throws NoSuchMethodException {
+        Method method = MethodInvokerTest.class.getDeclaredMethod(name, parameters);
+        return MethodSubcommand.createInvoker(method, this);
+    }
+}
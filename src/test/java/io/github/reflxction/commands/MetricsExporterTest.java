@@ -0,0 +1,112 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import io.github.reflxction.commands.CommandMetrics.CacheResult;
+import io.github.reflxction.commands.CommandMetrics.Outcome;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsExporterTest {
+
+    /**
+     * A command name which needs every escape of the text format
+     */
+    private static final String COMMAND = "say \"hi\" \\ now\nplease";
+    private static final String ESCAPED = "say \\\"hi\\\" \\\\ now\\nplease";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final CommandHandler handler = new CommandHandler();
+    private final CommandMetrics metrics = new CommandMetrics();
+
+    @PluginSubcommand(name = "give", description = "Gives an item")
+    public void give(CommandContext context) {
+    }
+
+    @Before
+    public void record() {
+        handler.register(this);
+        metrics.record(handler.getSubcommand("give"), Outcome.SUCCESS, 3_000);
+        metrics.record(handler.getSubcommand("give"), Outcome.SUCCESS, 2_000_000);
+        metrics.record(handler.getSubcommand("give"), Outcome.NO_PERMISSION, 70_000);
+        metrics.recordUnknown();
+        metrics.recordResolver("int", 40_000);
+        metrics.recordTabCache("players", CacheResult.HIT);
+    }
+
+    @Test
+    public void escapesLabelValues() throws IOException {
+        List<String> lines = export();
+        assertTrue(lines.contains("bukkitcommands_unknown_total{command=\"" + ESCAPED + "\"} 1"));
+        assertTrue(lines.contains("bukkitcommands_invocations_total{command=\"" + ESCAPED + "\",subcommand=\"give\",outcome=\"success\"} 2"));
+        assertTrue(lines.contains("bukkitcommands_invocations_total{command=\"" + ESCAPED + "\",subcommand=\"give\",outcome=\"no_permission\"} 1"));
+        assertTrue(lines.contains("bukkitcommands_tab_cache_lookups_total{command=\"" + ESCAPED + "\",provider=\"players\",result=\"hit\"} 1"));
+        for (String line : lines)
+            assertTrue(line, line.startsWith("#") || line.contains("{command=\"" + ESCAPED + "\""));
+    }
+
+    @Test
+    public void histogramBucketsAreCumulative() throws IOException {
+        List<String> lines = export();
+        String labels = "command=\"" + ESCAPED + "\",subcommand=\"give\"";
+        assertTrue(lines.contains("bukkitcommands_latency_seconds_bucket{" + labels + ",le=\"1.0E-5\"} 1"));
+        assertTrue(lines.contains("bukkitcommands_latency_seconds_bucket{" + labels + ",le=\"5.0E-5\"} 1"));
+        assertTrue(lines.contains("bukkitcommands_latency_seconds_bucket{" + labels + ",le=\"1.0E-4\"} 2"));
+        assertTrue(lines.contains("bukkitcommands_latency_seconds_bucket{" + labels + ",le=\"0.001\"} 2"));
+        assertTrue(lines.contains("bukkitcommands_latency_seconds_bucket{" + labels + ",le=\"0.0025\"} 3"));
+        assertTrue(lines.contains("bukkitcommands_latency_seconds_bucket{" + labels + ",le=\"+Inf\"} 3"));
+        assertTrue(lines.contains("bukkitcommands_latency_seconds_count{" + labels + "} 3"));
+        assertTrue(lines.contains("bukkitcommands_latency_seconds_sum{" + labels + "} " + 2_073_000 / 1e9));
+        assertTrue(lines.contains("bukkitcommands_resolver_seconds_bucket{command=\"" + ESCAPED + "\",type=\"int\",le=\"5.0E-5\"} 1"));
+        assertEquals(1, lines.stream().filter(line -> line.equals("# TYPE bukkitcommands_latency_seconds histogram")).count());
+    }
+
+    @Test
+    public void fileIsReplacedWithoutLeftovers() throws IOException {
+        File file = new File(folder.getRoot(), "textfile/bukkitcommands.prom");
+        MetricsExporter exporter = new MetricsExporter(file).add(COMMAND, metrics);
+        exporter.write();
+        metrics.recordUnknown();
+        exporter.write();
+        assertEquals(Collections.singletonList("bukkitcommands.prom"), Arrays.asList(file.getParentFile().list()));
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(export(), lines);
+        assertTrue(lines.contains("bukkitcommands_unknown_total{command=\"" + ESCAPED + "\"} 2"));
+    }
+
+    private List<String> export() throws IOException {
+        StringWriter out = new StringWriter();
+        new MetricsExporter(new File(folder.getRoot(), "unused.prom")).add(COMMAND, metrics).write(out);
+        assertTrue(out.toString().endsWith("\n"));
+        return Arrays.asList(out.toString().split("\n"));
+    }
+}
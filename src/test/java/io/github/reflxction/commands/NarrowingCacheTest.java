@@ -0,0 +1,137 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.plugin.Plugin;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NarrowingCacheTest {
+
+    private static final List<String> PLAYERS = Arrays.asList("Sam", "Steve", "Stella");
+
+    private final CommandHandler handler = new CommandHandler();
+    private final NarrowingCache cache = handler.getNarrowingCache();
+    private final Player player = StandIns.player("Steve", StandIns.DISCARD, true);
+    private SubcommandInvokation give;
+
+    @BeforeClass
+    public static void installServer() {
+        StandIns.install();
+    }
+
+    @Before
+    public void register() {
+        handler.register(this);
+        give = handler.getCommands().get("give");
+    }
+
+    @PluginSubcommand(name = "give", description = "Gives an item", parameters = "<player> <item>")
+    public void give(CommandContext context) {
+    }
+
+    @Test
+    public void narrowsCachedCompletions() {
+        cache.put(player, give, new String[]{"give", "S"}, PLAYERS);
+        assertEquals(PLAYERS, cache.get(player, give, new String[]{"give", "S"}));
+        assertEquals(Arrays.asList("Steve", "Stella"), cache.get(player, give, new String[]{"give", "St"}));
+        assertEquals(Collections.singletonList("Stella"), cache.get(player, give, new String[]{"give", "Stel"}));
+        assertNull(cache.get(player, give, new String[]{"give", "A"})); // not an extension of the cached prefix
+    }
+
+    @Test
+    public void otherArgumentsAreNotNarrowed() {
+        cache.put(player, give, new String[]{"give", "S"}, PLAYERS);
+        assertNull(cache.get(player, give, new String[]{"give", "Steve", "S"}));
+        assertNull(cache.get(StandIns.player("Alex", StandIns.DISCARD, true), give, new String[]{"give", "S"}));
+    }
+
+    @Test
+    public void registryChangesDiscardEntries() {
+        cache.put(player, give, new String[]{"give", "S"}, PLAYERS);
+        handler.register(new Object() {
+            @PluginSubcommand(name = "take", description = "Takes an item")
+            public void take(CommandContext context) {
+            }
+        });
+        assertNull(cache.get(player, give, new String[]{"give", "St"}));
+
+        cache.put(player, give, new String[]{"give", "S"}, PLAYERS);
+        handler.unregister(this);
+        assertNull(cache.get(player, give, new String[]{"give", "St"}));
+    }
+
+    @Test
+    public void expiredAndQuitEntriesAreDiscarded() throws InterruptedException {
+        cache.put(player, give, new String[]{"give", "S"}, PLAYERS);
+        cache.onPlayerQuit(new PlayerQuitEvent(player, ""));
+        assertNull(cache.get(player, give, new String[]{"give", "S"}));
+
+        cache.setLifetime(1, TimeUnit.MILLISECONDS);
+        cache.put(player, give, new String[]{"give", "S"}, PLAYERS);
+        Thread.sleep(5);
+        assertNull(cache.get(player, give, new String[]{"give", "S"}));
+    }
+
+    @Test
+    public void expiredEntriesAreSweptWithoutAPlugin() throws InterruptedException {
+        cache.setLifetime(50, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 1000; i++)
+            cache.put(StandIns.player("Player" + i, StandIns.DISCARD, true), give, new String[]{"give", "S"}, PLAYERS);
+        assertTrue(cache.size() > 0);
+        Thread.sleep(100);
+        cache.put(player, give, new String[]{"give", "S"}, PLAYERS);
+        assertEquals(1, cache.size()); // every other sender expired and never asked again
+        assertEquals(PLAYERS, cache.get(player, give, new String[]{"give", "S"}));
+    }
+
+    @Test
+    public void sweeperFollowsPluginLifecycle() {
+        Plugin plugin = StandIns.plugin();
+        handler.setPlugin(plugin);
+        cache.put(player, give, new String[]{"give", "S"}, PLAYERS);
+        assertEquals(1, StandIns.timers(plugin));
+
+        cache.onPluginDisable(new PluginDisableEvent(StandIns.plugin())); // another plugin
+        assertEquals(1, StandIns.timers(plugin));
+        cache.onPluginDisable(new PluginDisableEvent(plugin));
+        assertEquals(0, StandIns.timers(plugin));
+        assertNull(cache.get(player, give, new String[]{"give", "S"}));
+
+        cache.put(player, give, new String[]{"give", "S"}, PLAYERS); // enabled again
+        assertEquals(1, StandIns.timers(plugin));
+        Plugin other = StandIns.plugin();
+        handler.setPlugin(other);
+        assertEquals(0, StandIns.timers(plugin));
+        cache.put(player, give, new String[]{"give", "S"}, PLAYERS);
+        assertEquals(1, StandIns.timers(other));
+        cache.setLifetime(0, TimeUnit.SECONDS);
+        assertEquals(0, StandIns.timers(other));
+    }
+}
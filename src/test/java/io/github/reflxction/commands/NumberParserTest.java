@@ -0,0 +1,135 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.junit.Test;
+
+import java.text.ParsePosition;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NumberParserTest {
+
+    @Test
+    public void parsesSignedIntegers() {
+        assertParsed(0, "0");
+        assertParsed(42, "42");
+        assertParsed(42, "+42");
+        assertParsed(-42, "-42");
+        assertParsed(7, "007");
+        assertParsed(Long.MAX_VALUE, "9223372036854775807");
+        assertParsed(Long.MIN_VALUE, "-9223372036854775808");
+    }
+
+    @Test
+    public void reportsTheFirstInvalidCharacter() {
+        assertInvalid(0, "");
+        assertInvalid(1, "-");
+        assertInvalid(1, "+");
+        assertInvalid(0, "a1");
+        assertInvalid(2, "12a3");
+        assertInvalid(1, "1.5");
+        assertInvalid(1, "1 ");
+        assertInvalid(1, "--1");
+        assertInvalid(0, "\u0661"); // non-ASCII digits are not accepted
+    }
+
+    @Test
+    public void reportsTheDigitWhichOverflows() {
+        assertInvalid(18, "9223372036854775808");
+        assertInvalid(19, "-9223372036854775809");
+        assertInvalid(19, "92233720368547758070");
+        assertInvalid(19, "+99999999999999999999");
+    }
+
+    @Test
+    public void parsesFromThePositionIndex() {
+        ParsePosition position = new ParsePosition(4);
+        assertEquals(-15, NumberParser.parseLong("page-15", position));
+        assertEquals(7, position.getIndex());
+        position = new ParsePosition(7);
+        NumberParser.parseLong("page-15", position);
+        assertEquals(7, position.getErrorIndex());
+    }
+
+    @Test
+    public void checksRanges() {
+        ParsePosition position = new ParsePosition(0);
+        assertEquals(127, NumberParser.parseLong("127", Byte.MIN_VALUE, Byte.MAX_VALUE, position));
+        assertEquals(-1, position.getErrorIndex());
+        position = new ParsePosition(0);
+        assertEquals(0, NumberParser.parseLong("128", Byte.MIN_VALUE, Byte.MAX_VALUE, position));
+        assertEquals(0, position.getErrorIndex());
+        position = new ParsePosition(0);
+        NumberParser.parseLong("12x", Byte.MIN_VALUE, Byte.MAX_VALUE, position);
+        assertEquals(2, position.getErrorIndex()); // the parse error is kept
+    }
+
+    @Test
+    public void agreesWithLongParseLong() {
+        Random random = new Random(11);
+        String alphabet = "0123456789+-x";
+        for (int n = 0; n < 20000; n++) {
+            StringBuilder s = new StringBuilder();
+            for (int length = random.nextInt(22); length > 0; length--) {
+                // mostly digits, to reach the overflow boundary often
+                s.append(random.nextInt(8) == 0 ? alphabet.charAt(10 + random.nextInt(3)) : alphabet.charAt(random.nextInt(10)));
+            }
+            String input = s.toString();
+            ParsePosition position = new ParsePosition(0);
+            long value = NumberParser.parseLong(input, position);
+            try {
+                assertEquals(input, Long.parseLong(input), value);
+                assertEquals(input, -1, position.getErrorIndex());
+            } catch (NumberFormatException e) {
+                assertTrue(input, position.getErrorIndex() >= 0);
+            }
+        }
+    }
+
+    @Test
+    public void recognisesPlainDecimals() {
+        for (String valid : new String[]{"1", "-1", "+1", "2.5", ".5", "5.", "1e3", "1E-3", "-2.5e+10"})
+            assertTrue(valid, NumberParser.isDecimal(valid));
+        for (String invalid : new String[]{"", "-", ".", "e3", "1e", "1e+", "0x10", "1f", "1d", " 1", "1 ", "NaN", "Infinity", "1.2.3", "1,5"})
+            assertFalse(invalid, NumberParser.isDecimal(invalid));
+    }
+
+    @Test
+    public void parsesDecimals() {
+        assertEquals(2.5, NumberParser.parseDouble("2.5"), 0);
+        assertEquals(-1000, NumberParser.parseDouble("-1e3"), 0);
+        assertTrue(Double.isNaN(NumberParser.parseDouble("1e400"))); // too large
+        assertTrue(Double.isNaN(NumberParser.parseDouble("Infinity")));
+        assertTrue(Double.isNaN(NumberParser.parseDouble("0x1p3")));
+    }
+
+    private static void assertParsed(long expected, String s) {
+        ParsePosition position = new ParsePosition(0);
+        assertEquals(s, expected, NumberParser.parseLong(s, position));
+        assertEquals(s, -1, position.getErrorIndex());
+        assertEquals(s, s.length(), position.getIndex());
+    }
+
+    private static void assertInvalid(int errorIndex, String s) {
+        ParsePosition position = new ParsePosition(0);
+        assertEquals(s, 0, NumberParser.parseLong(s, position));
+        assertEquals(s, errorIndex, position.getErrorIndex());
+    }
+}
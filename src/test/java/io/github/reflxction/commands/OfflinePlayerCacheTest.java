@@ -0,0 +1,137 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.plugin.Plugin;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class OfflinePlayerCacheTest {
+
+    @BeforeClass
+    public static void installServer() {
+        StandIns.install();
+    }
+
+    @Test
+    public void lookupsCompleteAndAreCached() {
+        OfflinePlayerCache cache = new OfflinePlayerCache();
+        List<CompletableFuture<OfflinePlayer>> futures = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) futures.add(cache.lookup("Lookup" + i));
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals("Lookup" + i, futures.get(i).join().getName());
+            assertNotNull(cache.getCached("lookup" + i));
+        }
+    }
+
+    @Test
+    public void persistsOnlinePlayersAndForgetsChangedNames() {
+        Plugin plugin = StandIns.plugin();
+        Player seeded = StandIns.join("Seeded", StandIns.DISCARD);
+        OfflinePlayerCache first = activate(plugin);
+        StandIns.quit(new CommandHandler(), seeded);
+        UUID uuid = UUID.randomUUID();
+        join(first, "OldName", uuid);
+        join(first, "NewName", uuid);
+        assertEquals(Collections.emptyList(), first.complete("old"));
+        assertEquals(Collections.singletonList("NewName"), first.complete("new"));
+        first.lookup("FirstBarrier").join(); // runs after the queued appends
+
+        OfflinePlayerCache second = activate(plugin);
+        second.lookup("SecondBarrier").join(); // runs after the log is loaded
+        assertEquals(Collections.singletonList("Seeded"), second.complete("seeded"));
+        assertEquals(Collections.emptyList(), second.complete("old"));
+        assertEquals(Collections.singletonList("NewName"), second.complete("new"));
+    }
+
+    @Test
+    public void compactsLogOfRenamedPlayer() {
+        Plugin plugin = StandIns.plugin();
+        OfflinePlayerCache first = activate(plugin);
+        UUID uuid = UUID.randomUUID();
+        for (int i = 0; i < 200; i++) join(first, "Renamed" + i, uuid);
+        first.lookup("FirstBarrier").join();
+        File log = new File(plugin.getDataFolder(), "player-names.dat");
+        long length = log.length();
+
+        OfflinePlayerCache second = activate(plugin);
+        second.lookup("SecondBarrier").join(); // runs after the log is loaded and compacted
+        assertTrue("log was not compacted", log.length() < length / 10);
+        assertEquals(Collections.singletonList("Renamed199"), second.complete("renamed"));
+
+        OfflinePlayerCache third = activate(plugin);
+        third.lookup("ThirdBarrier").join();
+        assertEquals(Collections.singletonList("Renamed199"), third.complete("renamed"));
+    }
+
+    @Test
+    public void disablingThePluginSavesQueuedNames() throws IOException {
+        AtomicBoolean enabled = new AtomicBoolean(true);
+        Plugin plugin = StandIns.plugin(enabled::get);
+        OfflinePlayerCache cache = activate(plugin);
+        File log = new File(plugin.getDataFolder(), "player-names.dat");
+        for (int i = 0; i < 100; i++) join(cache, "Queued" + i, UUID.randomUUID());
+        enabled.set(false);
+        cache.onPluginDisable(new PluginDisableEvent(plugin)); // waits for the queued appends
+        assertTrue(read(log).endsWith("Queued99"));
+        join(cache, "WhileDisabled", UUID.randomUUID());
+
+        enabled.set(true);
+        cache.complete(""); // loads the log again
+        join(cache, "Reenabled", UUID.randomUUID());
+        enabled.set(false);
+        cache.onPluginDisable(new PluginDisableEvent(plugin));
+        String written = read(log);
+        assertTrue(written.endsWith("Reenabled"));
+        assertFalse(written.contains("WhileDisabled"));
+        assertEquals(100, cache.complete("queued").size());
+    }
+
+    private static OfflinePlayerCache activate(Plugin plugin) {
+        OfflinePlayerCache cache = new OfflinePlayerCache();
+        cache.setPlugin(plugin);
+        cache.complete(""); // loads the log
+        return cache;
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static void join(OfflinePlayerCache cache, String name, UUID uuid) {
+        cache.onPlayerJoin(new PlayerJoinEvent(StandIns.player(name, uuid, StandIns.DISCARD, true), ""));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.plugin.Plugin;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PermissionSnapshotsTest {
+
+    private final AtomicBoolean permitted = new AtomicBoolean(true);
+    private final List<String> replies = new ArrayList<>();
+    private final Player player = StandIns.player("Steve", UUID.randomUUID(), replies::add, permitted::get);
+    private CommandHandler handler;
+    private SubcommandInvokation secret;
+    private int runs;
+
+    @BeforeClass
+    public static void installServer() {
+        StandIns.install();
+    }
+
+    @Before
+    public void register() {
+        handler = new CommandHandler();
+        handler.register(this);
+        secret = handler.getCommands().get("secret");
+    }
+
+    @PluginSubcommand(name = "secret", description = "Requires a permission", permission = "test.secret")
+    public void secret(CommandContext context) {
+        runs++;
+    }
+
+    @Test
+    public void snapshotIsReusedUntilInvalidated() {
+        PermissionSnapshots snapshots = handler.getPermissions();
+        assertTrue(snapshots.test(player, secret));
+        permitted.set(false);
+        assertTrue(snapshots.test(player, secret));
+        snapshots.invalidate(player);
+        assertFalse(snapshots.test(player, secret));
+    }
+
+    @Test
+    public void registryChangesDiscardSnapshots() {
+        PermissionSnapshots snapshots = handler.getPermissions();
+        assertTrue(snapshots.test(player, secret));
+        permitted.set(false);
+        Object other = new Object() {
+            @PluginSubcommand(name = "other", description = "Another command")
+            public void other(CommandContext context) {
+            }
+        };
+        handler.register(other);
+        assertFalse(snapshots.test(player, secret));
+        permitted.set(true);
+        handler.unregister(other);
+        assertTrue(snapshots.test(player, secret));
+    }
+
+    @Test
+    public void zeroLifetimeChecksDirectly() {
+        handler.setPermissionCacheLifetime(0, TimeUnit.SECONDS);
+        assertTrue(handler.getPermissions().test(player, secret));
+        permitted.set(false);
+        assertFalse(handler.getPermissions().test(player, secret));
+    }
+
+    @Test
+    public void disablingThePluginStopsSnapshots() {
+        AtomicBoolean enabled = new AtomicBoolean(true);
+        Plugin plugin = StandIns.plugin(enabled::get);
+        handler.setPlugin(plugin);
+        PermissionSnapshots snapshots = handler.getPermissions();
+        assertTrue(snapshots.test(player, secret));
+        permitted.set(false);
+        assertTrue(snapshots.test(player, secret));
+
+        enabled.set(false);
+        snapshots.onPluginDisable(new PluginDisableEvent(plugin));
+        assertFalse(snapshots.test(player, secret)); // checked directly while not listening
+        permitted.set(true);
+        assertTrue(snapshots.test(player, secret));
+
+        enabled.set(true);
+        assertTrue(snapshots.test(player, secret)); // listening again
+        permitted.set(false);
+        assertTrue(snapshots.test(player, secret));
+        handler.setPlugin(StandIns.plugin());
+        assertFalse(snapshots.test(player, secret));
+    }
+
+    @Test
+    public void executionIgnoresStaleSnapshot() {
+        handler.onCommand(StandIns.command("test"), player, new String[]{"secret"});
+        assertEquals(1, runs);
+        assertTrue(handler.getPermissions().test(player, secret)); // snapshot taken while permitted
+        permitted.set(false);
+        handler.onCommand(StandIns.command("test"), player, new String[]{"secret"});
+        assertEquals(1, runs);
+        assertEquals(1, replies.size()); // the no permission message
+    }
+}
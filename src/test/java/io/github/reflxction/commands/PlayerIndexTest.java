@@ -0,0 +1,115 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.plugin.Plugin;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PlayerIndexTest {
+
+    private final CommandHandler handler = new CommandHandler();
+    private final PlayerIndex index = new PlayerIndex();
+    private final AtomicBoolean enabled = new AtomicBoolean(true);
+    private final Plugin plugin = StandIns.plugin(enabled::get);
+    private final List<Player> joined = new ArrayList<>();
+
+    @BeforeClass
+    public static void installServer() {
+        StandIns.install();
+    }
+
+    @After
+    public void quitAll() {
+        for (Player player : joined) StandIns.quit(handler, player);
+    }
+
+    @Test
+    public void indexesOnlinePlayersAndJoins() {
+        Player steve = join("IndexSteve");
+        index.setPlugin(plugin);
+        assertTrue(index.isAvailable());
+        assertSame(steve, index.getExact("indexsteve"));
+        Player stella = join("IndexStella");
+        index.onPlayerJoin(new PlayerJoinEvent(stella, ""));
+        assertEquals(Arrays.asList("IndexStella", "IndexSteve"), index.complete("indexst", null));
+        index.onPlayerQuit(new PlayerQuitEvent(stella, ""));
+        assertEquals(Collections.singletonList("IndexSteve"), index.complete("indexst", null));
+    }
+
+    @Test
+    public void matchesLikeBukkit() {
+        Player sam = join("IndexSam");
+        join("IndexSamuel");
+        index.setPlugin(plugin);
+        assertTrue(index.isAvailable());
+        assertSame(sam, index.match("indexsa"));
+        assertSame(sam, index.match("INDEXSAM"));
+        assertNull(index.match("indexz"));
+    }
+
+    @Test
+    public void stopsWhenPluginIsDisabled() {
+        Player steve = join("IndexSteve");
+        index.setPlugin(plugin);
+        assertTrue(index.isAvailable());
+
+        enabled.set(false);
+        assertFalse(index.isAvailable()); // before the event is called
+        index.onPluginDisable(new PluginDisableEvent(plugin));
+        assertNull(index.getExact("indexsteve"));
+
+        StandIns.quit(handler, steve);
+        Player alex = join("IndexAlex"); // not seen by the index while disabled
+        enabled.set(true);
+        assertTrue(index.isAvailable());
+        assertNull(index.getExact("indexsteve"));
+        assertSame(alex, index.getExact("indexalex"));
+    }
+
+    @Test
+    public void ignoresOtherPlugins() {
+        join("IndexSteve");
+        index.setPlugin(plugin);
+        assertTrue(index.isAvailable());
+        index.onPluginDisable(new PluginDisableEvent(StandIns.plugin()));
+        assertTrue(index.isAvailable());
+        assertEquals(Collections.singletonList("IndexSteve"), index.complete("index", null));
+    }
+
+    private Player join(String name) {
+        Player player = StandIns.join(name, StandIns.DISCARD);
+        joined.add(player);
+        return player;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PrefixIndexTest {
+
+    private static final List<String> KEYS = Arrays.asList("warp", "home", "homes", "help", "heal", "warps", "give");
+
+    @Test
+    public void completesPrefixesInSortedOrder() {
+        PrefixIndex<String> index = PrefixIndex.of(KEYS);
+        assertEquals(Arrays.asList("heal", "help", "home", "homes"), complete(index, "h"));
+        assertEquals(Arrays.asList("home", "homes"), complete(index, "home"));
+        assertEquals(Arrays.asList("give", "heal", "help", "home", "homes", "warp", "warps"), complete(index, ""));
+        assertTrue(complete(index, "x").isEmpty());
+        assertTrue(complete(index, "homeless").isEmpty());
+        assertTrue(complete(index, "HO").isEmpty()); // case-sensitive by default
+    }
+
+    @Test
+    public void limitsCompletions() {
+        PrefixIndex<String> index = PrefixIndex.of(KEYS);
+        List<String> into = new ArrayList<>();
+        index.complete("h", into, 2);
+        assertEquals(Arrays.asList("heal", "help"), into);
+        into.clear();
+        index.complete("w", into, 0);
+        assertEquals(Arrays.asList("warp", "warps"), into);
+        into.clear();
+        index.complete("w", into, Integer.MAX_VALUE);
+        assertEquals(Arrays.asList("warp", "warps"), into);
+    }
+
+    @Test
+    public void filtersByValue() {
+        Map<String, Integer> levels = new LinkedHashMap<>();
+        levels.put("home", 0);
+        levels.put("homes", 2);
+        levels.put("help", 0);
+        PrefixIndex<Integer> index = new PrefixIndex<>(levels);
+        List<String> into = new ArrayList<>();
+        index.complete("h", level -> level == 0, into);
+        assertEquals(Arrays.asList("help", "home"), into);
+        assertEquals(Integer.valueOf(2), index.value(index.first("homes")));
+    }
+
+    @Test
+    public void matchesIgnoringCase() {
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (String key : Arrays.asList("Home", "homes", "HELP", "heal", "Warp")) entries.put(key, key);
+        PrefixIndex<String> index = new PrefixIndex<>(entries, true);
+        assertEquals(Arrays.asList("heal", "HELP", "Home", "homes"), complete(index, "H"));
+        assertEquals(Arrays.asList("Home", "homes"), complete(index, "hOmE"));
+        assertEquals(Collections.singletonList("Warp"), complete(index, "w"));
+    }
+
+    @Test
+    public void emptyIndexHasNoCompletions() {
+        PrefixIndex<String> index = PrefixIndex.of(Collections.emptyList());
+        assertEquals(0, index.size());
+        assertEquals(0, index.first("a"));
+        assertTrue(complete(index, "").isEmpty());
+    }
+
+    private static List<String> complete(PrefixIndex<String> index, String prefix) {
+        List<String> into = new ArrayList<>();
+        index.complete(prefix, into);
+        return into;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.bukkit.command.CommandSender;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+
+    private final CommandSender steve = StandIns.player("Steve", StandIns.DISCARD, true);
+    private final CommandSender alex = StandIns.player("Alex", StandIns.DISCARD, true);
+
+    @Test
+    public void cooldownAllowsASingleUse() {
+        RateLimiter cooldown = RateLimiter.cooldown(1, TimeUnit.HOURS);
+        assertEquals(0, cooldown.tryAcquire(steve));
+        long wait = cooldown.tryAcquire(steve);
+        assertTrue(wait > TimeUnit.MINUTES.toNanos(59) && wait <= TimeUnit.HOURS.toNanos(1));
+        assertEquals(0, cooldown.tryAcquire(alex)); // buckets are per sender
+    }
+
+    @Test
+    public void burstsUpToPermits() {
+        RateLimiter limiter = new RateLimiter(3, 1, TimeUnit.HOURS);
+        for (int i = 0; i < 3; i++)
+            assertEquals(0, limiter.tryAcquire(steve));
+        long wait = limiter.tryAcquire(steve);
+        assertTrue(wait > TimeUnit.MINUTES.toNanos(19) && wait <= TimeUnit.MINUTES.toNanos(20)); // one token refills in a third of the period
+        assertTrue(limiter.tryAcquire(steve) > 0); // a rejected attempt takes nothing
+    }
+
+    @Test
+    public void tokensRefillOverTime() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(2, 200, TimeUnit.MILLISECONDS);
+        assertEquals(0, limiter.tryAcquire(steve));
+        assertEquals(0, limiter.tryAcquire(steve));
+        assertTrue(limiter.tryAcquire(steve) > 0);
+        Thread.sleep(120);
+        assertEquals(0, limiter.tryAcquire(steve));
+        assertTrue(limiter.tryAcquire(steve) > 0);
+    }
+
+    @Test
+    public void resetRefillsTheBucket() {
+        RateLimiter cooldown = RateLimiter.cooldown(1, TimeUnit.HOURS);
+        assertEquals(0, cooldown.tryAcquire(steve));
+        cooldown.reset(steve);
+        assertEquals(0, cooldown.tryAcquire(steve));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void permitsMustBePositive() {
+        new RateLimiter(0, 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void rateLimitedSendersAreNotRun() {
+        AtomicInteger runs = new AtomicInteger();
+        List<String> replies = new ArrayList<>();
+        CommandHandler handler = new CommandHandler();
+        handler.register(new Object() {
+            @PluginSubcommand(name = "heal", description = "Heals", cooldown = 60_000)
+            public void heal(CommandContext context) {
+                runs.incrementAndGet();
+            }
+        });
+        CommandSender sender = StandIns.player("Steve", replies::add, true);
+        handler.onCommand(StandIns.command("test"), sender, new String[]{"heal"});
+        handler.onCommand(StandIns.command("test"), sender, new String[]{"heal"});
+        assertEquals(1, runs.get());
+        assertEquals(1, replies.size());
+        assertTrue(replies.get(0).contains("60.0"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cooldownAndRateLimitAreExclusive() {
+        new CommandHandler().register(new Object() {
+            @PluginSubcommand(name = "heal", description = "Heals", cooldown = 1000, rateLimit = 3)
+            public void heal(CommandContext context) {
+            }
+        });
+    }
+}
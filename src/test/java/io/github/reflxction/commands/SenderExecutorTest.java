@@ -0,0 +1,121 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.bukkit.entity.Player;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SenderExecutorTest {
+
+    private final Player steve = StandIns.player("Steve", StandIns.DISCARD, true);
+    private final Player alex = StandIns.player("Alex", StandIns.DISCARD, true);
+
+    @Test
+    public void runsTasksOfEachSenderInOrder() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            SenderExecutor executor = new SenderExecutor(pool);
+            int tasks = 1000;
+            CountDownLatch done = new CountDownLatch(2 * tasks);
+            List<Integer> steveOrder = Collections.synchronizedList(new ArrayList<>());
+            List<Integer> alexOrder = Collections.synchronizedList(new ArrayList<>());
+            AtomicBoolean steveRunning = new AtomicBoolean();
+            AtomicBoolean overlapped = new AtomicBoolean();
+            for (int i = 0; i < tasks; i++) {
+                int index = i;
+                executor.execute(steve, () -> {
+                    if (!steveRunning.compareAndSet(false, true)) overlapped.set(true);
+                    steveOrder.add(index);
+                    steveRunning.set(false);
+                    done.countDown();
+                });
+                executor.execute(alex, () -> {
+                    alexOrder.add(index);
+                    done.countDown();
+                });
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertFalse("tasks of the same sender ran concurrently", overlapped.get());
+            for (int i = 0; i < tasks; i++) {
+                assertEquals(i, (int) steveOrder.get(i));
+                assertEquals(i, (int) alexOrder.get(i));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void throwingTaskDoesNotStopLaterTasks() {
+        SenderExecutor executor = new SenderExecutor(Runnable::run);
+        AtomicInteger ran = new AtomicInteger();
+        executor.execute(steve, () -> {
+            throw new AssertionError("expected failure");
+        });
+        executor.execute(steve, ran::incrementAndGet);
+        executor.execute(steve, ran::incrementAndGet);
+        assertEquals(2, ran.get());
+    }
+
+    @Test
+    public void throwingTaskDoesNotStopQueuedTasks() throws InterruptedException {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            SenderExecutor executor = new SenderExecutor(pool);
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(1);
+            executor.execute(steve, () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("expected failure");
+            });
+            executor.execute(steve, done::countDown); // queued behind the failing task
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void rejectedDrainRunsOnSubmittingThread() {
+        SenderExecutor executor = new SenderExecutor(task -> {
+            throw new RejectedExecutionException();
+        });
+        AtomicInteger ran = new AtomicInteger();
+        executor.execute(steve, ran::incrementAndGet);
+        executor.execute(steve, ran::incrementAndGet);
+        assertEquals(2, ran.get());
+    }
+}
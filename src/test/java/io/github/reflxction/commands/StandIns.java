@@ -0,0 +1,427 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.permissions.Permission;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * In-process stand-ins for the Bukkit API, so that tests, benchmarks and simulations run without a server.
+ * Senders, players, worlds, the plugin and the server itself are proxies which answer the calls this
+ * library makes, and return default values for everything else.
+ */
+public final class StandIns {
+
+    /**
+     * A reply consumer which discards replies
+     */
+    public static final Consumer<String> DISCARD = message -> sink = message;
+
+    /**
+     * The last discarded reply, written so that sending it cannot be optimized away
+     */
+    static volatile String sink;
+
+    /**
+     * The online players, keyed by their lower-case name
+     */
+    private static final Map<String, Player> ONLINE = new ConcurrentHashMap<>();
+
+    /**
+     * Every player created, online or not, keyed by their UUID
+     */
+    private static final Map<UUID, Player> KNOWN = new ConcurrentHashMap<>();
+
+    /**
+     * The timer tasks which are scheduled and not cancelled yet, keyed by their plugin
+     */
+    private static final Map<Plugin, Set<BukkitTask>> TIMERS = new ConcurrentHashMap<>();
+
+    /**
+     * The permissions added to the plugin manager, keyed by their lower-case name
+     */
+    private static final Map<String, Permission> PERMISSIONS = new ConcurrentHashMap<>();
+
+    private static final Logger LOGGER = Logger.getLogger("StandIns");
+
+    /**
+     * The only world
+     */
+    public static final World WORLD = proxy(World.class, (proxy, method, args) -> {
+        switch (method.getName()) {
+            case "getName":
+                return "world";
+            case "getUID":
+                return new UUID(0, 0);
+            default:
+                return standard(proxy, method.getName(), args, method.getReturnType());
+        }
+    });
+
+    private StandIns() {
+    }
+
+    /**
+     * Installs the stand-in server, if no server is installed yet
+     */
+    public static synchronized void install() {
+        if (Bukkit.getServer() != null) return;
+        PluginManager pluginManager = proxy(PluginManager.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getPermission":
+                    return PERMISSIONS.get(((String) args[0]).toLowerCase(Locale.ROOT));
+                case "addPermission":
+                    Permission permission = (Permission) args[0];
+                    if (PERMISSIONS.putIfAbsent(permission.getName().toLowerCase(Locale.ROOT), permission) != null)
+                        throw new IllegalArgumentException("The permission " + permission.getName() + " is already defined!");
+                    return null;
+                case "removePermission":
+                    String name = args[0] instanceof Permission ? ((Permission) args[0]).getName() : (String) args[0];
+                    PERMISSIONS.remove(name.toLowerCase(Locale.ROOT));
+                    return null;
+                default:
+                    return standard(proxy, method.getName(), args, method.getReturnType());
+            }
+        });
+        BukkitScheduler scheduler = proxy(BukkitScheduler.class, (proxy, method, args) -> {
+            if (method.getName().equals("runTask") || method.getName().equals("runTaskAsynchronously"))
+                ((Runnable) args[1]).run();
+            if (method.getName().equals("runTaskTimer") || method.getName().equals("runTaskTimerAsynchronously"))
+                return timer((Plugin) args[0]);
+            return standard(proxy, method.getName(), args, method.getReturnType());
+        });
+        Bukkit.setServer(proxy(Server.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getPluginManager":
+                    return pluginManager;
+                case "getScheduler":
+                    return scheduler;
+                case "getOnlinePlayers":
+                    return Collections.unmodifiableCollection(ONLINE.values());
+                case "isPrimaryThread":
+                    return true;
+                case "getPlayer":
+                case "getPlayerExact":
+                    return args[0] instanceof UUID ? find((UUID) args[0]) : ONLINE.get(((String) args[0]).toLowerCase(Locale.ROOT));
+                case "getOfflinePlayer":
+                    if (args[0] instanceof UUID) return KNOWN.get(args[0]);
+                    Player player = ONLINE.get(((String) args[0]).toLowerCase(Locale.ROOT));
+                    return player != null ? player : player((String) args[0], DISCARD, true);
+                case "getWorld":
+                    return WORLD.getName().equals(args[0]) ? WORLD : null;
+                case "getConsoleSender":
+                    return console(DISCARD);
+                case "getLogger":
+                    return LOGGER;
+                case "getName":
+                case "getVersion":
+                case "getBukkitVersion":
+                    return "StandIns";
+                default:
+                    return standard(proxy, method.getName(), args, method.getReturnType());
+            }
+        }));
+    }
+
+    /**
+     * Returns the amount of timer tasks of the specified plugin which are not cancelled. The tasks never
+     * run.
+     *
+     * @param plugin The plugin
+     * @return The amount of timers
+     */
+    public static int timers(Plugin plugin) {
+        Set<BukkitTask> tasks = TIMERS.get(plugin);
+        return tasks == null ? 0 : tasks.size();
+    }
+
+    private static BukkitTask timer(Plugin plugin) {
+        Set<BukkitTask> tasks = TIMERS.computeIfAbsent(plugin, p -> ConcurrentHashMap.newKeySet());
+        BukkitTask task = proxy(BukkitTask.class, (proxy, method, args) -> {
+            if (method.getName().equals("cancel")) {
+                tasks.remove((BukkitTask) proxy);
+                return null;
+            }
+            return standard(proxy, method.getName(), args, method.getReturnType());
+        });
+        tasks.add(task);
+        return task;
+    }
+
+    /**
+     * Creates a plugin which is always enabled, with a temporary data folder
+     *
+     * @return The plugin
+     */
+    public static Plugin plugin() {
+        return plugin(() -> true);
+    }
+
+    /**
+     * Creates a plugin with a temporary data folder
+     *
+     * @param enabled Whether is the plugin enabled
+     * @return The plugin
+     */
+    public static Plugin plugin(BooleanSupplier enabled) {
+        File dataFolder;
+        try {
+            dataFolder = Files.createTempDirectory("standins").toFile();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        dataFolder.deleteOnExit();
+        return proxy(Plugin.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "isEnabled":
+                    return enabled.getAsBoolean();
+                case "getName":
+                    return "StandIns";
+                case "getDataFolder":
+                    return dataFolder;
+                case "getLogger":
+                    return LOGGER;
+                case "getServer":
+                    return Bukkit.getServer();
+                default:
+                    return standard(proxy, method.getName(), args, method.getReturnType());
+            }
+        });
+    }
+
+    /**
+     * Creates a player which is not online
+     *
+     * @param name      Name of the player
+     * @param replies   Consumer of the messages sent to the player
+     * @param permitted Whether does the player have every permission
+     * @return The player
+     */
+    public static Player player(String name, Consumer<String> replies, boolean permitted) {
+        return player(name, UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(StandardCharsets.UTF_8)), replies, permitted);
+    }
+
+    /**
+     * Creates a player with the specified UUID which is not online, such as a player who changed their name
+     *
+     * @param name      Name of the player
+     * @param uuid      UUID of the player
+     * @param replies   Consumer of the messages sent to the player
+     * @param permitted Whether does the player have every permission
+     * @return The player
+     */
+    public static Player player(String name, UUID uuid, Consumer<String> replies, boolean permitted) {
+        return player(name, uuid, replies, () -> permitted);
+    }
+
+    /**
+     * Creates a player whose permissions may change, which is not online
+     *
+     * @param name      Name of the player
+     * @param uuid      UUID of the player
+     * @param replies   Consumer of the messages sent to the player
+     * @param permitted Whether does the player currently have every permission
+     * @return The player
+     */
+    public static Player player(String name, UUID uuid, Consumer<String> replies, BooleanSupplier permitted) {
+        Player player = proxy(Player.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                case "getDisplayName":
+                    return name;
+                case "getUniqueId":
+                    return uuid;
+                case "sendMessage":
+                    if (args[0] instanceof String) replies.accept((String) args[0]);
+                    else for (String message : (String[]) args[0]) replies.accept(message);
+                    return null;
+                case "hasPermission":
+                case "isPermissionSet":
+                    return permitted.getAsBoolean();
+                case "canSee":
+                case "isOnline":
+                case "hasPlayedBefore":
+                    return true;
+                case "getPlayer":
+                    return proxy;
+                case "getWorld":
+                    return WORLD;
+                case "getServer":
+                    return Bukkit.getServer();
+                default:
+                    return standard(proxy, method.getName(), args, method.getReturnType());
+            }
+        });
+        KNOWN.put(uuid, player);
+        return player;
+    }
+
+    /**
+     * Creates a player and adds them to the online players, as if they joined
+     *
+     * @param name    Name of the player
+     * @param replies Consumer of the messages sent to the player
+     * @return The player
+     */
+    public static Player join(String name, Consumer<String> replies) {
+        Player player = player(name, replies, true);
+        ONLINE.put(name.toLowerCase(Locale.ROOT), player);
+        return player;
+    }
+
+    /**
+     * Creates a player, adds them to the online players, and notifies the indexes of the specified handler
+     *
+     * @param handler Handler to notify
+     * @param name    Name of the player
+     * @param replies Consumer of the messages sent to the player
+     * @return The player
+     */
+    public static Player join(CommandHandler handler, String name, Consumer<String> replies) {
+        Player player = join(name, replies);
+        PlayerJoinEvent event = new PlayerJoinEvent(player, "");
+        handler.getResolvers().getPlayerIndex().onPlayerJoin(event);
+        handler.getResolvers().getOfflinePlayers().onPlayerJoin(event);
+        return player;
+    }
+
+    /**
+     * Removes a player from the online players, and notifies the indexes of the specified handler
+     *
+     * @param handler Handler to notify
+     * @param player  Player to remove
+     */
+    public static void quit(CommandHandler handler, Player player) {
+        ONLINE.remove(player.getName().toLowerCase(Locale.ROOT));
+        PlayerQuitEvent event = new PlayerQuitEvent(player, "");
+        handler.getResolvers().getPlayerIndex().onPlayerQuit(event);
+        handler.getPermissions().onPlayerQuit(event);
+    }
+
+    /**
+     * Returns the online players
+     *
+     * @return The online players
+     */
+    public static Collection<Player> online() {
+        return Collections.unmodifiableCollection(ONLINE.values());
+    }
+
+    /**
+     * Creates a sender which is not a player, such as the console
+     *
+     * @param replies Consumer of the messages sent to the sender
+     * @return The sender
+     */
+    public static CommandSender console(Consumer<String> replies) {
+        return proxy(ConsoleCommandSender.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return "CONSOLE";
+                case "sendMessage":
+                    if (args[0] instanceof String) replies.accept((String) args[0]);
+                    else for (String message : (String[]) args[0]) replies.accept(message);
+                    return null;
+                case "hasPermission":
+                case "isPermissionSet":
+                case "isOp":
+                    return true;
+                case "getServer":
+                    return Bukkit.getServer();
+                default:
+                    return standard(proxy, method.getName(), args, method.getReturnType());
+            }
+        });
+    }
+
+    /**
+     * Creates a Bukkit command. {@link Command} is a class, so this is a subclass rather than a proxy.
+     *
+     * @param name Name of the command
+     * @return The command
+     */
+    public static Command command(String name) {
+        return new Command(name) {
+            @Override
+            public boolean execute(CommandSender sender, String label, String[] args) {
+                return true;
+            }
+        };
+    }
+
+    private static Player find(UUID uuid) {
+        for (Player player : ONLINE.values())
+            if (player.getUniqueId().equals(uuid)) return player;
+        return null;
+    }
+
+    /**
+     * Answers the methods of {@link Object}, and returns the default value of the return type otherwise
+     */
+    private static Object standard(Object proxy, String name, Object[] args, Class<?> type) {
+        switch (name) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "StandIn@" + Integer.toHexString(System.identityHashCode(proxy));
+        }
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0D;
+        if (type == float.class) return 0F;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == char.class) return (char) 0;
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(StandIns.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
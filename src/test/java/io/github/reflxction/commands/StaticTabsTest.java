@@ -0,0 +1,98 @@
+/*
+ * * Copyright 2019-2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.reflxction.commands;
+
+import io.github.reflxction.commands.CommandResolvers.StaticTabs;
+import org.bukkit.command.CommandSender;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StaticTabsTest {
+
+    private final ParentCommand command = ParentCommand.create().contain(this);
+    private final CommandHandler handler = command.getCommandHandler();
+    private final CommandResolvers resolvers = handler.getResolvers();
+    private final CommandSender console = StandIns.console(StandIns.DISCARD);
+
+    @BeforeClass
+    public static void installServer() {
+        StandIns.install();
+    }
+
+    @PluginSubcommand(name = "paint", description = "Paints in a colour", tabCompletions = "@colours red|green")
+    public void paint(CommandContext context) {
+    }
+
+    @Test
+    public void tabsAreDeduplicatedAndSorted() {
+        resolvers.registerStaticTab("colours", Arrays.asList("red", "blue", "green", "blue", "black"));
+        StaticTabs tabs = (StaticTabs) resolvers.getTabProvider("colours");
+        assertEquals(Arrays.asList("black", "blue", "green", "red"), tabs.getTabs());
+        assertSame(tabs.getTabs(), tabs.getTab(null)); // the same list each time, so it can be indexed once
+        assertEquals(tabs.getTabs(), resolvers.getTab("colours", null));
+    }
+
+    @Test
+    public void completesPrefixes() {
+        resolvers.registerStaticTab("colours", Arrays.asList("red", "blue", "green", "black"));
+        StaticTabs tabs = (StaticTabs) resolvers.getTabProvider("colours");
+        assertEquals(Arrays.asList("black", "blue"), tabs.getTab(null, "b"));
+        assertEquals(Collections.singletonList("blue"), tabs.getTab(null, "blu"));
+        assertTrue(tabs.getTab(null, "x").isEmpty());
+        assertEquals(4, tabs.getTab(null, "").size());
+    }
+
+    @Test
+    public void completesSubcommandArguments() {
+        resolvers.registerStaticTab("colours", Arrays.asList("red", "blue", "green", "black"));
+        assertEquals(Arrays.asList("black", "blue"), complete("paint", "b"));
+        assertEquals(Collections.singletonList("green"), complete("paint", "red", "g"));
+        assertTrue(complete("paint", "red", "green", "").isEmpty()); // no third argument
+    }
+
+    @Test
+    public void reRegisteringReplacesTabs() {
+        resolvers.registerStaticTab("colours", Arrays.asList("red", "blue"));
+        resolvers.registerStaticTab("colours", Arrays.asList("cyan", "magenta"));
+        assertEquals(Collections.singletonList("cyan"), ((StaticTabs) resolvers.getTabProvider("colours")).getTab(null, "c"));
+    }
+
+    @Test
+    public void completionsStopAtTheLimit() {
+        resolvers.registerStaticTab("colours", Arrays.asList("red", "blue", "green", "black", "brown"));
+        handler.setMaxStaticTabs(2);
+        assertEquals(Arrays.asList("black", "blue"), complete("paint", "b"));
+        handler.setMaxStaticTabs(0);
+        assertEquals(Arrays.asList("black", "blue", "brown"), complete("paint", "b"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownKeysAreRejected() {
+        resolvers.getTabProvider("shapes");
+    }
+
+    private List<String> complete(String... args) {
+        return command.onTabComplete(console, StandIns.command("test"), "test", args);
+    }
+}